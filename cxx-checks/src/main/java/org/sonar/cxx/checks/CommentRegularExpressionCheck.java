@@ -19,13 +19,21 @@
  */
 package org.sonar.cxx.checks;
 
+import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxFileContentCache;
+import org.sonar.cxx.visitors.CxxPatternGroup;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
-import org.sonar.squidbridge.checks.AbstractCommentRegularExpressionCheck;
+import org.sonar.squidbridge.checks.SquidCheck;
 
 @Rule(
   key = "CommentRegularExpression",
@@ -33,11 +41,16 @@ import org.sonar.squidbridge.checks.AbstractCommentRegularExpressionCheck;
   priority = Priority.MAJOR)
 @RuleTemplate
 @NoSqale
-public class CommentRegularExpressionCheck extends AbstractCommentRegularExpressionCheck<Grammar> {
+public class CommentRegularExpressionCheck extends SquidCheck<Grammar>
+  implements AstAndTokenVisitor, CxxCharsetAwareVisitor {
 
   private static final String DEFAULT_REGULAR_EXPRESSION = "";
   private static final String DEFAULT_MESSAGE = "The regular expression matches this comment";
 
+  private CxxFileContentCache fileContentCache = new CxxFileContentCache();
+  private CxxPatternGroup patternGroup;
+  private int patternId;
+
   @RuleProperty(
     key = "regularExpression",
     description = "The regular expression",
@@ -50,14 +63,52 @@ public class CommentRegularExpressionCheck extends AbstractCommentRegularExpress
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
-  @Override
   public String getRegularExpression() {
     return regularExpression;
   }
 
-  @Override
   public String getMessage() {
     return message;
   }
 
+  @Override
+  public void setCharset(Charset charset) {
+    // comments are taken from the tokens, the charset is not needed
+  }
+
+  @Override
+  public void setFileContentCache(CxxFileContentCache cache) {
+    this.fileContentCache = cache;
+  }
+
+  @Override
+  public void init() {
+    patternGroup = null;
+    String expression = getRegularExpression();
+    if (expression == null) {
+      throw new IllegalStateException("getRegularExpression() should not return null");
+    }
+    if (!expression.isEmpty()) {
+      Pattern pattern;
+      try {
+        pattern = Pattern.compile(expression, Pattern.DOTALL);
+      } catch (RuntimeException e) {
+        throw new IllegalStateException("Unable to compile regular expression: " + expression, e);
+      }
+      patternGroup = fileContentCache.getPatternGroup("comment");
+      patternId = patternGroup.add(pattern);
+    }
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    if (patternGroup != null) {
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isComment() && patternGroup.find(patternId, trivia.getToken().getOriginalValue())) {
+          getContext().createLineViolation(this, getMessage(), trivia.getToken());
+        }
+      }
+    }
+  }
+
 }
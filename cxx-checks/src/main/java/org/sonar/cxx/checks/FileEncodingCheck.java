@@ -23,12 +23,12 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxFileContentCache;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -46,24 +46,36 @@ public class FileEncodingCheck extends SquidCheck<Grammar> implements CxxCharset
 
   private static final Logger LOG = Loggers.get(FileEncodingCheck.class);
   private Charset charset = Charset.forName("UTF-8");
+  private CxxFileContentCache fileContentCache = new CxxFileContentCache();
 
   @Override
   public void setCharset(Charset charset) {
     this.charset = charset;
   }
 
+  @Override
+  public void setFileContentCache(CxxFileContentCache cache) {
+    this.fileContentCache = cache;
+  }
+
   @Override
   public void visitFile(AstNode astNode) {
     try {
-      Files.readAllLines(getContext().getFile().toPath(), charset);
+      if (fileContentCache.get(getContext().getFile(), charset).hasDecodingErrors()) {
+        createEncodingViolation();
+      }
     } catch (IOException e) {
-      getContext().createFileViolation(this,
-        "Not all characters of the file can be encoded with the predefined charset "
-        + charset.name() + ".");
+      createEncodingViolation();
       if (LOG.isDebugEnabled()) {
         LOG.debug("Cannot Read File", e);
       }
     }
   }
 
+  private void createEncodingViolation() {
+    getContext().createFileViolation(this,
+      "Not all characters of the file can be encoded with the predefined charset "
+      + charset.name() + ".");
+  }
+
 }
@@ -19,7 +19,6 @@
  */
 package org.sonar.cxx.checks;
 
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.IOException;
@@ -32,6 +31,7 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxFileContentCache;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.api.AnalysisException;
@@ -73,6 +73,7 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
   public boolean isRegularExpression;
 
   private Charset charset = Charset.forName("UTF-8");
+  private CxxFileContentCache fileContentCache = new CxxFileContentCache();
   private String[] expectedLines;
   private Pattern searchPattern;
 
@@ -81,6 +82,11 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
     this.charset = charset;
   }
 
+  @Override
+  public void setFileContentCache(CxxFileContentCache cache) {
+    this.fileContentCache = cache;
+  }
+
   @Override
   public void init() {
     if (isRegularExpression) {
@@ -101,9 +107,9 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
   @Override
   public void visitFile(AstNode astNode) {
     if (isRegularExpression) {
-      String fileContent;
+      CharSequence fileContent;
       try {
-        fileContent = Files.toString(getContext().getFile(), charset);
+        fileContent = fileContentCache.get(getContext().getFile(), charset).getContent();
       } catch (IOException e) {
         throw new AnalysisException(e);
       }
@@ -111,7 +117,7 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
     } else {
       List<String> lines;
       try {
-        lines = Files.readLines(getContext().getFile(), charset);
+        lines = fileContentCache.get(getContext().getFile(), charset).getLines();
       } catch (IOException e) {
         throw new IllegalStateException(e);
       }
@@ -122,7 +128,7 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
     }
   }
 
-  private void checkRegularExpression(String fileContent) {
+  private void checkRegularExpression(CharSequence fileContent) {
     Matcher matcher = searchPattern.matcher(fileContent);
     if (!matcher.find() || matcher.start() != 0) {
       getContext().createFileViolation(this, MESSAGE);
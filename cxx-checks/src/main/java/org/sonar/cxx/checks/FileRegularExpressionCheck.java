@@ -21,15 +21,7 @@ package org.sonar.cxx.checks;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CodingErrorAction;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.sonar.api.utils.PathUtils;
@@ -38,6 +30,8 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxFileContentCache;
+import org.sonar.cxx.visitors.CxxPatternGroup;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -61,8 +55,9 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
   private static final String DEFAULT_MESSAGE = "The regular expression matches this file";
 
   private Charset charset = Charset.forName("UTF-8");
-  private CharsetDecoder decoder;
-  private Pattern pattern;
+  private CxxFileContentCache fileContentCache = new CxxFileContentCache();
+  private CxxPatternGroup patternGroup;
+  private int patternId;
 
   /**
    * matchFilePattern
@@ -111,16 +106,16 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
 
   @Override
   public void init() {
+    Pattern pattern;
     try {
       pattern = Pattern.compile(regularExpression);
-      decoder = charset.newDecoder();
-      decoder.onMalformedInput(CodingErrorAction.REPLACE);
-      decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
     } catch (PatternSyntaxException ex) {
       throw new IllegalStateException(ex);
     } catch (IllegalArgumentException ex2) {
       throw new IllegalStateException(ex2);
     }
+    patternGroup = fileContentCache.getPatternGroup("file:" + invertFilePattern + ":" + matchFilePattern);
+    patternId = patternGroup.add(pattern);
   }
 
   @Override
@@ -128,14 +123,19 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
     this.charset = charset;
   }
 
+  @Override
+  public void setFileContentCache(CxxFileContentCache cache) {
+    this.fileContentCache = cache;
+  }
+
   @Override
   public void visitFile(AstNode fileNode) {
     try {
       if (!compare(invertFilePattern, matchFile())) {
         return;
       }
-      Matcher matcher = pattern.matcher(fromFile(getContext().getFile()));
-      if (compare(invertRegularExpression, matcher.find())) {
+      CharSequence content = fileContentCache.get(getContext().getFile(), charset).getContent();
+      if (compare(invertRegularExpression, patternGroup.find(patternId, content))) {
         getContext().createFileViolation(this, message);
       }
     } catch (Exception e) {
@@ -152,14 +152,6 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
     return true;
   }
 
-  private CharSequence fromFile(File file) throws IOException {
-    try (FileInputStream input = new FileInputStream(file)) {
-      FileChannel channel = input.getChannel();
-      ByteBuffer bbuf = channel.map(FileChannel.MapMode.READ_ONLY, 0, (int) channel.size());
-      return decoder.decode(bbuf);
-    }
-  }
-
   private static boolean compare(boolean invert, boolean condition) {
     return invert ? !condition : condition;
   }
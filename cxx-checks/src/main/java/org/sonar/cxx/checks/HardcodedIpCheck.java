@@ -54,7 +54,7 @@ public class HardcodedIpCheck extends SquidCheck<Grammar> {
 //  (?:25[0-5]|2[0-4]\d|[01]?\d\d?)\.(?:25[0-5]|2[0-4]\d|[01]?\d\d?))(?::(\d{2,5}))?(?:\s|$)
   private static final String DEFAULT_REGULAR_EXPRESSION
     = "^.*((?<![\\d|\\.])(?:\\b(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\b\\.){3}\\b(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\b(?!\\d|\\.)).*$";
-  private static volatile Matcher IP;
+  private Matcher ip;
 
   @RuleProperty(
     key = "regularExpression",
@@ -73,7 +73,7 @@ public class HardcodedIpCheck extends SquidCheck<Grammar> {
 
     if (!regEx.isEmpty()) {
       try {
-        IP = Pattern.compile(regEx).matcher("");
+        ip = Pattern.compile(regEx).matcher("");
       } catch (RuntimeException e) {
         throw new IllegalStateException("Unable to compile regular expression: " + regEx, e);
       }
@@ -84,10 +84,10 @@ public class HardcodedIpCheck extends SquidCheck<Grammar> {
   @Override
   public void visitNode(AstNode node) {
     if (node.is(CxxGrammarImpl.LITERAL)) {
-      IP.reset(node.getTokenOriginalValue());
-      if (IP.find()) {
-        String ip = IP.group(0).replaceAll("\"", "");
-        getContext().createLineViolation(this, "Make this IP \"" + ip + "\" address configurable.", node);
+      ip.reset(node.getTokenOriginalValue());
+      if (ip.find()) {
+        String address = ip.group(0).replaceAll("\"", "");
+        getContext().createLineViolation(this, "Make this IP \"" + address + "\" address configurable.", node);
       }
     }
   }
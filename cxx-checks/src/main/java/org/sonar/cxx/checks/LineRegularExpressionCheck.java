@@ -19,13 +19,11 @@
  */
 package org.sonar.cxx.checks;
 
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.List;
-import java.util.regex.Matcher;
+import java.util.BitSet;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.sonar.api.utils.PathUtils;
@@ -34,6 +32,9 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxFileContent;
+import org.sonar.cxx.visitors.CxxFileContentCache;
+import org.sonar.cxx.visitors.CxxPatternGroup;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -57,7 +58,9 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
   private static final String DEFAULT_MESSAGE = "The regular expression matches this line";
 
   private Charset charset = Charset.forName("UTF-8");
-  private Pattern pattern;
+  private CxxFileContentCache fileContentCache = new CxxFileContentCache();
+  private CxxPatternGroup patternGroup;
+  private int patternId;
 
   /**
    * matchFilePattern
@@ -106,11 +109,14 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
 
   @Override
   public void init() {
+    Pattern pattern;
     try {
       pattern = Pattern.compile(regularExpression);
     } catch (PatternSyntaxException e) {
       throw new IllegalStateException(e);
     }
+    patternGroup = fileContentCache.getPatternGroup("line:" + invertFilePattern + ":" + matchFilePattern);
+    patternId = patternGroup.add(pattern);
   }
 
   @Override
@@ -118,18 +124,23 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
     this.charset = charset;
   }
 
+  @Override
+  public void setFileContentCache(CxxFileContentCache cache) {
+    this.fileContentCache = cache;
+  }
+
   @Override
   public void visitFile(AstNode fileNode) {
     if (compare(invertFilePattern, matchFile())) {
-      List<String> lines;
+      CxxFileContent content;
       try {
-        lines = Files.readLines(getContext().getFile(), charset);
+        content = fileContentCache.get(getContext().getFile(), charset);
       } catch (IOException e) {
         throw new IllegalStateException(e);
       }
-      for (int i = 0; i < lines.size(); ++i) {
-        Matcher matcher = pattern.matcher(lines.get(i));
-        if (compare(invertRegularExpression, matcher.find())) {
+      BitSet matches = patternGroup.findLines(patternId, content);
+      for (int i = 0; i < content.getLineCount(); ++i) {
+        if (compare(invertRegularExpression, matches.get(i))) {
           getContext().createLineViolation(this, message, i + 1);
         }
       }
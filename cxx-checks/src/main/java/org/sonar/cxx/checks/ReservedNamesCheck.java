@@ -19,7 +19,6 @@
  */
 package org.sonar.cxx.checks;
 
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.IOException;
@@ -31,6 +30,7 @@ import org.sonar.check.Rule;
 import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.tag.Tag;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxFileContentCache;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -50,6 +50,7 @@ public class ReservedNamesCheck extends SquidCheck<Grammar> implements CxxCharse
 
   private static volatile String[] keywords = CxxKeyword.keywordValues();
   private Charset charset = Charset.forName("UTF-8");
+  private CxxFileContentCache fileContentCache = new CxxFileContentCache();
 
   @Override
   public void init() {
@@ -60,7 +61,7 @@ public class ReservedNamesCheck extends SquidCheck<Grammar> implements CxxCharse
   public void visitFile(AstNode astNode) {
     List<String> lines;
     try {
-      lines = Files.readLines(getContext().getFile(), charset);
+      lines = fileContentCache.get(getContext().getFile(), charset).getLines();
     } catch (IOException e) {
       throw new IllegalStateException(e);
     }
@@ -94,4 +95,9 @@ public class ReservedNamesCheck extends SquidCheck<Grammar> implements CxxCharse
   public void setCharset(Charset charset) {
     this.charset = charset;
   }
+
+  @Override
+  public void setFileContentCache(CxxFileContentCache cache) {
+    this.fileContentCache = cache;
+  }
 }
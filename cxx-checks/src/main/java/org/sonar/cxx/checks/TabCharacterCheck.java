@@ -19,7 +19,6 @@
  */
 package org.sonar.cxx.checks;
 
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.IOException;
@@ -30,6 +29,7 @@ import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.tag.Tag;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxFileContentCache;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -49,6 +49,7 @@ public class TabCharacterCheck extends SquidCheck<Grammar> implements CxxCharset
 
   private static final boolean DEFAULT_CREATE_LINE_VIOLATION = false;
   private Charset charset = Charset.forName("UTF-8");
+  private CxxFileContentCache fileContentCache = new CxxFileContentCache();
 
   /**
    * createLineViolation
@@ -64,11 +65,16 @@ public class TabCharacterCheck extends SquidCheck<Grammar> implements CxxCharset
     this.charset = charset;
   }
 
+  @Override
+  public void setFileContentCache(CxxFileContentCache cache) {
+    this.fileContentCache = cache;
+  }
+
   @Override
   public void visitFile(AstNode astNode) {
     List<String> lines;
     try {
-      lines = Files.readLines(getContext().getFile(), charset);
+      lines = fileContentCache.get(getContext().getFile(), charset).getLines();
     } catch (IOException e) {
       throw new IllegalStateException(e);
     }
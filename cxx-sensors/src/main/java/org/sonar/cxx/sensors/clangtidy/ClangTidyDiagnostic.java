@@ -0,0 +1,133 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.clangtidy;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Diagnostic line of a clang-tidy report:
+ *
+ * <pre>
+ * {@code <path>:<line>:<column>: <level>: <message> [<checkname>]}
+ * </pre>
+ *
+ * Source excerpts, carets and notes without check name are no diagnostics. The line is tokenized with a few forward
+ * and backward scans, the result is the same as matching the whole line with
+ * {@code (.+):([0-9]+):([0-9]+): ([^:]+): ([^]]+) \[([^]]+)\]}: the path is the longest prefix which leaves a valid
+ * diagnostic, the message the longest text before the check name.
+ */
+final class ClangTidyDiagnostic {
+
+  private final String path;
+  private final String line;
+  private final String column;
+  private final String level;
+  private final String message;
+  private final String check;
+
+  private ClangTidyDiagnostic(String path, String line, String column, String level, String message, String check) {
+    this.path = path;
+    this.line = line;
+    this.column = column;
+    this.level = level;
+    this.message = message;
+    this.check = check;
+  }
+
+  /**
+   * @param text line of the report
+   * @return the diagnostic, null if the line is no diagnostic
+   */
+  @CheckForNull
+  static ClangTidyDiagnostic parse(String text) {
+    int end = text.length();
+    // shortest diagnostic "p:1:1: l: m [c]", most other lines end with another character
+    if (end < 15 || text.charAt(end - 1) != ']') {
+      return null;
+    }
+    // message and check name must not contain ']'
+    int lastBracket = text.lastIndexOf(']', end - 2);
+    // start of " [<checkname>]", the check name is not empty
+    int checkStart = text.lastIndexOf(" [", end - 4);
+    if (checkStart < 0) {
+      return null;
+    }
+
+    for (int pathEnd = text.lastIndexOf(':', checkStart); pathEnd > 0; pathEnd = text.lastIndexOf(':', pathEnd - 1)) {
+      int lineEnd = skipDigits(text, pathEnd + 1);
+      if (lineEnd < 0 || lineEnd >= end || text.charAt(lineEnd) != ':') {
+        continue;
+      }
+      int columnEnd = skipDigits(text, lineEnd + 1);
+      if (columnEnd < 0 || columnEnd + 1 >= end || text.charAt(columnEnd) != ':'
+        || text.charAt(columnEnd + 1) != ' ') {
+        continue;
+      }
+      int levelStart = columnEnd + 2;
+      int levelEnd = text.indexOf(':', levelStart);
+      if (levelEnd <= levelStart || levelEnd + 1 >= end || text.charAt(levelEnd + 1) != ' ') {
+        continue;
+      }
+      int messageStart = levelEnd + 2;
+      if (lastBracket >= messageStart || checkStart <= messageStart) {
+        continue;
+      }
+      return new ClangTidyDiagnostic(text.substring(0, pathEnd), text.substring(pathEnd + 1, lineEnd),
+        text.substring(lineEnd + 1, columnEnd), text.substring(levelStart, levelEnd),
+        text.substring(messageStart, checkStart), text.substring(checkStart + 2, end - 1));
+    }
+    return null;
+  }
+
+  /**
+   * @return index after the digits starting at start, -1 if there is no digit
+   */
+  private static int skipDigits(String text, int start) {
+    int i = start;
+    while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+      i++;
+    }
+    return i > start ? i : -1;
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  String getLine() {
+    return line;
+  }
+
+  String getColumn() {
+    return column;
+  }
+
+  String getLevel() {
+    return level;
+  }
+
+  String getMessage() {
+    return message;
+  }
+
+  String getCheck() {
+    return check;
+  }
+}
@@ -19,11 +19,13 @@
  */
 package org.sonar.cxx.sensors.clangtidy;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.util.Scanner;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.utils.log.Logger;
@@ -67,37 +69,31 @@ public class CxxClangTidySensor extends CxxReportSensor {
       this.language.getPluginProperty(REPORT_CHARSET_DEF), "UTF-8");
     LOG.debug("Parsing 'clang-tidy' report, CharSet= '{}'", reportCharset);
 
-    try (Scanner scanner = new Scanner(report, reportCharset)) {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(report.toPath()),
+      Charset.forName(reportCharset).newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE)))) {
       // E:\Development\SonarQube\cxx\sonar-cxx\sonar-cxx-plugin\src\test\resources\org\sonar\plugins\cxx\
       //   reports-project\clang-tidy-reports\..\..\cpd.cc:76:20:
       //   warning: ISO C++11 does not allow conversion from string literal to 'char *' 
       //   [clang-diagnostic-writable-strings]
       // <path>:<line>:<column>: <level>: <message> [<checkname>]
       // relative paths
-      final String regex = "(.+|[a-zA-Z]:\\\\.+):([0-9]+):([0-9]+): ([^:]+): ([^]]+) \\[([^]]+)\\]";
-      final Pattern pattern = Pattern.compile(regex);
-
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        final Matcher matcher = pattern.matcher(line);
-        if (matcher.matches()) {
-          MatchResult m = matcher.toMatchResult();
-          String path = m.group(1);
-          String lineId = m.group(2);
-          String message = m.group(5);
-          String check = m.group(6);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // source excerpts, carets and notes are rejected after a few characters
+        ClangTidyDiagnostic diagnostic = ClangTidyDiagnostic.parse(line);
+        if (diagnostic != null) {
           saveUniqueViolation(context,
             CxxClangTidyRuleRepository.KEY,
-            path,
-            lineId,
-            check,
-            message);
+            diagnostic.getPath(),
+            diagnostic.getLine(),
+            diagnostic.getCheck(),
+            diagnostic.getMessage());
         }
       }
-    } catch (final java.io.FileNotFoundException
-      | java.lang.IllegalArgumentException
-      | java.lang.IllegalStateException
-      | java.util.InputMismatchException e) {
+    } catch (final IOException
+      | java.lang.IllegalArgumentException e) {
       LOG.error("Failed to parse clang-tidy report: {}", e);
     }
   }
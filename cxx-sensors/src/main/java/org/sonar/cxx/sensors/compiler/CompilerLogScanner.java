@@ -0,0 +1,97 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.compiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import org.sonar.cxx.visitors.RegexLiteral;
+
+/**
+ * Reads a compiler log line by line and applies the warning pattern to each line, so the memory needed does not
+ * depend on the size of the log. Lines which do not contain the literal required by the pattern (e.g. ": warning: ")
+ * are skipped without running the regular expression.
+ */
+final class CompilerLogScanner {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private CompilerLogScanner() {
+  }
+
+  /**
+   * @param report compiler log
+   * @param charset of the log, characters which cannot be decoded are replaced
+   * @param pattern matching a single line with a warning
+   * @param matches called for each match, in the order of the log
+   * @throws FileNotFoundException if the log cannot be opened
+   */
+  static void scan(File report, String charset, Pattern pattern, Consumer<MatchResult> matches)
+    throws FileNotFoundException {
+    scan(report, charset, pattern, RegexLiteral.requiredLiteral(pattern), matches);
+  }
+
+  /**
+   * @param literal lines without it are skipped, null to apply the pattern to every line
+   */
+  static void scan(File report, String charset, Pattern pattern, @Nullable String literal,
+    Consumer<MatchResult> matches) throws FileNotFoundException {
+    CharsetDecoder decoder = Charset.forName(charset).newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(report.toPath(), StandardOpenOption.READ);
+    } catch (IOException e) {
+      FileNotFoundException notFound = new FileNotFoundException(report.getPath());
+      notFound.initCause(e);
+      throw notFound;
+    }
+    try (BufferedReader reader = new BufferedReader(Channels.newReader(channel, decoder, -1), BUFFER_SIZE)) {
+      Matcher matcher = pattern.matcher("");
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (literal != null && !line.contains(literal)) {
+          continue;
+        }
+        matcher.reset(line);
+        while (matcher.find()) {
+          matches.accept(matcher);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read compiler log '" + report + "'", e);
+    }
+  }
+
+}
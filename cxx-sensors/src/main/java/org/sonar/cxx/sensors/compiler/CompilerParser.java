@@ -22,6 +22,7 @@ package org.sonar.cxx.sensors.compiler;
 import java.io.File;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.sensor.SensorContext;
 
@@ -109,6 +110,17 @@ public interface CompilerParser {
 
   }
 
-  void processReport(final SensorContext context, File report, String charset, String reportRegEx, List<Warning> warnings)
-    throws java.io.FileNotFoundException;
+  /**
+   * Parse the report and pass each warning to the consumer as soon as it is found.
+   */
+  void processReport(final SensorContext context, File report, String charset, String reportRegEx,
+    Consumer<Warning> warnings) throws java.io.FileNotFoundException;
+
+  /**
+   * Parse the report and collect the warnings in a list.
+   */
+  default void processReport(final SensorContext context, File report, String charset, String reportRegEx,
+    List<Warning> warnings) throws java.io.FileNotFoundException {
+    processReport(context, report, charset, reportRegEx, (Consumer<Warning>) warnings::add);
+  }
 }
@@ -20,9 +20,7 @@
 package org.sonar.cxx.sensors.compiler;
 
 import java.io.File;
-import java.util.List;
-import java.util.Scanner;
-import java.util.regex.MatchResult;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.utils.log.Logger;
@@ -78,15 +76,13 @@ public class CxxCompilerGccParser implements CompilerParser {
    * {@inheritDoc}
    */
   @Override
-  public void processReport(final SensorContext context, File report, String charset, String reportRegEx, List<Warning> warnings) throws java.io.FileNotFoundException {
+  public void processReport(final SensorContext context, File report, String charset, String reportRegEx,
+    Consumer<Warning> warnings) throws java.io.FileNotFoundException {
     LOG.info("Parsing '{}' format", KEY);
 
-    Scanner scanner = new Scanner(report, charset);
     Pattern p = Pattern.compile(reportRegEx, Pattern.MULTILINE);
     LOG.debug("Using pattern : '{}'", p);
-    MatchResult matchres;
-    while (scanner.findWithinHorizon(p, 0) != null) {
-      matchres = scanner.match();
+    CompilerLogScanner.scan(report, charset, p, matchres -> {
       String filename = matchres.group(1).trim();
       String line = matchres.group(2);
       String msg = matchres.group(3);
@@ -94,9 +90,8 @@ public class CxxCompilerGccParser implements CompilerParser {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Scanner-matches file='{}' line='{}' id='{}' msg={}", filename, line, id, msg);
       }
-      warnings.add(new Warning(filename, line, id, msg));
-    }
-    scanner.close();
+      warnings.accept(new Warning(filename, line, id, msg));
+    });
   }
 
   @Override
@@ -21,8 +21,6 @@ package org.sonar.cxx.sensors.compiler;
 
 import java.io.File;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -104,19 +102,17 @@ public class CxxCompilerSensor extends CxxReportSensor {
       this.language.getPluginProperty(REPORT_CHARSET_DEF), parser.defaultCharset());
     final String reportRegEx = getContextStringProperty(context,
       this.language.getPluginProperty(REPORT_REGEX_DEF), parser.defaultRegexp());
-    final List<CompilerParser.Warning> warnings = new LinkedList<>();
 
-    // Iterate through the lines of the input file
+    // Iterate through the lines of the input file, the warnings are saved while the report is read
     LOG.info("Scanner '{}' initialized with report '{}', CharSet= '{}'", parser.key(), report, reportCharset);
     try {
-      parser.processReport(context, report, reportCharset, reportRegEx, warnings);
-      for (CompilerParser.Warning w : warnings) {
+      parser.processReport(context, report, reportCharset, reportRegEx, (CompilerParser.Warning w) -> {
         if (isInputValid(w)) {
           saveUniqueViolation(context, parser.rulesRepositoryKey(), w.filename, w.line, w.id, w.msg);
         } else {
           LOG.warn("C-Compiler warning: '{}''{}'", w.id, w.msg);
         }
-      }
+      });
     } catch (java.io.FileNotFoundException | java.lang.IllegalArgumentException e) {
       LOG.error("processReport Exception: {} - not processed '{}'", report, e);
     }
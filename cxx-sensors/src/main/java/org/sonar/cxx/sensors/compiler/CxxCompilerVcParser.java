@@ -20,9 +20,7 @@
 package org.sonar.cxx.sensors.compiler;
 
 import java.io.File;
-import java.util.List;
-import java.util.Scanner;
-import java.util.regex.MatchResult;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.utils.log.Logger;
@@ -78,15 +76,12 @@ public class CxxCompilerVcParser implements CompilerParser {
    */
   @Override
   public void processReport(final SensorContext context, File report, String charset,
-    String reportRegEx, List<Warning> warnings) throws java.io.FileNotFoundException {
+    String reportRegEx, Consumer<Warning> warnings) throws java.io.FileNotFoundException {
     LOG.info("Parsing 'Visual C++' format ({})", charset);
 
-    Scanner scanner = new Scanner(report, charset);
     Pattern p = Pattern.compile(reportRegEx, Pattern.MULTILINE);
     LOG.info("Using pattern : '{}'", p);
-    MatchResult matchres;
-    while (scanner.findWithinHorizon(p, 0) != null) {
-      matchres = scanner.match();
+    CompilerLogScanner.scan(report, charset, p, matchres -> {
       String filename = removeMPPrefix(matchres.group(1).trim());
       String line = matchres.group(2);
       String id = matchres.group(3);
@@ -94,9 +89,8 @@ public class CxxCompilerVcParser implements CompilerParser {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Scanner-matches file='{}' line='{}' id='{}' msg={}", filename, line, id, msg);
       }
-      warnings.add(new Warning(filename, line, id, msg));
-    }
-    scanner.close();
+      warnings.accept(new Warning(filename, line, id, msg));
+    });
   }
 
   private static String removeMPPrefix(String fpath) {
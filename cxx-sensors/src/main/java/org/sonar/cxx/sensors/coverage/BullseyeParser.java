@@ -40,9 +40,6 @@ import org.sonar.cxx.sensors.utils.StaxParser;
 public class BullseyeParser extends CxxCoverageParser {
 
   private static final Logger LOG = Loggers.get(BullseyeParser.class);
-  private static volatile String prevLine;
-  private static int totalconditions;
-  private static int totalcoveredconditions;
 
   public BullseyeParser() {
     // no operation but necessary for list of coverage parsers 
@@ -55,17 +52,6 @@ public class BullseyeParser extends CxxCoverageParser {
   public void processReport(final SensorContext context, File report, final Map<String, CoverageMeasures> coverageData)
     throws XMLStreamException {
     LOG.debug("Parsing 'Bullseye' format");
-    StaxParser topLevelparser = new StaxParser(new StaxParser.XmlStreamHandler() {
-      /**
-       * {@inheritDoc}
-       */
-      @Override
-      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
-        rootCursor.advance();
-        collectCoverageLeafNodes(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("src"), coverageData);
-      }
-    });
-
     StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
       /**
        * {@inheritDoc}
@@ -73,170 +59,179 @@ public class BullseyeParser extends CxxCoverageParser {
       @Override
       public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
         rootCursor.advance();
-        collectCoverage2(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("folder"), coverageData);
+        new ReportWalker(coverageData).collectCoverage(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor());
       }
     });
-
-    topLevelparser.parse(report);
     parser.parse(report);
   }
 
-  private static void collectCoverageLeafNodes(String refPath, SMInputCursor folder,
-    final Map<String, CoverageMeasures> coverageData)
-    throws XMLStreamException {
+  /**
+   * Walks one report. The state of the current line is kept per report, so a parser instance can process several
+   * reports concurrently.
+   */
+  private static final class ReportWalker {
 
-    String correctPath = ensureRefPathIsCorrect(refPath);
+    private final Map<String, CoverageMeasures> coverageData;
+    private String prevLine;
+    private int totalConditions;
+    private int totalCoveredConditions;
 
-    while (folder.getNext() != null) {
-      File fileName = new File(correctPath, folder.getAttrValue("name"));
-      recTreeTopWalk(fileName, folder, coverageData);
+    ReportWalker(Map<String, CoverageMeasures> coverageData) {
+      this.coverageData = coverageData;
     }
-  }
 
-  private static void recTreeTopWalk(File fileName, SMInputCursor folder,
-    final Map<String, CoverageMeasures> coverageData)
-    throws XMLStreamException {
-    SMInputCursor child = folder.childElementCursor();
-    while (child.getNext() != null) {
-      CoverageMeasures fileMeasuresBuilderIn = CoverageMeasures.create();
+    /**
+     * Files directly below the root ("src") and folders ("folder") are collected in one pass.
+     */
+    void collectCoverage(String refPath, SMInputCursor child) throws XMLStreamException {
 
-      funcWalk(child, fileMeasuresBuilderIn);
-      coverageData.put(fileName.getPath(), fileMeasuresBuilderIn);
-    }
-  }
+      String correctPath = ensureRefPathIsCorrect(refPath);
 
-  private static void collectCoverage2(String refPath, SMInputCursor folder,
-    final Map<String, CoverageMeasures> coverageData)
-    throws XMLStreamException {
+      LinkedList<String> path = new LinkedList<>();
+      while (child.getNext() != null) {
+        String name = child.getLocalName();
+        if ("src".equals(name)) {
+          File fileName = new File(correctPath, child.getAttrValue("name"));
+          recTreeTopWalk(fileName, child);
+        } else if ("folder".equals(name)) {
+          path.add(child.getAttrValue("name"));
+          recTreeWalk(correctPath, child, path);
+          path.removeLast();
+        }
+      }
+    }
 
-    String correctPath = ensureRefPathIsCorrect(refPath);
+    private void recTreeTopWalk(File fileName, SMInputCursor folder) throws XMLStreamException {
+      SMInputCursor child = folder.childElementCursor();
+      while (child.getNext() != null) {
+        CoverageMeasures fileMeasuresBuilderIn = CoverageMeasures.create();
 
-    LinkedList<String> path = new LinkedList<>();
-    while (folder.getNext() != null) {
-      String folderName = folder.getAttrValue("name");
-      path.add(folderName);
-      recTreeWalk(correctPath, folder, path, coverageData);
-      path.removeLast();
+        funcWalk(child, fileMeasuresBuilderIn);
+        coverageData.put(fileName.getPath(), fileMeasuresBuilderIn);
+      }
     }
-  }
 
-  private static void probWalk(SMInputCursor prob, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
-    String line = prob.getAttrValue("line");
-    String kind = prob.getAttrValue("kind");
-    String event = prob.getAttrValue("event");
-    if (!line.equals(prevLine)) {
-      saveConditions(fileMeasuresBuilderIn);
+    private void probWalk(SMInputCursor prob, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
+      String line = prob.getAttrValue("line");
+      String kind = prob.getAttrValue("kind");
+      String event = prob.getAttrValue("event");
+      if (!line.equals(prevLine)) {
+        saveConditions(fileMeasuresBuilderIn);
+      }
+      updateMeasures(kind, event, line, fileMeasuresBuilderIn);
+      prevLine = line;
     }
-    updateMeasures(kind, event, line, fileMeasuresBuilderIn);
-    prevLine = line;
-  }
 
-  private static void funcWalk(SMInputCursor func, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
-    SMInputCursor prob = func.childElementCursor();
-    while (prob.getNext() != null) {
-      probWalk(prob, fileMeasuresBuilderIn);
+    private void funcWalk(SMInputCursor func, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
+      SMInputCursor prob = func.childElementCursor();
+      while (prob.getNext() != null) {
+        probWalk(prob, fileMeasuresBuilderIn);
+      }
+      saveConditions(fileMeasuresBuilderIn);
     }
-    saveConditions(fileMeasuresBuilderIn);
-  }
 
-  private static void fileWalk(SMInputCursor file, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
-    SMInputCursor func = file.childElementCursor();
-    while (func.getNext() != null) {
-      funcWalk(func, fileMeasuresBuilderIn);
+    private void fileWalk(SMInputCursor file, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
+      SMInputCursor func = file.childElementCursor();
+      while (func.getNext() != null) {
+        funcWalk(func, fileMeasuresBuilderIn);
+      }
     }
-  }
 
-  private static void recTreeWalk(String refPath, SMInputCursor folder, List<String> path,
-    final Map<String, CoverageMeasures> coverageData)
-    throws XMLStreamException {
+    private void recTreeWalk(String refPath, SMInputCursor folder, List<String> path) throws XMLStreamException {
 
-    String correctPath = ensureRefPathIsCorrect(refPath);
+      String correctPath = ensureRefPathIsCorrect(refPath);
 
-    SMInputCursor child = folder.childElementCursor();
-    while (child.getNext() != null) {
-      String folderChildName = child.getLocalName();
-      String name = child.getAttrValue("name");
-      path.add(name);
-      if ("src".equalsIgnoreCase(folderChildName)) {
-        String filePath = buildPath(path, correctPath);
-        CoverageMeasures fileMeasuresBuilderIn = CoverageMeasures.create();
-        fileWalk(child, fileMeasuresBuilderIn);
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("lines covered: '{}':'{}'", filePath, fileMeasuresBuilderIn.getCoveredLines());
-          LOG.debug("condition covered: '{}':'{}'", filePath, fileMeasuresBuilderIn.getCoveredConditions());
+      SMInputCursor child = folder.childElementCursor();
+      while (child.getNext() != null) {
+        String folderChildName = child.getLocalName();
+        String name = child.getAttrValue("name");
+        path.add(name);
+        if ("src".equalsIgnoreCase(folderChildName)) {
+          String filePath = buildPath(path, correctPath);
+          CoverageMeasures fileMeasuresBuilderIn = CoverageMeasures.create();
+          fileWalk(child, fileMeasuresBuilderIn);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("lines covered: '{}':'{}'", filePath, fileMeasuresBuilderIn.getCoveredLines());
+            LOG.debug("condition covered: '{}':'{}'", filePath, fileMeasuresBuilderIn.getCoveredConditions());
+          }
+          coverageData.put(filePath, fileMeasuresBuilderIn);
+        } else {
+          recTreeWalk(correctPath, child, path);
         }
-        coverageData.put(filePath, fileMeasuresBuilderIn);
-      } else {
-        recTreeWalk(correctPath, child, path, coverageData);
+        path.remove(path.size() - 1);
       }
-      path.remove(path.size() - 1);
     }
-  }
 
-  private static void saveConditions(CoverageMeasures fileMeasuresBuilderIn) {
-    if (totalconditions > 0) {
-      if (totalcoveredconditions == 0) {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 0);
-      } else {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 1);
+    private void saveConditions(CoverageMeasures fileMeasuresBuilderIn) {
+      if (totalConditions > 0) {
+        if (totalCoveredConditions == 0) {
+          fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 0);
+        } else {
+          fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 1);
+        }
+        fileMeasuresBuilderIn.setConditions(Integer.parseInt(prevLine), totalConditions, totalCoveredConditions);
       }
-      fileMeasuresBuilderIn.setConditions(Integer.parseInt(prevLine), totalconditions, totalcoveredconditions);
+      totalConditions = 0;
+      totalCoveredConditions = 0;
     }
-    totalconditions = 0;
-    totalcoveredconditions = 0;
-  }
 
-  private static void updateMeasures(String kind, String event, String line, CoverageMeasures fileMeasuresBuilderIn) {
+    private void updateMeasures(String kind, String event, String line, CoverageMeasures fileMeasuresBuilderIn) {
 
-    switch (kind.toLowerCase(Locale.ENGLISH)) {
-      case "decision":
-      case "condition":
-        totalconditions += 2;
-        setTotalCoveredConditions(event);
-        break;
-      case "catch":
-      case "for-range-body":
-      case "switch-label":
-      case "try":
-        totalconditions++;
-        if ("full".equalsIgnoreCase(event)) {
-          totalcoveredconditions++;
-        }
-        break;
-      case "function":
-        int lineHits = 0;
-        if ("full".equalsIgnoreCase(event)) {
-          lineHits = 1;
-        }
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(line), lineHits);
-        break;
-      case "constant":
-        break;
-      default:
-        LOG.warn("BullseyeParser unknown probe kind '{}'", kind);
+      switch (kind.toLowerCase(Locale.ENGLISH)) {
+        case "decision":
+        case "condition":
+          totalConditions += 2;
+          addCoveredConditions(event);
+          break;
+        case "catch":
+        case "for-range-body":
+        case "switch-label":
+        case "try":
+          totalConditions++;
+          if ("full".equalsIgnoreCase(event)) {
+            totalCoveredConditions++;
+          }
+          break;
+        case "function":
+          int lineHits = 0;
+          if ("full".equalsIgnoreCase(event)) {
+            lineHits = 1;
+          }
+          fileMeasuresBuilderIn.setHits(Integer.parseInt(line), lineHits);
+          break;
+        case "constant":
+          break;
+        default:
+          LOG.warn("BullseyeParser unknown probe kind '{}'", kind);
+      }
     }
-  }
 
-  /**
-   * @param event
-   */
-  private static void setTotalCoveredConditions(String event) {
-    switch (event.toLowerCase(Locale.ENGLISH)) {
-      case "full":
-        totalcoveredconditions += 2;
-        break;
-      case "true":
-      case "false":
-        totalcoveredconditions++;
-        break;
-      case "none":
-        // do nothing
-        break;
-      default:
-        LOG.warn("BullseyeParser unknown probe event '{}'", event);
+    /**
+     * @param event
+     */
+    private void addCoveredConditions(String event) {
+      switch (event.toLowerCase(Locale.ENGLISH)) {
+        case "full":
+          totalCoveredConditions += 2;
+          break;
+        case "true":
+        case "false":
+          totalCoveredConditions++;
+          break;
+        case "none":
+          // do nothing
+          break;
+        default:
+          LOG.warn("BullseyeParser unknown probe event '{}'", event);
+      }
     }
   }
 
+  @Override
+  public String getRootElement() {
+    return "BullseyeCoverage";
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
@@ -21,9 +21,8 @@ package org.sonar.cxx.sensors.coverage;
 
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.xml.stream.XMLStreamException;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
@@ -39,7 +38,6 @@ import org.sonar.cxx.sensors.utils.StaxParser;
 public class CoberturaParser extends CxxCoverageParser {
 
   private static final Logger LOG = Loggers.get(CoberturaParser.class);
-  private String baseDir;
 
   public CoberturaParser() {
     // no operation but necessary for list of coverage parsers 
@@ -47,56 +45,59 @@ public class CoberturaParser extends CxxCoverageParser {
 
   /**
    * {@inheritDoc}
+   *
+   * The report is read in a single pass. The line data is collected per file name as it appears in the report, the
+   * file names are resolved after the whole report is read: the {@code source} element may follow the packages. The
+   * parser keeps no state between reports, so it can process several reports concurrently.
    */
   @Override
   public void processReport(final SensorContext context, File report, final Map<String, CoverageMeasures> coverageData)
     throws XMLStreamException {
     LOG.debug("Parsing 'Cobertura' format");
-    baseDir = context.fileSystem().baseDir().getAbsolutePath();
+    String[] baseDir = {context.fileSystem().baseDir().getAbsolutePath()};
+    Map<String, CoverageMeasures> measuresByFile = new LinkedHashMap<>();
 
-    StaxParser sourceParser = new StaxParser((SMHierarchicCursor rootCursor) -> {
+    StaxParser parser = new StaxParser((SMHierarchicCursor rootCursor) -> {
       rootCursor.advance();
-      readBaseDir(rootCursor.descendantElementCursor("source"));
-    });
-    sourceParser.parse(report);
-
-    StaxParser packageParser = new StaxParser((SMHierarchicCursor rootCursor) -> {
-      rootCursor.advance();
-      collectPackageMeasures(baseDir, rootCursor.descendantElementCursor("package"), coverageData);
+      SMInputCursor element = rootCursor.descendantElementCursor();
+      boolean hasSource = false;
+      while (element.getNext() != null) {
+        String name = element.getLocalName();
+        if (!hasSource && "source".equals(name)) {
+          hasSource = readBaseDir(element, baseDir);
+        } else if ("package".equals(name)) {
+          collectFileMeasures(element.descendantElementCursor("class"), measuresByFile);
+        }
+      }
     });
-    packageParser.parse(report);
-  }
+    parser.parse(report);
 
-  private void readBaseDir(SMInputCursor source) throws XMLStreamException {
-    while (source.getNext() != null) {
-      String sourceValue = source.getElemStringValue().trim();
-      if (!sourceValue.isEmpty()) {
-        baseDir = Paths.get(baseDir).resolve(sourceValue).normalize().toString();
-        break;
+    for (Map.Entry<String, CoverageMeasures> entry : measuresByFile.entrySet()) {
+      String normalPath = CxxUtils.normalizePathFull(entry.getKey(), baseDir[0]);
+      if (normalPath != null) {
+        CoverageMeasures measures = coverageData.putIfAbsent(normalPath, entry.getValue());
+        if (measures != null) {
+          measures.merge(entry.getValue());
+        }
       }
     }
   }
 
-  private static void collectPackageMeasures(final String baseDir, SMInputCursor pack,
-    Map<String, CoverageMeasures> coverageData)
-    throws XMLStreamException {
-    while (pack.getNext() != null) {
-      collectFileMeasures(baseDir, pack.descendantElementCursor("class"), coverageData);
+  private static boolean readBaseDir(SMInputCursor source, String[] baseDir) throws XMLStreamException {
+    String sourceValue = source.getElemStringValue().trim();
+    if (!sourceValue.isEmpty()) {
+      baseDir[0] = Paths.get(baseDir[0]).resolve(sourceValue).normalize().toString();
+      return true;
     }
+    return false;
   }
 
-  private static void collectFileMeasures(final String baseDir, SMInputCursor clazz,
-    Map<String, CoverageMeasures> coverageData)
+  private static void collectFileMeasures(SMInputCursor clazz, Map<String, CoverageMeasures> measuresByFile)
     throws XMLStreamException {
     while (clazz.getNext() != null) {
-      String normalPath = CxxUtils.normalizePathFull(clazz.getAttrValue("filename"), baseDir);
-      if (normalPath != null) {
-        CoverageMeasures builder = coverageData.get(normalPath);
-        if (builder == null) {
-          builder = CoverageMeasures.create();
-          coverageData.put(normalPath, builder);
-        }
-        collectFileData(clazz, builder);
+      String filename = clazz.getAttrValue("filename");
+      if (filename != null) {
+        collectFileData(clazz, measuresByFile.computeIfAbsent(filename, k -> CoverageMeasures.create()));
       }
     }
   }
@@ -115,17 +116,24 @@ public class CoberturaParser extends CxxCoverageParser {
 
       String isBranch = line.getAttrValue("branch");
       String text = line.getAttrValue("condition-coverage");
-      if (text != null && "true".equals(isBranch) && !text.trim().isEmpty()) {
-        Pattern p = Pattern.compile("\\((.*?)\\)");
-        Matcher m = p.matcher(text);
-        if (m.find()) {
-          String[] conditions = m.group(1).split("/");
-          builder.setConditions(lineId, Integer.parseInt(conditions[1]), Integer.parseInt(conditions[0]));
+      if (text != null && "true".equals(isBranch)) {
+        // e.g. "50% (1/2)"
+        int open = text.indexOf('(');
+        int close = open < 0 ? -1 : text.indexOf(')', open + 1);
+        int slash = close < 0 ? -1 : text.indexOf('/', open + 1);
+        if (slash >= 0 && slash < close) {
+          builder.setConditions(lineId, Integer.parseInt(text.substring(slash + 1, close)),
+            Integer.parseInt(text.substring(open + 1, slash)));
         }
       }
     }
   }
 
+  @Override
+  public String getRootElement() {
+    return "coverage";
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
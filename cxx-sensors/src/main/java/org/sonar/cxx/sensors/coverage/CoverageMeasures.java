@@ -19,20 +19,32 @@
  */
 package org.sonar.cxx.sensors.coverage;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
+ * Coverage measures of one file.
+ *
+ * The measures are stored column-wise in int arrays (line, hits, conditions and covered conditions), in the order the
+ * lines were added. An open addressing table maps the line numbers to their index.
  *
  * @author jocs
  */
 final class CoverageMeasures {
 
-  private final Map<Integer, CoverageMeasure> lineMeasures = new HashMap<>();
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int[] lines = new int[INITIAL_CAPACITY];
+  private int[] hits = new int[INITIAL_CAPACITY];
+  private int[] conditions = new int[INITIAL_CAPACITY];
+  private int[] coveredConditions = new int[INITIAL_CAPACITY];
+  private int size;
+  // index + 1 of the line, 0 for a free slot
+  private int[] table = new int[INITIAL_CAPACITY * 2];
 
   private CoverageMeasures() {
     // empty
@@ -42,41 +54,143 @@ final class CoverageMeasures {
     return new CoverageMeasures();
   }
 
+  static CoverageMeasures read(DataInput in) throws IOException {
+    CoverageMeasures measures = new CoverageMeasures();
+    for (int i = in.readInt(); i > 0; i--) {
+      int line = in.readInt();
+      measures.setHits(line, in.readInt());
+      measures.setConditions(line, in.readInt(), in.readInt());
+    }
+    return measures;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      out.writeInt(lines[i]);
+      out.writeInt(hits[i]);
+      out.writeInt(conditions[i]);
+      out.writeInt(coveredConditions[i]);
+    }
+  }
+
+  /**
+   * @return approximate heap size in bytes
+   */
+  long memorySize() {
+    return 64L + 4L * (4L * lines.length + table.length);
+  }
+
+  /**
+   * Adds the hits to the hits of the line.
+   */
   void setHits(int lineId, int hits) {
-    lineMeasures.computeIfAbsent(lineId, v -> new CoverageMeasure(lineId));
-    CoverageMeasure coverageMeasure = lineMeasures.get(lineId);
-    coverageMeasure.setHits(hits);
+    // index() may grow the arrays, it has to be called before the array is accessed
+    int i = index(lineId);
+    this.hits[i] += hits;
   }
 
   void setConditions(int lineId, int totalConditions, int coveredConditions) {
-    lineMeasures.computeIfAbsent(lineId, v -> new CoverageMeasure(lineId));
-    CoverageMeasure coverageMeasure = lineMeasures.get(lineId);
-    coverageMeasure.setConditions(totalConditions, coveredConditions);
+    int i = index(lineId);
+    this.conditions[i] = totalConditions;
+    this.coveredConditions[i] = coveredConditions;
+  }
+
+  /**
+   * Merges the measures of the same file from another report: the hits are summed up, for the conditions the higher
+   * number of conditions and covered conditions is kept.
+   */
+  void merge(CoverageMeasures other) {
+    for (int j = 0; j < other.size; j++) {
+      int i = index(other.lines[j]);
+      hits[i] += other.hits[j];
+      conditions[i] = Math.max(conditions[i], other.conditions[j]);
+      coveredConditions[i] = Math.max(coveredConditions[i], other.coveredConditions[j]);
+    }
+  }
+
+  /**
+   * @return number of lines with measures, the measures are accessed by index from 0 to size - 1
+   */
+  int size() {
+    return size;
+  }
+
+  int getLine(int index) {
+    return lines[index];
   }
 
-  Collection<CoverageMeasure> getCoverageMeasures() {
-    Map<Integer, CoverageMeasure> measures = new HashMap<>();
-    measures.putAll(lineMeasures);
-    return measures.values();
+  int getHits(int index) {
+    return hits[index];
+  }
+
+  int getConditions(int index) {
+    return conditions[index];
+  }
+
+  int getCoveredConditions(int index) {
+    return coveredConditions[index];
   }
 
   Set<Integer> getCoveredLines() {
-    Set<Integer> coveredLines = Sets.newHashSet();
-    lineMeasures.forEach((key, value) -> {
-      if (value.getHits() != 0) {
-        coveredLines.add(value.getLine());
+    Set<Integer> coveredLines = new HashSet<>();
+    for (int i = 0; i < size; i++) {
+      if (hits[i] != 0) {
+        coveredLines.add(lines[i]);
       }
-    });
-    return ImmutableSet.copyOf(coveredLines);
+    }
+    return coveredLines;
   }
 
   Set<Integer> getCoveredConditions() {
-    Set<Integer> coveredConditionLines = Sets.newHashSet();
-    lineMeasures.forEach((key, value) -> {
-      if (value.getCoveredConditions() != 0) {
-        coveredConditionLines.add(value.getLine());
+    Set<Integer> coveredConditionLines = new HashSet<>();
+    for (int i = 0; i < size; i++) {
+      if (coveredConditions[i] != 0) {
+        coveredConditionLines.add(lines[i]);
+      }
+    }
+    return coveredConditionLines;
+  }
+
+  private int index(int line) {
+    int mask = table.length - 1;
+    int slot = hash(line) & mask;
+    while (table[slot] != 0) {
+      int i = table[slot] - 1;
+      if (lines[i] == line) {
+        return i;
       }
-    });
-    return ImmutableSet.copyOf(coveredConditionLines);
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == lines.length) {
+      int capacity = size * 2;
+      lines = Arrays.copyOf(lines, capacity);
+      hits = Arrays.copyOf(hits, capacity);
+      conditions = Arrays.copyOf(conditions, capacity);
+      coveredConditions = Arrays.copyOf(coveredConditions, capacity);
+      rehash(capacity * 2);
+      return index(line);
+    }
+    lines[size] = line;
+    table[slot] = ++size;
+    return size - 1;
+  }
+
+  private void rehash(int tableSize) {
+    table = new int[tableSize];
+    int mask = tableSize - 1;
+    for (int i = 0; i < size; i++) {
+      int slot = hash(lines[i]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+    }
+  }
+
+  private static int hash(int line) {
+    int h = line * 0x9E3779B9;
+    return h ^ (h >>> 16);
   }
 }
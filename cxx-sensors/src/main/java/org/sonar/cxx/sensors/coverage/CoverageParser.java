@@ -21,6 +21,7 @@ package org.sonar.cxx.sensors.coverage;
 
 import java.io.File;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 import javax.xml.stream.XMLStreamException;
 import org.sonar.api.batch.sensor.SensorContext;
 
@@ -39,4 +40,15 @@ public interface CoverageParser {
    */
   void processReport(final SensorContext context, File report, Map<String, CoverageMeasures> coverageData)
     throws XMLStreamException;
+
+  /**
+   * Name of the root element of the reports in the format of this parser. Used to select the parser without parsing
+   * the whole report.
+   *
+   * @return local name of the root element, null if the parser has to be tried on reports with unknown root element
+   */
+  @CheckForNull
+  default String getRootElement() {
+    return null;
+  }
 }
@@ -19,24 +19,270 @@
  */
 package org.sonar.cxx.sensors.coverage;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.Startable;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
 /**
+ * Cache of the parsed coverage reports, shared by all modules of the analysis: a report used by several modules is
+ * parsed only once.
+ *
+ * A report is identified by its absolute path, size and modification time. The cached measures are bounded by a
+ * memory budget. When the budget is exceeded, the least recently used reports are written to a temporary directory and
+ * read again from there when needed. The cache and its temporary directory are removed when the analysis ends, see
+ * {@link #stop()}. Thread-safe.
  *
  * @author jocs
  */
 @ScannerSide
-public class CxxCoverageCache {
+public class CxxCoverageCache implements Startable {
+
+  private static final Logger LOG = Loggers.get(CxxCoverageCache.class);
+  public static final long DEFAULT_MAX_SIZE_MB = 128;
 
-  private static final Map<String, Map<String, CoverageMeasures>> CACHE_UNIT = new HashMap<>();
+  private final Store store;
 
   public CxxCoverageCache() {
+    this(DEFAULT_MAX_SIZE_MB * 1024 * 1024);
+  }
+
+  /**
+   * @param maxSizeBytes memory budget of the cached measures
+   */
+  CxxCoverageCache(long maxSizeBytes) {
+    store = new Store(maxSizeBytes);
+  }
+
+  @Override
+  public void start() {
+    // reports are parsed and cached on demand
+  }
+
+  /**
+   * Called by the container at the end of the analysis: drops the cached measures and deletes the reports moved to
+   * disk.
+   */
+  @Override
+  public void stop() {
+    store.clear();
+  }
+
+  /**
+   * @param report coverage report
+   * @return measures of the report by file name, null if the report is not cached or has changed since. The measures
+   * must not be modified.
+   */
+  @CheckForNull
+  public Map<String, CoverageMeasures> get(File report) {
+    return store.get(report);
+  }
+
+  /**
+   * @param report coverage report
+   * @param measures parsed measures of the report by file name, must not be modified afterwards
+   */
+  public void put(File report, Map<String, CoverageMeasures> measures) {
+    store.put(report, measures);
+  }
+
+  /**
+   * @return number of reports kept in memory
+   */
+  int getMemoryEntries() {
+    return store.memory.size();
+  }
+
+  /**
+   * @return number of reports written to disk
+   */
+  int getDiskEntries() {
+    return store.disk.size();
+  }
+
+  /**
+   * @return directory of the reports written to disk, null if there are none
+   */
+  @CheckForNull
+  File getDirectory() {
+    synchronized (store) {
+      return store.directory;
+    }
   }
 
-  public Map<String, Map<String, CoverageMeasures>> unitCoverageCache() {
-    return CACHE_UNIT;
+  private static final class Store {
+
+    private final long maxSize;
+    private long size;
+    // access order, the eldest entry is the least recently used one
+    private final Map<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Entry> disk = new HashMap<>();
+    private File directory;
+    // never reused, the file of a report must not be overwritten by another report
+    private int nextFileNumber;
+
+    Store(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    @CheckForNull
+    synchronized Map<String, CoverageMeasures> get(File report) {
+      String path = report.getAbsolutePath();
+      Entry entry = memory.get(path);
+      if (entry != null) {
+        if (entry.matches(report)) {
+          return entry.measures;
+        }
+        remove(path);
+        return null;
+      }
+
+      entry = disk.get(path);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.matches(report)) {
+        Map<String, CoverageMeasures> measures = load(entry.file);
+        if (measures != null) {
+          add(path, new Entry(entry.length, entry.lastModified, measures));
+          return measures;
+        }
+      }
+      remove(path);
+      return null;
+    }
+
+    synchronized void put(File report, Map<String, CoverageMeasures> measures) {
+      String path = report.getAbsolutePath();
+      remove(path);
+      add(path, new Entry(report.length(), report.lastModified(), measures));
+    }
+
+    private void add(String path, Entry entry) {
+      memory.put(path, entry);
+      size += entry.memorySize;
+      Iterator<Map.Entry<String, Entry>> eldest = memory.entrySet().iterator();
+      while (size > maxSize && memory.size() > 1) {
+        Map.Entry<String, Entry> evicted = eldest.next();
+        eldest.remove();
+        size -= evicted.getValue().memorySize;
+        spill(evicted.getKey(), evicted.getValue());
+      }
+    }
+
+    private void remove(String path) {
+      Entry entry = memory.remove(path);
+      if (entry != null) {
+        size -= entry.memorySize;
+      }
+      // the file of a disk entry is kept until it is overwritten or the analysis ends
+    }
+
+    synchronized void clear() {
+      memory.clear();
+      disk.clear();
+      size = 0;
+      if (directory != null) {
+        FileUtils.deleteQuietly(directory);
+        directory = null;
+      }
+    }
+
+    private void spill(String path, Entry entry) {
+      try {
+        Entry stored = disk.get(path);
+        File file;
+        if (stored != null) {
+          file = stored.file;
+        } else {
+          if (directory == null) {
+            directory = Files.createTempDirectory("cxx-coverage-cache").toFile();
+          }
+          file = new File(directory, (nextFileNumber++) + ".bin");
+        }
+        save(file, entry.measures);
+        disk.put(path, new Entry(entry.length, entry.lastModified, file));
+        LOG.debug("Coverage cache: '{}' moved to disk", path);
+      } catch (IOException e) {
+        disk.remove(path);
+        LOG.debug("Coverage cache: cannot write '{}' to disk: {}", path, e.getMessage());
+      }
+    }
+
+    private static void save(File file, Map<String, CoverageMeasures> measures) throws IOException {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        out.writeInt(measures.size());
+        for (Map.Entry<String, CoverageMeasures> entry : measures.entrySet()) {
+          out.writeUTF(entry.getKey());
+          entry.getValue().write(out);
+        }
+      }
+    }
+
+    @CheckForNull
+    private static Map<String, CoverageMeasures> load(File file) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        Map<String, CoverageMeasures> measures = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+          String path = in.readUTF();
+          measures.put(path, CoverageMeasures.read(in));
+        }
+        return measures;
+      } catch (IOException e) {
+        LOG.debug("Coverage cache: cannot read '{}': {}", file, e.getMessage());
+        return null;
+      }
+    }
   }
 
+  private static final class Entry {
+
+    private final long length;
+    private final long lastModified;
+    @Nullable
+    private final Map<String, CoverageMeasures> measures;
+    private final long memorySize;
+    @Nullable
+    private final File file;
+
+    Entry(long length, long lastModified, Map<String, CoverageMeasures> measures) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.measures = measures;
+      long bytes = 0;
+      for (Map.Entry<String, CoverageMeasures> entry : measures.entrySet()) {
+        bytes += 64L + 2L * entry.getKey().length() + entry.getValue().memorySize();
+      }
+      this.memorySize = bytes;
+      this.file = null;
+    }
+
+    Entry(long length, long lastModified, File file) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.measures = null;
+      this.memorySize = 0;
+      this.file = file;
+    }
+
+    boolean matches(File report) {
+      return length == report.length() && lastModified == report.lastModified();
+    }
+  }
 }
@@ -21,11 +21,14 @@ package org.sonar.cxx.sensors.coverage;
 
 import java.io.File;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -36,9 +39,11 @@ import org.sonar.api.utils.PathUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 import org.sonar.cxx.sensors.utils.CxxUtils;
 import org.sonar.cxx.sensors.utils.EmptyReportException;
+import org.sonar.cxx.sensors.utils.StaxParser;
 
 /**
  * {@inheritDoc}
@@ -95,53 +100,114 @@ public class CxxCoverageSensor extends CxxReportSensor {
       }
 
       List<File> reports = getReports(context.config(), context.fileSystem().baseDir(), getReportPathKey());
-      coverageMeasures = processReports(context, reports, this.cache.unitCoverageCache());
-      saveMeasures(context, coverageMeasures);
+      coverageMeasures = processReports(context, reports);
+      saveMeasures(context, coverageMeasures, CxxInputFileResolver.of(context));
     }
   }
 
-  private Map<String, CoverageMeasures> processReports(final SensorContext context, List<File> reports,
-    Map<String, Map<String, CoverageMeasures>> cacheCov) {
+  /**
+   * With more than one report thread the reports are parsed concurrently. The measures are merged on the calling
+   * thread in the order of the reports, so the result is the same as in sequential processing.
+   */
+  private Map<String, CoverageMeasures> processReports(final SensorContext context, List<File> reports) {
     Map<String, CoverageMeasures> measuresTotal = new HashMap<>();
+    int threads = getReportThreads(reports.size());
+    if (threads > 1) {
+      processConcurrently(reports, threads, report -> getMeasures(context, report),
+        (report, measures) -> merge(measuresTotal, measures.get()));
+    } else {
+      for (File report : reports) {
+        merge(measuresTotal, getMeasures(context, report));
+      }
+    }
+    return measuresTotal;
+  }
 
-    for (File report : reports) {
-      if (!cacheCov.containsKey(report.getAbsolutePath())) {
-        for (CoverageParser parser : parsers) {
-          try {
-            parseCoverageReport(parser, context, report, measuresTotal);
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("cached measures for '{}' : current cache content data = '{}'", report.getAbsolutePath(),
-                cacheCov.size());
-            }
-            cacheCov.put(report.getAbsolutePath(), measuresTotal);
-            // Only use first coverage parser which handles the data correctly
-            break;
-          } catch (EmptyReportException e) {
-            LOG.debug("Report is empty {}", e);
+  /**
+   * @return measures of the report from the cache or parsed, null if no parser can handle the report
+   */
+  @CheckForNull
+  private Map<String, CoverageMeasures> getMeasures(final SensorContext context, File report) {
+    Map<String, CoverageMeasures> measuresForReport = cache.get(report);
+    if (measuresForReport == null) {
+      for (CoverageParser parser : selectParsers(report)) {
+        try {
+          measuresForReport = parseCoverageReport(parser, context, report);
+          cache.put(report, measuresForReport);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("cached measures for '{}'", report.getAbsolutePath());
           }
-        }
-        if (cacheCov.get(report.getAbsolutePath()) != null) {
-          measuresTotal.putAll(cacheCov.get(report.getAbsolutePath()));
-        }
-      } else {
-        measuresTotal = cacheCov.get(report.getAbsolutePath());
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Processing report '{}' skipped - already in cache", report);
+          // Only use first coverage parser which handles the data correctly
+          break;
+        } catch (EmptyReportException e) {
+          LOG.debug("Report is empty {}", e);
         }
       }
+    } else if (LOG.isDebugEnabled()) {
+      LOG.debug("Processing report '{}' skipped - already in cache", report);
+    }
+    return measuresForReport;
+  }
+
+  private static void merge(Map<String, CoverageMeasures> measuresTotal,
+    @Nullable Map<String, CoverageMeasures> measuresForReport) {
+    if (measuresForReport != null) {
+      // the cached measures are not modified, files in several reports are merged into a new instance
+      for (Map.Entry<String, CoverageMeasures> entry : measuresForReport.entrySet()) {
+        measuresTotal.computeIfAbsent(entry.getKey(), k -> CoverageMeasures.create()).merge(entry.getValue());
+      }
     }
-    return measuresTotal;
+  }
+
+  /**
+   * Reads only the root element of the report to select the matching parser(s). Each report is parsed once by the
+   * parser of its format, the remaining parsers are tried only if the root element is not known.
+   */
+  private List<CoverageParser> selectParsers(File report) {
+    String rootElement;
+    try {
+      rootElement = readRootElement(report);
+    } catch (XMLStreamException e) {
+      LOG.debug("Coverage report '{}' cannot be parsed: {}", report, e.getMessage());
+      return Collections.emptyList();
+    }
+
+    List<CoverageParser> selected = new LinkedList<>();
+    for (CoverageParser parser : parsers) {
+      if (rootElement != null && rootElement.equals(parser.getRootElement())) {
+        selected.add(parser);
+      }
+    }
+    if (selected.isEmpty()) {
+      LOG.debug("Unknown root element '{}' of coverage report '{}', trying all parsers", rootElement, report);
+      return parsers;
+    }
+    LOG.info("Detected format '{}' of coverage report '{}'", selected.get(0), report);
+    return selected;
+  }
+
+  @CheckForNull
+  private static String readRootElement(File report) throws XMLStreamException {
+    String[] rootElement = new String[1];
+    // the handler stops after the first element, only the first buffer of the report is read
+    StaxParser probe = new StaxParser(rootCursor -> {
+      if (rootCursor.getNext() != null) {
+        rootElement[0] = rootCursor.getLocalName();
+      }
+    });
+    probe.parse(report);
+    return rootElement[0];
   }
 
   /**
    * @param parser
    * @param context
    * @param report
-   * @param measuresTotal
-   * @return true if report was parsed and results are available otherwise false
+   * @return measures of the report
+   * @throws EmptyReportException if the report cannot be parsed by the parser or has no results
    */
-  private static void parseCoverageReport(CoverageParser parser, final SensorContext context, File report,
-    Map<String, CoverageMeasures> measuresTotal) {
+  private static Map<String, CoverageMeasures> parseCoverageReport(CoverageParser parser,
+    final SensorContext context, File report) {
     Map<String, CoverageMeasures> measuresForReport = new HashMap<>();
     try {
       parser.processReport(context, report, measuresForReport);
@@ -152,18 +218,20 @@ public class CxxCoverageSensor extends CxxReportSensor {
     if (measuresForReport.isEmpty()) {
       throw new EmptyReportException("Coverage report " + report + " result is empty (parsed by " + parser + ")");
     }
+    // e.g. source files without ranges in the Visual Studio format
+    measuresForReport.values().removeIf(Objects::isNull);
 
-    measuresTotal.putAll(measuresForReport);
     LOG.info("Added coverage report '{}' (parsed by: {})", report, parser);
+    return measuresForReport;
   }
 
   private void saveMeasures(SensorContext context,
-    Map<String, CoverageMeasures> coverageMeasures) {
+    Map<String, CoverageMeasures> coverageMeasures, CxxInputFileResolver resolver) {
     for (Map.Entry<String, CoverageMeasures> entry : coverageMeasures.entrySet()) {
       String filePath = PathUtils.sanitize(entry.getKey());
       if (filePath != null) {
-        filePath = CxxUtils.normalizePathFull(filePath, context.fileSystem().baseDir().getAbsolutePath());
-        InputFile cxxFile = context.fileSystem().inputFile(context.fileSystem().predicates().hasPath(filePath));
+        InputFile cxxFile = resolver.getInputFile(filePath);
+        filePath = resolver.getNormalizedPath(filePath);
         if (LOG.isDebugEnabled()) {
           LOG.debug("save coverage measure for file: '{}' cxxFile = '{}'", filePath, cxxFile);
         }
@@ -171,12 +239,14 @@ public class CxxCoverageSensor extends CxxReportSensor {
 
           NewCoverage newCoverage = context.newCoverage().onFile(cxxFile);
 
-          Collection<CoverageMeasure> measures = entry.getValue().getCoverageMeasures();
+          CoverageMeasures measures = entry.getValue();
           if (LOG.isDebugEnabled()) {
             LOG.debug("Saving '{}' coverage measures for file '{}'", measures.size(), filePath);
           }
 
-          measures.forEach((CoverageMeasure measure) -> checkCoverage(newCoverage, measure));
+          for (int i = 0; i < measures.size(); i++) {
+            checkCoverage(newCoverage, measures, i);
+          }
 
           try {
             newCoverage.save();
@@ -188,7 +258,7 @@ public class CxxCoverageSensor extends CxxReportSensor {
         } else {
           if (LOG.isDebugEnabled()) {
             LOG.debug("Cannot find the file '{}', ignoring coverage measures", filePath);
-          } else if (filePath.startsWith(context.fileSystem().baseDir().getAbsolutePath())) {
+          } else if (filePath != null && filePath.startsWith(context.fileSystem().baseDir().getAbsolutePath())) {
             LOG.warn("Cannot find the file '{}', ignoring coverage measures", filePath);
           }
         }
@@ -198,19 +268,24 @@ public class CxxCoverageSensor extends CxxReportSensor {
         }
       }
     }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Input file resolution: {} hits, {} misses", resolver.getHits(), resolver.getMisses());
+    }
   }
 
   /**
    * @param newCoverage
-   * @param measure
+   * @param measures
+   * @param index of the line in the measures
    */
-  private void checkCoverage(NewCoverage newCoverage, CoverageMeasure measure) {
+  private void checkCoverage(NewCoverage newCoverage, CoverageMeasures measures, int index) {
+    int line = measures.getLine(index);
     try {
-      newCoverage.lineHits(measure.getLine(), measure.getHits());
-      newCoverage.conditions(measure.getLine(), measure.getConditions(), measure.getCoveredConditions());
+      newCoverage.lineHits(line, measures.getHits(index));
+      newCoverage.conditions(line, measures.getConditions(index), measures.getCoveredConditions(index));
     } catch (RuntimeException ex) {
       LOG.error("Cannot save Conditions Hits for Line '{}' , ignoring measure. ",
-        measure.getLine(), ex.getMessage());
+        line, ex.getMessage());
       CxxUtils.validateRecovery(ex, language);
     }
   }
@@ -133,6 +133,11 @@ public class VisualStudioParser extends CxxCoverageParser {
     }
   }
 
+  @Override
+  public String getRootElement() {
+    return "results";
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
@@ -21,7 +21,6 @@ package org.sonar.cxx.sensors.drmemory;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
-import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.utils.log.Logger;
@@ -29,8 +28,8 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
 import org.sonar.cxx.sensors.drmemory.DrMemoryParser.DrMemoryError;
 import org.sonar.cxx.sensors.drmemory.DrMemoryParser.DrMemoryError.Location;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
-import org.sonar.cxx.sensors.utils.CxxUtils;
 
 /**
  * Dr. Memory is a memory monitoring tool capable of identifying memory-related programming errors such as accesses of
@@ -94,11 +93,8 @@ public class CxxDrMemorySensor extends CxxReportSensor {
     }
   }
 
-  private static boolean isFileInAnalysis(SensorContext context, Location errorLocation) {
-    String root = context.fileSystem().baseDir().getAbsolutePath();
-    String normalPath = CxxUtils.normalizePathFull(errorLocation.getFile(), root);
-    InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().is(new File(normalPath)));
-    return inputFile != null;
+  private boolean isFileInAnalysis(SensorContext context, Location errorLocation) {
+    return getInputFileResolver(context).getInputFile(errorLocation.getFile()) != null;
   }
 
   @Override
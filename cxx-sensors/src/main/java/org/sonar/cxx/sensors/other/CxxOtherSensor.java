@@ -24,11 +24,14 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -112,6 +115,8 @@ public class CxxOtherSensor extends CxxReportSensor {
   }
 
   public void transformFiles(final File baseDir, SensorContext context) {
+    // the stylesheets are compiled once per analysis
+    Map<String, Templates> compiled = new HashMap<>();
     for (int i = 1; i < MAX_STYLESHEETS; i++) {
       String stylesheetKey = this.language.getPluginProperty(OTHER_XSLT_KEY + i + STYLESHEET_KEY);
       String inputKey = this.language.getPluginProperty(OTHER_XSLT_KEY + i + INPUT_KEY);
@@ -139,7 +144,7 @@ public class CxxOtherSensor extends CxxReportSensor {
         LOG.debug("Converting " + stylesheet + " with " + inputs + " to " + outputs + ".");
       }
 
-      transformFileList(baseDir.getAbsolutePath(), stylesheet, inputs, outputs);
+      transformFileList(baseDir.getAbsolutePath(), stylesheet, inputs, outputs, compiled);
     }
   }
 
@@ -196,20 +201,71 @@ public class CxxOtherSensor extends CxxReportSensor {
     return true;
   }
 
-  private void transformFileList(final String baseDir, String stylesheet, List<File> inputs, List<String> outputs) {
-    for (int j = 0; j < inputs.size(); j++) {
+  /**
+   * The stylesheet is compiled once for all inputs. With more than one report thread the inputs are transformed
+   * concurrently, errors are reported in the order of the inputs.
+   */
+  private void transformFileList(final String baseDir, String stylesheet, List<File> inputs, List<String> outputs,
+    Map<String, Templates> compiled) {
+    Templates templates = compile(stylesheet, compiled);
+    if (templates == null) {
+      return;
+    }
+
+    int threads = getReportThreads(inputs.size());
+    if (threads > 1) {
+      List<Integer> indexes = new ArrayList<>();
+      for (int j = 0; j < inputs.size(); j++) {
+        indexes.add(j);
+      }
+      // a failed transformation is returned and reported without stopping the others
+      processConcurrently(indexes, threads, j -> {
+        try {
+          CxxUtils.transformFile(templates, inputs.get(j), new File(resolveFilename(baseDir, outputs.get(j))));
+          return null;
+        } catch (TransformerException e) {
+          return e;
+        }
+      }, (j, result) -> {
+        TransformerException failure = result.get();
+        if (failure != null) {
+          transformationFailed(failure);
+        }
+      });
+    } else {
+      for (int j = 0; j < inputs.size(); j++) {
+        try {
+          String normalizedOutputFilename = resolveFilename(baseDir, outputs.get(j));
+          CxxUtils.transformFile(templates, inputs.get(j), new File(normalizedOutputFilename));
+        } catch (TransformerException e) {
+          transformationFailed(e);
+        }
+      }
+    }
+  }
+
+  @CheckForNull
+  private Templates compile(String stylesheet, Map<String, Templates> compiled) {
+    Templates templates = compiled.get(stylesheet);
+    if (templates == null) {
       try {
-        String normalizedOutputFilename = resolveFilename(baseDir, outputs.get(j));
-        CxxUtils.transformFile(new StreamSource(new File(stylesheet)), inputs.get(j), new File(normalizedOutputFilename));
-      } catch (TransformerException e) {
-        String msg = new StringBuilder()
-          .append("Cannot transform report files: '")
-          .append(e)
-          .append("'")
-          .toString();
-        LOG.error(msg);
-        CxxUtils.validateRecovery(e, this.language);
+        templates = CxxUtils.newTemplates(new File(stylesheet).toURI().toURL());
+      } catch (IOException | TransformerException e) {
+        transformationFailed(e);
+        return null;
       }
+      compiled.put(stylesheet, templates);
     }
+    return templates;
+  }
+
+  private void transformationFailed(Exception e) {
+    String msg = new StringBuilder()
+      .append("Cannot transform report files: '")
+      .append(e)
+      .append("'")
+      .toString();
+    LOG.error(msg);
+    CxxUtils.validateRecovery(e, this.language);
   }
 }
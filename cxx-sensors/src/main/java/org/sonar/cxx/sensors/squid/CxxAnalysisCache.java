@@ -0,0 +1,523 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.squid;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.sensors.visitors.CxxFileDataRecorder;
+import org.sonar.squidbridge.api.SourceFile;
+
+/**
+ * On-disk cache of the analysis results of {@link CxxSquidSensor}.
+ *
+ * Every entry belongs to one translation unit and stores the measures, highlighting, CPD tokens, line data and issues
+ * of the file together with the list of files it depends on (the file itself and its transitive includes). The cache
+ * file keeps the content hash of each of these files. An entry is reused as long as the configuration hash and the
+ * content hashes of all its dependencies are unchanged.
+ *
+ * The configured force includes are dependencies of every entry, although no file includes them.
+ *
+ * Headers which could not be resolved during the analysis are not tracked: adding such a header later on does not
+ * invalidate the entries.
+ */
+class CxxAnalysisCache implements CxxFileDataRecorder {
+
+  private static final Logger LOG = Loggers.get(CxxAnalysisCache.class);
+  private static final int MAGIC = 0x43585843;
+  private static final int VERSION = 1;
+
+  static final CxxMetric[] MEASURES = {
+    CxxMetric.FILES,
+    CxxMetric.LINES_OF_CODE,
+    CxxMetric.STATEMENTS,
+    CxxMetric.FUNCTIONS,
+    CxxMetric.CLASSES,
+    CxxMetric.COMPLEXITY,
+    CxxMetric.COMMENT_LINES,
+    CxxMetric.PUBLIC_API,
+    CxxMetric.PUBLIC_UNDOCUMENTED_API};
+
+  private static final TypeOfText[] TYPES_OF_TEXT = TypeOfText.values();
+
+  private final File cacheFile;
+  private final String configurationHash;
+  private final List<String> forceIncludes = new ArrayList<>();
+  private final Map<String, HashCode> storedHashes;
+  private final Map<String, Entry> storedEntries;
+  private final Map<String, HashCode> currentHashes = new HashMap<>();
+  private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+
+  private CxxAnalysisCache(File cacheFile, String configurationHash, Collection<File> forceIncludes,
+    Map<String, HashCode> storedHashes, Map<String, Entry> storedEntries) {
+    this.cacheFile = cacheFile;
+    this.configurationHash = configurationHash;
+    for (File forceInclude : forceIncludes) {
+      this.forceIncludes.add(forceInclude.getAbsolutePath());
+    }
+    this.storedHashes = storedHashes;
+    this.storedEntries = storedEntries;
+  }
+
+  /**
+   * Reads the cache file. The result is empty if the file does not exist, is not readable or was written with another
+   * configuration.
+   */
+  static CxxAnalysisCache load(File cacheFile, String configurationHash, Collection<File> forceIncludes) {
+    Map<String, HashCode> hashes = new HashMap<>();
+    Map<String, Entry> entries = new HashMap<>();
+    if (cacheFile.isFile()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+        new FileInputStream(cacheFile))))) {
+        if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readUTF().equals(configurationHash)) {
+          read(in, hashes, entries);
+        } else {
+          LOG.info("Analysis cache '{}' is outdated, all files will be analyzed", cacheFile);
+        }
+      } catch (IOException e) {
+        LOG.warn("Cannot read analysis cache '{}': {}", cacheFile, e.getMessage());
+        hashes.clear();
+        entries.clear();
+      }
+    }
+    return new CxxAnalysisCache(cacheFile, configurationHash, forceIncludes, hashes, entries);
+  }
+
+  /**
+   * Returns the stored results of a file if neither the file nor one of its includes has changed. The entry is kept for
+   * the next analysis.
+   */
+  @CheckForNull
+  Entry lookup(File file) {
+    Entry entry = storedEntries.get(file.getAbsolutePath());
+    if (entry == null) {
+      return null;
+    }
+    for (String dependency : entry.dependencies) {
+      HashCode current = contentHash(dependency);
+      if (current == null || !current.equals(storedHashes.get(dependency))) {
+        return null;
+      }
+    }
+    currentEntries.put(entry.path, entry);
+    return entry;
+  }
+
+  /**
+   * Records the file itself, the force includes and their transitive includes as dependencies of each file. Must be called on the thread
+   * which scanned the files, the includes are taken from the preprocessor of the current parser.
+   */
+  void recordDependencies(Collection<File> files) {
+    for (File file : files) {
+      Set<String> closure = new LinkedHashSet<>();
+      closure.add(file.getAbsolutePath());
+      Deque<String> pending = new ArrayDeque<>();
+      pending.add(file.getPath());
+      for (String forceInclude : forceIncludes) {
+        if (closure.add(forceInclude)) {
+          pending.add(forceInclude);
+        }
+      }
+      while (!pending.isEmpty()) {
+        for (CxxPreprocessor.Include include : CxxParser.getIncludedFiles(new File(pending.poll()))) {
+          if (closure.add(include.getPath())) {
+            pending.add(include.getPath());
+          }
+        }
+      }
+      entry(file).dependencies = new ArrayList<>(closure);
+    }
+  }
+
+  void recordMeasures(File file, SourceFile squidFile) {
+    Entry entry = entry(file);
+    for (int i = 0; i < MEASURES.length; i++) {
+      entry.measures[i] = squidFile.getInt(MEASURES[i]);
+    }
+  }
+
+  void recordIssue(File file, String rule, int line, String message) {
+    entry(file).issues.add(new Issue(rule, line, message));
+  }
+
+  @Override
+  public void highlight(File file, int startLine, int startLineOffset, int endLine, int endLineOffset,
+    TypeOfText typeOfText) {
+    entry(file).highlighting.add(startLine, startLineOffset, endLine, endLineOffset, typeOfText.ordinal());
+  }
+
+  @Override
+  public void cpdToken(File file, int startLine, int startLineOffset, int endLine, int endLineOffset, String image) {
+    Entry entry = entry(file);
+    entry.cpdRanges.add(startLine, startLineOffset, endLine, endLineOffset);
+    entry.cpdImages.add(image);
+  }
+
+  @Override
+  public void fileLines(File file, Set<Integer> linesOfCode, Set<Integer> linesOfComments,
+    Set<Integer> executableLines) {
+    Entry entry = entry(file);
+    entry.linesOfCode = toArray(linesOfCode);
+    entry.linesOfComments = toArray(linesOfComments);
+    entry.executableLines = toArray(executableLines);
+  }
+
+  /**
+   * Writes all reused and recorded entries to the cache file.
+   */
+  void save() {
+    Map<String, Integer> index = new LinkedHashMap<>();
+    List<Entry> entries = new ArrayList<>();
+    for (Entry entry : currentEntries.values()) {
+      if (entry.dependencies != null && isHashed(entry)) {
+        entries.add(entry);
+        for (String dependency : entry.dependencies) {
+          index.putIfAbsent(dependency, index.size());
+        }
+      }
+    }
+
+    File parent = cacheFile.getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      LOG.warn("Cannot create directory of analysis cache '{}'", cacheFile);
+      return;
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+      new FileOutputStream(cacheFile))))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(configurationHash);
+      out.writeInt(index.size());
+      for (String path : index.keySet()) {
+        writeString(out, path);
+        out.write(currentHashes.get(path).asBytes());
+      }
+      out.writeInt(entries.size());
+      for (Entry entry : entries) {
+        entry.write(out, index);
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot write analysis cache '{}': {}", cacheFile, e.getMessage());
+    }
+  }
+
+  /**
+   * Hash over all values which influence the results of the analysis besides the content of the files.
+   */
+  static String hash(Collection<String> values) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putInt(VERSION);
+    for (String value : values) {
+      hasher.putString(value, StandardCharsets.UTF_8).putChar('\0');
+    }
+    return hasher.hash().toString();
+  }
+
+  private boolean isHashed(Entry entry) {
+    for (String dependency : entry.dependencies) {
+      if (contentHash(dependency) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @CheckForNull
+  private HashCode contentHash(String path) {
+    if (!currentHashes.containsKey(path)) {
+      HashCode hash = null;
+      try {
+        hash = com.google.common.io.Files.asByteSource(new File(path)).hash(Hashing.murmur3_128());
+      } catch (IOException e) {
+        LOG.debug("Cannot hash '{}': {}", path, e.getMessage());
+      }
+      currentHashes.put(path, hash);
+    }
+    return currentHashes.get(path);
+  }
+
+  private Entry entry(File file) {
+    String path = file.getAbsolutePath();
+    return currentEntries.computeIfAbsent(path, Entry::new);
+  }
+
+  private static int[] toArray(Set<Integer> lines) {
+    return lines.stream().mapToInt(Integer::intValue).sorted().toArray();
+  }
+
+  private static void read(DataInputStream in, Map<String, HashCode> hashes, Map<String, Entry> entries)
+    throws IOException {
+    String[] paths = new String[in.readInt()];
+    byte[] bytes = new byte[Hashing.murmur3_128().bits() / Byte.SIZE];
+    for (int i = 0; i < paths.length; i++) {
+      paths[i] = readString(in);
+      in.readFully(bytes);
+      hashes.put(paths[i], HashCode.fromBytes(bytes));
+    }
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      Entry entry = Entry.read(in, paths);
+      entries.put(entry.path, entry);
+    }
+  }
+
+  /**
+   * Strings are written with an int length prefix, {@link DataOutputStream#writeUTF} is limited to 64K (e.g. raw string
+   * literals in CPD tokens).
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  /**
+   * Stored results of one file.
+   */
+  static final class Entry {
+
+    private final String path;
+    private List<String> dependencies;
+    private final int[] measures = new int[MEASURES.length];
+    private final IntList highlighting = new IntList();
+    private final IntList cpdRanges = new IntList();
+    private final List<String> cpdImages = new ArrayList<>();
+    private int[] linesOfCode = new int[0];
+    private int[] linesOfComments = new int[0];
+    private int[] executableLines = new int[0];
+    private final List<Issue> issues = new ArrayList<>();
+
+    private Entry(String path) {
+      this.path = path;
+    }
+
+    int getMeasure(CxxMetric metric) {
+      int index = Arrays.asList(MEASURES).indexOf(metric);
+      return index < 0 ? 0 : measures[index];
+    }
+
+    int getHighlightingCount() {
+      return highlighting.size() / 5;
+    }
+
+    /**
+     * @return start line, start line offset, end line and end line offset of the i-th highlighted range
+     */
+    int[] getHighlightingRange(int i) {
+      return highlighting.range(i * 5, 4);
+    }
+
+    TypeOfText getHighlightingType(int i) {
+      return TYPES_OF_TEXT[highlighting.get(i * 5 + 4)];
+    }
+
+    int getCpdTokenCount() {
+      return cpdImages.size();
+    }
+
+    /**
+     * @return start line, start line offset, end line and end line offset of the i-th CPD token
+     */
+    int[] getCpdTokenRange(int i) {
+      return cpdRanges.range(i * 4, 4);
+    }
+
+    String getCpdTokenImage(int i) {
+      return cpdImages.get(i);
+    }
+
+    int[] getLinesOfCode() {
+      return linesOfCode.clone();
+    }
+
+    int[] getLinesOfComments() {
+      return linesOfComments.clone();
+    }
+
+    int[] getExecutableLines() {
+      return executableLines.clone();
+    }
+
+    List<Issue> getIssues() {
+      return issues;
+    }
+
+    private void write(DataOutputStream out, Map<String, Integer> index) throws IOException {
+      out.writeInt(index.get(path));
+      out.writeInt(dependencies.size());
+      for (String dependency : dependencies) {
+        out.writeInt(index.get(dependency));
+      }
+      writeInts(out, measures);
+      writeInts(out, highlighting.toArray());
+      writeInts(out, cpdRanges.toArray());
+      for (String image : cpdImages) {
+        writeString(out, image);
+      }
+      writeInts(out, linesOfCode);
+      writeInts(out, linesOfComments);
+      writeInts(out, executableLines);
+      out.writeInt(issues.size());
+      for (Issue issue : issues) {
+        writeString(out, issue.rule);
+        out.writeInt(issue.line);
+        writeString(out, issue.message);
+      }
+    }
+
+    private static Entry read(DataInputStream in, String[] paths) throws IOException {
+      Entry entry = new Entry(paths[in.readInt()]);
+      int count = in.readInt();
+      entry.dependencies = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        entry.dependencies.add(paths[in.readInt()]);
+      }
+      int[] measures = readInts(in);
+      System.arraycopy(measures, 0, entry.measures, 0, Math.min(measures.length, entry.measures.length));
+      entry.highlighting.add(readInts(in));
+      entry.cpdRanges.add(readInts(in));
+      for (int i = entry.cpdRanges.size() / 4; i > 0; i--) {
+        entry.cpdImages.add(readString(in));
+      }
+      entry.linesOfCode = readInts(in);
+      entry.linesOfComments = readInts(in);
+      entry.executableLines = readInts(in);
+      count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        entry.issues.add(new Issue(readString(in), in.readInt(), readString(in)));
+      }
+      return entry;
+    }
+  }
+
+  /**
+   * Stored issue: rule key (without repository), line and message.
+   */
+  static final class Issue {
+
+    private final String rule;
+    private final int line;
+    private final String message;
+
+    Issue(String rule, int line, @Nullable String message) {
+      this.rule = rule;
+      this.line = line;
+      this.message = message == null ? "" : message;
+    }
+
+    String getRule() {
+      return rule;
+    }
+
+    int getLine() {
+      return line;
+    }
+
+    String getMessage() {
+      return message;
+    }
+  }
+
+  /**
+   * Growable array of primitive ints.
+   */
+  private static final class IntList {
+
+    private int[] values = new int[16];
+    private int size;
+
+    void add(int... added) {
+      if (size + added.length > values.length) {
+        values = Arrays.copyOf(values, Math.max(values.length * 2, size + added.length));
+      }
+      System.arraycopy(added, 0, values, size, added.length);
+      size += added.length;
+    }
+
+    int get(int index) {
+      return values[index];
+    }
+
+    int[] range(int from, int length) {
+      return Arrays.copyOfRange(values, from, from + length);
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+}
@@ -22,13 +22,28 @@ package org.sonar.cxx.sensors.squid;
 import com.sonar.sslr.api.Grammar;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
@@ -36,18 +51,24 @@ import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
 import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.check.RuleProperty;
 import org.sonar.cxx.CxxAstScanner;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.CxxLanguage;
 import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.preprocessor.IncludeIndex;
+import org.sonar.cxx.preprocessor.SourceCodeCache;
 import org.sonar.cxx.sensors.compiler.CxxCompilerSensor;
 import org.sonar.cxx.sensors.utils.CxxMetrics;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
@@ -78,6 +99,12 @@ public class CxxSquidSensor implements Sensor {
   public static final String MISSING_INCLUDE_WARN = "missingIncludeWarnings";
   public static final String JSON_COMPILATION_DATABASE_KEY = "jsonCompilationDatabase";
   public static final String SCAN_ONLY_SPECIFIED_SOURCES_KEY = "scanOnlySpecifiedSources";
+  public static final String SCAN_THREADS_KEY = "scanThreads";
+  public static final String INCREMENTAL_CACHE_KEY = "incrementalCache";
+  public static final String INCREMENTAL_CACHE_DIR_KEY = "incrementalCacheDir";
+  public static final String DEFAULT_INCREMENTAL_CACHE_DIR = ".sonar-cxx-cache";
+  public static final String SOURCE_CACHE_SIZE_KEY = "sourceCacheSize";
+  public static final String SCAN_ORDER_BY_PROFILE_KEY = "scanOrderByProfile";
 
   public static final String CPD_IGNORE_LITERALS_KEY = "cpd.ignoreLiterals";
   public static final String CPD_IGNORE_IDENTIFIERS_KEY = "cpd.ignoreIdentifiers";
@@ -85,6 +112,8 @@ public class CxxSquidSensor implements Sensor {
   public static final String KEY = "Squid";
 
   private final FileLinesContextFactory fileLinesContextFactory;
+  private final CheckFactory checkFactory;
+  private final CustomCxxRulesDefinition[] customRulesDefinition;
   private final CxxChecks checks;
 
   private final CxxLanguage language;
@@ -105,11 +134,11 @@ public class CxxSquidSensor implements Sensor {
     FileLinesContextFactory fileLinesContextFactory,
     CheckFactory checkFactory,
     @Nullable CustomCxxRulesDefinition[] customRulesDefinition) {
-    this.checks = CxxChecks.createCxxCheck(checkFactory)
-      .addChecks(language.getRepositoryKey(), language.getChecks())
-      .addCustomChecks(customRulesDefinition);
-    this.fileLinesContextFactory = fileLinesContextFactory;
+    this.checkFactory = checkFactory;
+    this.customRulesDefinition = customRulesDefinition;
     this.language = language;
+    this.checks = createChecks();
+    this.fileLinesContextFactory = fileLinesContextFactory;
 
     if (this.language.getMetricsCache().isEmpty()) {
       new CxxMetrics(this.language);
@@ -126,21 +155,9 @@ public class CxxSquidSensor implements Sensor {
    */
   @Override
   public void execute(SensorContext context) {
-    Map<InputFile, Set<Integer>> linesOfCodeByFile = new HashMap<>();
-
-    List<SquidAstVisitor<Grammar>> visitors = new ArrayList<>((Collection) checks.all());
-    visitors.add(new CxxHighlighterVisitor(context));
-    visitors.add(new CxxFileLinesVisitor(fileLinesContextFactory, context, linesOfCodeByFile));
-
-    visitors.add(
-      new CxxCpdVisitor(
-        context,
-        this.language.getBooleanOption(CPD_IGNORE_LITERALS_KEY).orElse(Boolean.FALSE),
-        this.language.getBooleanOption(CPD_IGNORE_IDENTIFIERS_KEY).orElse(Boolean.FALSE)));
+    Map<InputFile, Set<Integer>> linesOfCodeByFile = new ConcurrentHashMap<>();
 
     CxxConfiguration cxxConf = createConfiguration(context.fileSystem(), context);
-    AstScanner<Grammar> scanner = CxxAstScanner.create(this.language, cxxConf,
-      visitors.toArray(new SquidAstVisitor[visitors.size()]));
 
     List<File> files;
     if (cxxConf.isScanOnlySpecifiedSources()) {
@@ -161,10 +178,133 @@ public class CxxSquidSensor implements Sensor {
       LOG.debug("All source files (Type.MAIN): {}", files);
     }
 
-    scanner.scanFiles(files);
+    int violationsCount = 0;
+    CxxAnalysisCache cache = null;
+    if (this.language.getBooleanOption(INCREMENTAL_CACHE_KEY).orElse(Boolean.FALSE)) {
+      cache = CxxAnalysisCache.load(new File(getIncrementalCacheDirectory(context.fileSystem()),
+        "cxx-analysis-" + this.language.getPropertiesKey() + ".cache"), getConfigurationHash(cxxConf, context),
+        getForceIncludeFiles(cxxConf));
+      List<File> dirtyFiles = new ArrayList<>();
+      for (File file : files) {
+        CxxAnalysisCache.Entry entry = cache.lookup(file);
+        if (entry == null) {
+          dirtyFiles.add(file);
+        } else {
+          violationsCount += replay(file, entry, linesOfCodeByFile, context);
+        }
+      }
+      LOG.info("Incremental analysis: {} of {} files unchanged", files.size() - dirtyFiles.size(), files.size());
+      files = dirtyFiles;
+    }
+
+    if (this.language.getBooleanOption(SCAN_ORDER_BY_PROFILE_KEY).orElse(Boolean.FALSE)) {
+      // files with the same compilation unit settings back to back, they reuse the warm preprocessor state
+      files = new ArrayList<>(files);
+      files.sort(Comparator.comparingInt((File file) -> cxxConf.getCompilationUnitProfile(file.getAbsolutePath())));
+      LOG.debug("Scan ordered by {} compilation unit profiles", cxxConf.getCompilationUnitProfileCount());
+    }
+
+    int threads = this.language.getIntegerOption(SCAN_THREADS_KEY).orElse(1);
+    if (threads > 1 && files.size() > 1) {
+      violationsCount += scanParallel(files, Math.min(threads, files.size()), cxxConf, linesOfCodeByFile, context,
+        cache);
+    } else if (!files.isEmpty()) {
+      AstScanner<Grammar> scanner = createScanner(checks, cxxConf, linesOfCodeByFile, context, cache);
+      scanner.scanFiles(files);
+      if (cache != null) {
+        cache.recordDependencies(files);
+      }
+      violationsCount += save(getSourceFiles(scanner), checks, context, cache);
+    }
+
+    if (cache != null) {
+      cache.save();
+    }
+    saveViolationsCount(violationsCount, context);
+    logSourceCodeCacheStatistics(cxxConf.getSourceCodeCache());
+    IncludeIndex includeIndex = cxxConf.getIncludeIndex();
+    if (includeIndex.getHits() + includeIndex.getMisses() > 0) {
+      LOG.info("Include index: {} includes resolved, {} reused, {} directories listed", includeIndex.getMisses(),
+        includeIndex.getHits(), includeIndex.getListedDirectories());
+    }
+  }
+
+  private static void logSourceCodeCacheStatistics(SourceCodeCache sourceCodeCache) {
+    if (sourceCodeCache.getHits() + sourceCodeCache.getMisses() > 0) {
+      LOG.info("Source code cache: {} hits, {} misses ({}% hit rate), {} evictions, {} KB mapped, {} KB read, "
+        + "{} KB cached", sourceCodeCache.getHits(), sourceCodeCache.getMisses(),
+        String.format(Locale.ENGLISH, "%.1f", sourceCodeCache.getHitRate()), sourceCodeCache.getEvictions(),
+        sourceCodeCache.getBytesMapped() / 1024, sourceCodeCache.getBytesRead() / 1024,
+        sourceCodeCache.getCachedBytes() / 1024);
+    }
+  }
+
+  /**
+   * Partitions the files into one chunk per worker. Every worker has its own preprocessor, parser, visitors and checks;
+   * the results are saved on the calling thread in the order of the chunks.
+   */
+  private int scanParallel(List<File> files, int threads, CxxConfiguration cxxConf,
+    Map<InputFile, Set<Integer>> linesOfCodeByFile, SensorContext context, @Nullable CxxAnalysisCache cache) {
+    LOG.info("Scanning {} files with {} threads", files.size(), threads);
+
+    List<Callable<ScanResult>> tasks = new ArrayList<>();
+    int chunkSize = (files.size() + threads - 1) / threads;
+    for (int start = 0; start < files.size(); start += chunkSize) {
+      final List<File> chunk = files.subList(start, Math.min(start + chunkSize, files.size()));
+      tasks.add(() -> {
+        CxxChecks workerChecks = createChecks();
+        AstScanner<Grammar> scanner = createScanner(workerChecks, cxxConf, linesOfCodeByFile, context, cache);
+        scanner.scanFiles(chunk);
+        if (cache != null) {
+          cache.recordDependencies(chunk);
+        }
+        return new ScanResult(workerChecks, getSourceFiles(scanner));
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    int violationsCount = 0;
+    try {
+      for (Future<ScanResult> future : executor.invokeAll(tasks)) {
+        ScanResult result = future.get();
+        violationsCount += save(result.sourceFiles, result.checks, context, cache);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Parallel scan interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Parallel scan failed: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return violationsCount;
+  }
+
+  private CxxChecks createChecks() {
+    return CxxChecks.createCxxCheck(checkFactory)
+      .addChecks(language.getRepositoryKey(), language.getChecks())
+      .addCustomChecks(customRulesDefinition);
+  }
+
+  private AstScanner<Grammar> createScanner(CxxChecks scannerChecks, CxxConfiguration cxxConf,
+    Map<InputFile, Set<Integer>> linesOfCodeByFile, SensorContext context, @Nullable CxxAnalysisCache cache) {
+    List<SquidAstVisitor<Grammar>> visitors = new ArrayList<>((Collection) scannerChecks.all());
+    visitors.add(new CxxHighlighterVisitor(context, cache));
+    visitors.add(new CxxFileLinesVisitor(fileLinesContextFactory, context, linesOfCodeByFile, cache));
+
+    visitors.add(
+      new CxxCpdVisitor(
+        context,
+        this.language.getBooleanOption(CPD_IGNORE_LITERALS_KEY).orElse(Boolean.FALSE),
+        this.language.getBooleanOption(CPD_IGNORE_IDENTIFIERS_KEY).orElse(Boolean.FALSE),
+        cache));
 
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    save(squidSourceFiles, context);
+    return CxxAstScanner.create(this.language, cxxConf, visitors.toArray(new SquidAstVisitor[visitors.size()]));
+  }
+
+  private static Collection<SourceCode> getSourceFiles(AstScanner<Grammar> scanner) {
+    return scanner.getIndex().search(new QueryByType(SourceFile.class));
   }
 
   private CxxConfiguration createConfiguration(FileSystem fs, SensorContext context) {
@@ -183,10 +323,14 @@ public class CxxSquidSensor implements Sensor {
       .orElse(null));
     cxxConf.setScanOnlySpecifiedSources(this.language.getBooleanOption(SCAN_ONLY_SPECIFIED_SOURCES_KEY)
       .orElse(Boolean.FALSE));
+    cxxConf.setSourceCodeCacheSize(this.language.getIntegerOption(SOURCE_CACHE_SIZE_KEY)
+      .orElse(SourceCodeCache.DEFAULT_MAX_SIZE_MB));
 
     if (cxxConf.getJsonCompilationDatabaseFile() != null) {
       try {
-        new JsonCompilationDatabase(cxxConf, new File(cxxConf.getJsonCompilationDatabaseFile()));
+        // only entries of files of this module are needed
+        new JsonCompilationDatabase(cxxConf, new File(cxxConf.getJsonCompilationDatabaseFile()),
+          (String path) -> fs.inputFile(fs.predicates().hasAbsolutePath(path)) != null);
       } catch (IOException e) {
         LOG.debug("Cannot access Json DB File: {}", e.getMessage());
       }
@@ -196,6 +340,9 @@ public class CxxSquidSensor implements Sensor {
     if (filePaths != null && !"".equals(filePaths)) {
       List<File> reports = CxxReportSensor.getReports(context.config(), fs.baseDir(),
         this.language.getPluginProperty(CxxCompilerSensor.REPORT_PATH_KEY));
+      if (this.language.getBooleanOption(INCREMENTAL_CACHE_KEY).orElse(Boolean.FALSE)) {
+        cxxConf.setBuildLogCacheDirectory(getIncrementalCacheDirectory(fs));
+      }
       cxxConf.setCompilationPropertiesWithBuildLog(reports,
         this.language.getStringOption(CxxCompilerSensor.PARSER_KEY_DEF).orElse(""),
         this.language.getStringOption(CxxCompilerSensor.REPORT_CHARSET_DEF)
@@ -205,7 +352,200 @@ public class CxxSquidSensor implements Sensor {
     return cxxConf;
   }
 
-  private void save(Collection<SourceCode> squidSourceFiles, SensorContext context) {
+  /**
+   * Directory of the incremental analysis cache. The scanner empties the working directory at the start of every
+   * analysis, the cache has to be kept somewhere else.
+   */
+  private File getIncrementalCacheDirectory(FileSystem fs) {
+    File directory = new File(this.language.getStringOption(INCREMENTAL_CACHE_DIR_KEY)
+      .orElse(DEFAULT_INCREMENTAL_CACHE_DIR));
+    if (!directory.isAbsolute()) {
+      directory = new File(fs.baseDir(), directory.getPath());
+    }
+    return directory;
+  }
+
+  /**
+   * Resolves the configured force includes the same way as quoted includes: absolute, relative to the base directory
+   * or relative to one of the include directories. Every file depends on them without including them.
+   */
+  private static List<File> getForceIncludeFiles(CxxConfiguration cxxConf) {
+    List<File> roots = new ArrayList<>();
+    roots.add(new File(cxxConf.getBaseDir()));
+    for (String includeDirectory : cxxConf.getIncludeDirectories()) {
+      File root = new File(includeDirectory);
+      roots.add(root.isAbsolute() ? root : new File(cxxConf.getBaseDir(), includeDirectory));
+    }
+
+    List<File> files = new ArrayList<>();
+    for (String include : cxxConf.getForceIncludeFiles()) {
+      if ("".equals(include)) {
+        continue;
+      }
+      File file = new File(include);
+      if (!file.isAbsolute()) {
+        file = roots.stream().map(root -> new File(root, include)).filter(File::isFile).findFirst().orElse(file);
+      }
+      if (file.isFile()) {
+        files.add(file.getAbsoluteFile());
+      } else {
+        LOG.debug("Force include '{}' not found, changes of it are not tracked by the incremental analysis", include);
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Hash over the settings, active rules and implementation versions which influence the results stored in the
+   * incremental analysis cache.
+   */
+  private String getConfigurationHash(CxxConfiguration cxxConf, SensorContext context) {
+    List<String> values = new ArrayList<>();
+    values.add(this.language.getKey());
+    values.add(Arrays.toString(this.language.getStringLinesOption(DEFINES_KEY)));
+    for (String key : new String[]{INCLUDE_DIRECTORIES_KEY, FORCE_INCLUDE_FILES_KEY, C_FILES_PATTERNS_KEY,
+      HEADER_FILE_SUFFIXES_KEY}) {
+      values.add(Arrays.toString(this.language.getStringArrayOption(key)));
+    }
+    for (String key : new String[]{ERROR_RECOVERY_KEY, MISSING_INCLUDE_WARN, SCAN_ONLY_SPECIFIED_SOURCES_KEY,
+      CPD_IGNORE_LITERALS_KEY, CPD_IGNORE_IDENTIFIERS_KEY}) {
+      values.add(String.valueOf(this.language.getBooleanOption(key).orElse(Boolean.FALSE)));
+    }
+
+    // the compilation database and build logs define macros and include directories per file
+    List<File> settingsFiles = new ArrayList<>();
+    if (cxxConf.getJsonCompilationDatabaseFile() != null) {
+      settingsFiles.add(new File(cxxConf.getJsonCompilationDatabaseFile()));
+    }
+    String filePaths = this.language.getStringOption(CxxCompilerSensor.REPORT_PATH_KEY).orElse("");
+    if (filePaths != null && !"".equals(filePaths)) {
+      values.add(this.language.getStringOption(CxxCompilerSensor.PARSER_KEY_DEF).orElse(""));
+      settingsFiles.addAll(CxxReportSensor.getReports(context.config(), context.fileSystem().baseDir(),
+        this.language.getPluginProperty(CxxCompilerSensor.REPORT_PATH_KEY)));
+    }
+    for (File file : settingsFiles) {
+      values.add(file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+    }
+
+    List<String> rules = new ArrayList<>();
+    for (SquidAstVisitor<Grammar> check : checks.all()) {
+      StringBuilder rule = new StringBuilder().append(checks.ruleKey(check)).append(' ')
+        .append(check.getClass().getName());
+      for (Class<?> type = check.getClass(); type != null; type = type.getSuperclass()) {
+        for (Field field : type.getDeclaredFields()) {
+          if (field.isAnnotationPresent(RuleProperty.class)) {
+            rule.append(' ').append(field.getName()).append('=').append(getFieldValue(field, check));
+          }
+        }
+      }
+      rules.add(rule.toString());
+    }
+    Collections.sort(rules);
+    values.addAll(rules);
+
+    // results of an older sensor, parser or check implementation must not be replayed after an upgrade
+    List<Class<?>> implementations = new ArrayList<>();
+    implementations.add(CxxSquidSensor.class);
+    implementations.add(CxxAstScanner.class);
+    for (SquidAstVisitor<Grammar> check : checks.all()) {
+      implementations.add(check.getClass());
+    }
+    values.addAll(getImplementationVersions(implementations));
+
+    return CxxAnalysisCache.hash(values);
+  }
+
+  /**
+   * The implementation version from the manifest and the identity (path, size, modification time) of the jar or
+   * directory each class is loaded from. Snapshot builds have no reliable version, the jar identity covers them.
+   */
+  public static Set<String> getImplementationVersions(Collection<Class<?>> classes) {
+    Set<String> versions = new TreeSet<>();
+    for (Class<?> type : classes) {
+      Package pkg = type.getPackage();
+      if (pkg != null && pkg.getImplementationVersion() != null) {
+        versions.add(pkg.getName() + " " + pkg.getImplementationVersion());
+      }
+      CodeSource source = type.getProtectionDomain().getCodeSource();
+      if (source != null && source.getLocation() != null) {
+        versions.add(getLocationIdentity(source.getLocation()));
+      }
+    }
+    return versions;
+  }
+
+  private static String getLocationIdentity(URL location) {
+    try {
+      File file = new File(location.toURI());
+      return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return location.toString();
+    }
+  }
+
+  private static Object getFieldValue(Field field, Object target) {
+    try {
+      field.setAccessible(true);
+      return field.get(target);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Cannot read rule property '" + field.getName() + "'", e);
+    }
+  }
+
+  /**
+   * Saves the stored results of an unchanged file.
+   */
+  private int replay(File file, CxxAnalysisCache.Entry entry, Map<InputFile, Set<Integer>> linesOfCodeByFile,
+    SensorContext context) {
+    InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().is(file));
+    if (inputFile == null) {
+      throw new IllegalStateException("InputFile is null, but it should not be.");
+    }
+
+    saveMeasures(inputFile, entry::getMeasure, context);
+
+    NewHighlighting highlighting = context.newHighlighting().onFile(inputFile);
+    try {
+      for (int i = 0; i < entry.getHighlightingCount(); i++) {
+        int[] range = entry.getHighlightingRange(i);
+        highlighting.highlight(range[0], range[1], range[2], range[3], entry.getHighlightingType(i));
+      }
+      highlighting.save();
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      // same as CxxHighlighterVisitor: parsing errors could lead to wrong location data
+      LOG.debug("Highligthing error in file: {}, error: {}", file, e);
+    }
+
+    NewCpdTokens cpdTokens = context.newCpdTokens().onFile(inputFile);
+    for (int i = 0; i < entry.getCpdTokenCount(); i++) {
+      int[] range = entry.getCpdTokenRange(i);
+      cpdTokens.addToken(inputFile.newRange(range[0], range[1], range[2], range[3]), entry.getCpdTokenImage(i));
+    }
+    cpdTokens.save();
+
+    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(inputFile);
+    Set<Integer> linesOfCode = new HashSet<>();
+    for (int line : entry.getLinesOfCode()) {
+      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, 1);
+      linesOfCode.add(line);
+    }
+    for (int line : entry.getLinesOfComments()) {
+      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, 1);
+    }
+    for (int line : entry.getExecutableLines()) {
+      fileLinesContext.setIntValue(CoreMetrics.EXECUTABLE_LINES_DATA_KEY, line, 1);
+    }
+    fileLinesContext.save();
+    linesOfCodeByFile.put(inputFile, linesOfCode);
+
+    for (CxxAnalysisCache.Issue issue : entry.getIssues()) {
+      saveIssue(inputFile, issue.getRule(), issue.getLine(), issue.getMessage(), context);
+    }
+    return entry.getIssues().size();
+  }
+
+  private int save(Collection<SourceCode> squidSourceFiles, CxxChecks scannerChecks, SensorContext context,
+    @Nullable CxxAnalysisCache cache) {
     int violationsCount = 0;
 
     for (SourceCode squidSourceFile : squidSourceFiles) {
@@ -213,10 +553,17 @@ public class CxxSquidSensor implements Sensor {
       File ioFile = new File(squidFile.getKey());
       InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().is(ioFile));
 
-      saveMeasures(inputFile, squidFile, context);
-      violationsCount += saveViolations(inputFile, squidFile, context);
+      saveMeasures(inputFile, squidFile::getInt, context);
+      violationsCount += saveViolations(inputFile, squidFile, scannerChecks, context, cache);
+      if (cache != null) {
+        cache.recordMeasures(ioFile, squidFile);
+      }
     }
 
+    return violationsCount;
+  }
+
+  private void saveViolationsCount(int violationsCount, SensorContext context) {
     String metricKey = CxxMetrics.getKey(KEY, language);
     Metric metric = this.language.getMetric(metricKey);
 
@@ -229,31 +576,31 @@ public class CxxSquidSensor implements Sensor {
     }
   }
 
-  private void saveMeasures(InputFile inputFile, SourceFile squidFile, SensorContext context) {
+  private void saveMeasures(InputFile inputFile, ToIntFunction<CxxMetric> measures, SensorContext context) {
     context.<Integer>newMeasure().forMetric(CoreMetrics.FILES).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.FILES)).save();
+      .withValue(measures.applyAsInt(CxxMetric.FILES)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.NCLOC).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.LINES_OF_CODE)).save();
+      .withValue(measures.applyAsInt(CxxMetric.LINES_OF_CODE)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.STATEMENTS).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.STATEMENTS)).save();
+      .withValue(measures.applyAsInt(CxxMetric.STATEMENTS)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.FUNCTIONS).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.FUNCTIONS)).save();
+      .withValue(measures.applyAsInt(CxxMetric.FUNCTIONS)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.CLASSES).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.CLASSES)).save();
+      .withValue(measures.applyAsInt(CxxMetric.CLASSES)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.COMPLEXITY).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.COMPLEXITY)).save();
+      .withValue(measures.applyAsInt(CxxMetric.COMPLEXITY)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.COMMENT_LINES).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.COMMENT_LINES)).save();
+      .withValue(measures.applyAsInt(CxxMetric.COMMENT_LINES)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.PUBLIC_API).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.PUBLIC_API)).save();
+      .withValue(measures.applyAsInt(CxxMetric.PUBLIC_API)).save();
     context.<Integer>newMeasure().forMetric(CoreMetrics.PUBLIC_UNDOCUMENTED_API).on(inputFile)
-      .withValue(squidFile.getInt(CxxMetric.PUBLIC_UNDOCUMENTED_API)).save();
+      .withValue(measures.applyAsInt(CxxMetric.PUBLIC_UNDOCUMENTED_API)).save();
 
     // Configuration properties for SQ 6.2++
     // see https://jira.sonarsource.com/browse/SONAR-8328
     if (!language.getMetricsCache().isEmpty()) {
-      int publicApi = squidFile.getInt(CxxMetric.PUBLIC_API);
-      int publicUndocumentedApi = squidFile.getInt(CxxMetric.PUBLIC_UNDOCUMENTED_API);
+      int publicApi = measures.applyAsInt(CxxMetric.PUBLIC_API);
+      int publicUndocumentedApi = measures.applyAsInt(CxxMetric.PUBLIC_UNDOCUMENTED_API);
       double densityOfPublicDocumentedApi = (publicApi > publicUndocumentedApi) ? ((publicApi - publicUndocumentedApi) / (double) publicApi * 100.0) : 0.0;
       context.<Integer>newMeasure().forMetric(language.getMetric(CxxMetrics.PUBLIC_API_KEY))
         .on(inputFile).withValue(publicApi).save();
@@ -264,7 +611,8 @@ public class CxxSquidSensor implements Sensor {
     }
   }
 
-  private int saveViolations(InputFile inputFile, SourceFile squidFile, SensorContext sensorContext) {
+  private int saveViolations(InputFile inputFile, SourceFile squidFile, CxxChecks scannerChecks,
+    SensorContext sensorContext, @Nullable CxxAnalysisCache cache) {
     Collection<CheckMessage> messages = squidFile.getCheckMessages();
     int violationsCount = 0;
     if (messages != null) {
@@ -274,16 +622,12 @@ public class CxxSquidSensor implements Sensor {
           line = message.getLine();
         }
 
-        NewIssue newIssue = sensorContext
-          .newIssue()
-          .forRule(RuleKey.of(this.language.getRepositoryKey(), checks.ruleKey((SquidAstVisitor<Grammar>) message.getCheck()).rule()));
-        NewIssueLocation location = newIssue.newLocation()
-          .on(inputFile)
-          .at(inputFile.selectLine(line))
-          .message(message.getText(Locale.ENGLISH));
-
-        newIssue.at(location);
-        newIssue.save();
+        String rule = scannerChecks.ruleKey((SquidAstVisitor<Grammar>) message.getCheck()).rule();
+        String text = message.getText(Locale.ENGLISH);
+        saveIssue(inputFile, rule, line, text, sensorContext);
+        if (cache != null) {
+          cache.recordIssue(new File(squidFile.getKey()), rule, line, text);
+        }
 
         // @todo - this will add a issue regardless of the save
         violationsCount++;
@@ -293,6 +637,30 @@ public class CxxSquidSensor implements Sensor {
     return violationsCount;
   }
 
+  private void saveIssue(InputFile inputFile, String rule, int line, String text, SensorContext sensorContext) {
+    NewIssue newIssue = sensorContext
+      .newIssue()
+      .forRule(RuleKey.of(this.language.getRepositoryKey(), rule));
+    NewIssueLocation location = newIssue.newLocation()
+      .on(inputFile)
+      .at(inputFile.selectLine(line))
+      .message(text);
+
+    newIssue.at(location);
+    newIssue.save();
+  }
+
+  private static class ScanResult {
+
+    private final CxxChecks checks;
+    private final Collection<SourceCode> sourceFiles;
+
+    ScanResult(CxxChecks checks, Collection<SourceCode> sourceFiles) {
+      this.checks = checks;
+      this.sourceFiles = sourceFiles;
+    }
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
@@ -25,9 +25,8 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.List;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.measures.CoreMetrics;
@@ -52,6 +51,7 @@ public class CxxXunitSensor extends CxxReportSensor {
   private static final double PERCENT_BASE = 100d;
 
   private String xsltURL;
+  private Templates xslt;
 
   /**
    * {@inheritDoc}
@@ -89,11 +89,8 @@ public class CxxXunitSensor extends CxxReportSensor {
     try {
       List<File> reports = getReports(context.config(), context.fileSystem().baseDir(), getReportPathKey());
       if (!reports.isEmpty()) {
-        XunitReportParser parserHandler = parseReport(reports);
-        List<TestCase> testcases = parserHandler.getTestCases();
-
         LOG.info("Parsing 'xUnit' format");
-        simpleMode(context, testcases);
+        simpleMode(context, parseReports(reports));
       } else {
         LOG.debug("No reports found, nothing to process");
       }
@@ -109,49 +106,59 @@ public class CxxXunitSensor extends CxxReportSensor {
   }
 
   /**
+   * Only the counts and the execution time of the testcases are needed, the reports are parsed in aggregate only mode.
+   * With more than one report thread the reports are parsed concurrently and the totals of the reports are summed up.
+   *
    * @param reports
    * @return
    * @throws XMLStreamException
    * @throws IOException
    * @throws TransformerException
    */
-  private XunitReportParser parseReport(List<File> reports)
+  private TestCaseTotals parseReports(List<File> reports)
     throws XMLStreamException, IOException, TransformerException {
-    XunitReportParser parserHandler = new XunitReportParser();
-    StaxParser parser = new StaxParser(parserHandler, false);
-    for (File report : reports) {
-      LOG.info("Processing report '{}'", report);
+    TestCaseTotals totals = new TestCaseTotals();
+    int threads = getReportThreads(reports.size());
+    if (threads > 1) {
       try {
-        parser.parse(transformReport(report));
-      } catch (EmptyReportException e) {
-        LOG.warn("The report '{}' seems to be empty, ignoring.", report);
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("{}", e);
-        }
+        processConcurrently(reports, threads, this::parseReport, (report, parsed) -> totals.add(parsed.get()));
+      } catch (XMLStreamException | IOException | TransformerException | RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        // parseReport throws no other exceptions
+        throw new IllegalStateException(e);
+      }
+    } else {
+      for (File report : reports) {
+        totals.add(parseReport(report));
       }
     }
-    return parserHandler;
+    return totals;
   }
 
-  private void simpleMode(final SensorContext context, List<TestCase> testcases) {
-
-    int testsCount = 0;
-    int testsSkipped = 0;
-    int testsErrors = 0;
-    int testsFailures = 0;
-    long testsTime = 0;
-    for (TestCase tc : testcases) {
-      if (tc.isSkipped()) {
-        testsSkipped++;
-      } else if (tc.isFailure()) {
-        testsFailures++;
-      } else if (tc.isError()) {
-        testsErrors++;
+  private TestCaseTotals parseReport(File report)
+    throws XMLStreamException, IOException, TransformerException {
+    LOG.info("Processing report '{}'", report);
+    XunitReportParser parserHandler = new XunitReportParser(true);
+    StaxParser parser = new StaxParser(parserHandler, false);
+    try (InputStream input = transformReport(report)) {
+      parser.parse(input);
+    } catch (EmptyReportException e) {
+      LOG.warn("The report '{}' seems to be empty, ignoring.", report);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("{}", e);
       }
-      testsCount++;
-      testsTime += tc.getTime();
     }
-    testsCount -= testsSkipped;
+    return parserHandler.getTotals();
+  }
+
+  private void simpleMode(final SensorContext context, TestCaseTotals totals) {
+
+    int testsCount = totals.getTests() - totals.getSkipped();
+    int testsSkipped = totals.getSkipped();
+    int testsErrors = totals.getErrors();
+    int testsFailures = totals.getFailures();
+    long testsTime = totals.getTime();
 
     if (testsCount > 0) {
       double testsPassed = (double) testsCount - testsErrors - testsFailures;
@@ -227,26 +234,37 @@ public class CxxXunitSensor extends CxxReportSensor {
     }
   }
 
-  File transformReport(File report)
+  /**
+   * The report is transformed into a temporary file, which is deleted when the returned stream is closed.
+   *
+   * @param report
+   * @return stream of the transformed report, stream of the report itself if no xslt is given
+   * @throws java.io.IOException
+   * @throws javax.xml.transform.TransformerException
+   */
+  InputStream transformReport(File report)
     throws java.io.IOException, javax.xml.transform.TransformerException {
-    File transformed = report;
     if (xsltURL != null && report.length() > 0) {
       LOG.debug("Transforming the report using xslt '{}'", xsltURL);
-      InputStream inputStream = this.getClass().getResourceAsStream("/xsl/" + xsltURL);
-      if (inputStream == null) {
+      return CxxUtils.transform(getXslt(), report);
+    }
+    LOG.debug("Transformation skipped: no xslt given");
+    return java.nio.file.Files.newInputStream(report.toPath());
+  }
+
+  /**
+   * The stylesheet is located and compiled once, the reports are transformed with the same templates.
+   */
+  private synchronized Templates getXslt() throws IOException, TransformerException {
+    if (xslt == null) {
+      URL url = this.getClass().getResource("/xsl/" + xsltURL);
+      if (url == null) {
         LOG.debug("Transforming: try to access external XSLT via URL");
-        URL url = new URL(xsltURL);
-        inputStream = url.openStream();
+        url = new URL(xsltURL);
       }
-
-      Source xsl = new StreamSource(inputStream);
-      transformed = new File(report.getAbsolutePath() + ".after_xslt");
-      CxxUtils.transformFile(xsl, report, transformed);
-    } else {
-      LOG.debug("Transformation skipped: no xslt given");
+      xslt = CxxUtils.newTemplates(url);
     }
-
-    return transformed;
+    return xslt;
   }
 
   @Override
@@ -0,0 +1,92 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.tests.xunit;
+
+/**
+ * Counts and summed up execution time of testcases. Used to aggregate the results of big reports without keeping a
+ * {@link TestCase} for every testcase.
+ */
+public class TestCaseTotals {
+
+  private static final String STATUS_ERROR = "error";
+  private static final String STATUS_FAILURE = "failure";
+  private static final String STATUS_SKIPPED = "skipped";
+
+  private int tests;
+  private int skipped;
+  private int errors;
+  private int failures;
+  private long time;
+
+  /**
+   * Adds one testcase
+   *
+   * @param status The execution status of the testcase
+   * @param time The execution time in milliseconds
+   */
+  public void add(String status, int time) {
+    if (STATUS_SKIPPED.equals(status)) {
+      skipped++;
+    } else if (STATUS_FAILURE.equals(status)) {
+      failures++;
+    } else if (STATUS_ERROR.equals(status)) {
+      errors++;
+    }
+    tests++;
+    this.time += time;
+  }
+
+  /**
+   * Adds the testcases of other totals, e.g. of another report
+   */
+  public void add(TestCaseTotals other) {
+    tests += other.tests;
+    skipped += other.skipped;
+    errors += other.errors;
+    failures += other.failures;
+    time += other.time;
+  }
+
+  /**
+   * Returns the number of testcases, including the skipped ones
+   */
+  public int getTests() {
+    return tests;
+  }
+
+  public int getSkipped() {
+    return skipped;
+  }
+
+  public int getErrors() {
+    return errors;
+  }
+
+  public int getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns the summed up execution time in milliseconds
+   */
+  public long getTime() {
+    return time;
+  }
+}
@@ -20,7 +20,8 @@
 package org.sonar.cxx.sensors.tests.xunit;
 
 import java.text.ParseException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import javax.xml.stream.XMLStreamException;
@@ -36,13 +37,36 @@ import org.sonar.cxx.sensors.utils.StaxParser.XmlStreamHandler;
  */
 public class XunitReportParser implements XmlStreamHandler {
 
-  private final List<TestCase> testCases = new LinkedList<>();
+  private static final String SKIPPED_STATUS = "skipped";
+
+  private final boolean aggregateOnly;
+  private final List<TestCase> testCases = new ArrayList<>();
+  private final TestCaseTotals totals = new TestCaseTotals();
+
+  public XunitReportParser() {
+    this(false);
+  }
+
+  /**
+   * @param aggregateOnly only count the testcases and sum up their time: no {@link TestCase} is created and the
+   * messages and stack traces of failures and errors are skipped
+   */
+  public XunitReportParser(boolean aggregateOnly) {
+    this.aggregateOnly = aggregateOnly;
+  }
 
   /**
-   * Returns successfully parsed testcases.
+   * Returns successfully parsed testcases, empty in aggregate only mode.
    */
   public List<TestCase> getTestCases() {
-    return new LinkedList<>(testCases);
+    return Collections.unmodifiableList(testCases);
+  }
+
+  /**
+   * Returns counts and execution time of the successfully parsed testcases.
+   */
+  public TestCaseTotals getTotals() {
+    return totals;
   }
 
   /**
@@ -73,21 +97,25 @@ public class XunitReportParser implements XmlStreamHandler {
       if ("testsuite".equals(elementName)) {
         parseTestSuiteTag(childCursor);
       } else if ("testcase".equals(elementName)) {
-        testCases.add(parseTestCaseTag(childCursor, testSuiteName, testSuiteFName));
+        parseTestCaseTag(childCursor, testSuiteName, testSuiteFName);
       }
     }
   }
 
-  private static TestCase parseTestCaseTag(SMInputCursor testCaseCursor, String tsName, String tsFilename)
+  private void parseTestCaseTag(SMInputCursor testCaseCursor, String tsName, String tsFilename)
     throws XMLStreamException {
-    String classname = testCaseCursor.getAttrValue("classname");
-    String tcFilename = testCaseCursor.getAttrValue("filename");
-    String name = parseTestCaseName(testCaseCursor);
-    Double time = parseTime(testCaseCursor);
+    String classname = null;
+    String tcFilename = null;
+    String name = null;
+    if (!aggregateOnly) {
+      classname = testCaseCursor.getAttrValue("classname");
+      tcFilename = testCaseCursor.getAttrValue("filename");
+      name = parseTestCaseName(testCaseCursor);
+    }
+    int time = (int) parseTime(testCaseCursor);
     String status = "ok";
     String stack = "";
     String msg = "";
-    final String SKIPPED_STATUS = "skipped";
 
     // Googletest-reports mark the skipped tests with status="notrun"
     String statusattr = testCaseCursor.getAttrValue("status");
@@ -99,19 +127,21 @@ public class XunitReportParser implements XmlStreamHandler {
         String elementName = childCursor.getLocalName();
         if (SKIPPED_STATUS.equals(elementName)) {
           status = SKIPPED_STATUS;
-        } else if ("failure".equals(elementName)) {
-          status = "failure";
-          msg = childCursor.getAttrValue("message");
-          stack = childCursor.collectDescendantText();
-        } else if ("error".equals(elementName)) {
-          status = "error";
-          msg = childCursor.getAttrValue("message");
-          stack = childCursor.collectDescendantText();
+        } else if ("failure".equals(elementName) || "error".equals(elementName)) {
+          status = elementName;
+          if (!aggregateOnly) {
+            msg = childCursor.getAttrValue("message");
+            stack = childCursor.collectDescendantText();
+          }
         }
       }
     }
 
-    return new TestCase(name, time.intValue(), status, stack, msg, classname, tcFilename, tsName, tsFilename);
+    // in aggregate only mode the body of the testcase is not read, the parent cursor skips it
+    totals.add(status, time);
+    if (!aggregateOnly) {
+      testCases.add(new TestCase(name, time, status, stack, msg, classname, tcFilename, tsName, tsFilename));
+    }
   }
 
   private static double parseTime(SMInputCursor testCaseCursor)
@@ -0,0 +1,157 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+
+/**
+ * Resolves the file paths found in reports to the input files of the module. Normalizing a path and evaluating the
+ * file system predicate is expensive compared to the number of distinct paths, so the result of each raw path (input
+ * file or miss) is kept. One resolver per module file system is shared by all report sensors.
+ *
+ * The number of entries is bounded, the least recently used paths are resolved again when needed. Thread-safe.
+ */
+public final class CxxInputFileResolver {
+
+  static final int MAX_ENTRIES = 100_000;
+
+  // the cache must not reference the file system, otherwise the weak key is never released
+  private static final Map<FileSystem, Cache> CACHES = new WeakHashMap<>();
+
+  private final FileSystem fileSystem;
+  private final String baseDir;
+  private final Cache cache;
+
+  private CxxInputFileResolver(FileSystem fileSystem, Cache cache) {
+    this.fileSystem = fileSystem;
+    this.baseDir = fileSystem.baseDir().getAbsolutePath();
+    this.cache = cache;
+  }
+
+  /**
+   * @param context of the sensor
+   * @return resolver of the file system of the context, sharing the resolved paths with the other sensors
+   */
+  public static CxxInputFileResolver of(SensorContext context) {
+    FileSystem fileSystem = context.fileSystem();
+    Cache cache;
+    synchronized (CACHES) {
+      cache = CACHES.computeIfAbsent(fileSystem, k -> new Cache());
+    }
+    return new CxxInputFileResolver(fileSystem, cache);
+  }
+
+  /**
+   * @return true if the resolver belongs to the file system
+   */
+  boolean resolves(FileSystem fileSystem) {
+    return this.fileSystem == fileSystem;
+  }
+
+  /**
+   * @param path absolute or relative to the base directory, as found in the report
+   * @return input file of the path or null if it is not part of the module
+   */
+  @CheckForNull
+  public InputFile getInputFile(@Nullable String path) {
+    return path == null ? null : resolve(path).inputFile;
+  }
+
+  /**
+   * @param path absolute or relative to the base directory, as found in the report
+   * @return normalized absolute path, see {@link CxxUtils#normalizePathFull(String, String)}
+   */
+  @CheckForNull
+  public String getNormalizedPath(String path) {
+    return resolve(path).normalizedPath;
+  }
+
+  /**
+   * @return number of paths answered from the cache, for all sensors of the file system
+   */
+  public long getHits() {
+    synchronized (cache) {
+      return cache.hits;
+    }
+  }
+
+  /**
+   * @return number of paths resolved with the file system, for all sensors of the file system
+   */
+  public long getMisses() {
+    synchronized (cache) {
+      return cache.misses;
+    }
+  }
+
+  private Resolved resolve(String path) {
+    synchronized (cache) {
+      Resolved result = cache.resolved.get(path);
+      if (result != null) {
+        cache.hits++;
+        return result;
+      }
+      cache.misses++;
+      String normalizedPath = CxxUtils.normalizePathFull(path, baseDir);
+      InputFile inputFile = null;
+      if (normalizedPath != null) {
+        inputFile = fileSystem.inputFile(fileSystem.predicates().hasAbsolutePath(normalizedPath));
+      }
+      result = new Resolved(normalizedPath, inputFile);
+      cache.resolved.put(path, result);
+      return result;
+    }
+  }
+
+  private static final class Cache {
+
+    private final Map<String, Resolved> resolved = new LinkedHashMap<String, Resolved>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Resolved> eldest) {
+        return size() > MAX_ENTRIES;
+      }
+    };
+    private long hits;
+    private long misses;
+  }
+
+  private static final class Resolved {
+
+    @Nullable
+    private final String normalizedPath;
+    @Nullable
+    private final InputFile inputFile;
+
+    Resolved(@Nullable String normalizedPath, @Nullable InputFile inputFile) {
+      this.normalizedPath = normalizedPath;
+      this.inputFile = inputFile;
+    }
+  }
+
+}
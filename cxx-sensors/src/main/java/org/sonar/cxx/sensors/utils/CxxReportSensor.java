@@ -22,7 +22,10 @@ package org.sonar.cxx.sensors.utils;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -30,6 +33,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.tools.ant.DirectoryScanner;
@@ -51,11 +58,18 @@ import org.sonar.cxx.CxxLanguage;
  */
 public abstract class CxxReportSensor implements Sensor {
 
+  public static final String REPORT_THREADS_KEY = "reportThreads";
+
   private static final Logger LOG = Loggers.get(CxxReportSensor.class);
+  private static final HashFunction ISSUE_HASH = Hashing.murmur3_128();
+  private final ThreadLocal<List<Violation>> collectedViolations = new ThreadLocal<>();
   private final Set<String> notFoundFiles = new HashSet<>();
-  private final Set<String> uniqueIssues = new HashSet<>();
+  private final Hash128Set uniqueIssues = new Hash128Set();
+  private int duplicateViolationsCount;
   private final Map<InputFile, Integer> violationsPerFileCount = new HashMap<>();
   private int violationsPerModuleCount;
+  // resolver of the current execution, looked up once and not for every issue
+  private volatile CxxInputFileResolver inputFileResolver;
   protected final CxxLanguage language;
 
   /**
@@ -90,16 +104,34 @@ public abstract class CxxReportSensor implements Sensor {
       LOG.info("Searching reports by relative path with basedir '{}' and search prop '{}'",
         context.fileSystem().baseDir(), getReportPathKey());
       List<File> reports = getReports(context.config(), context.fileSystem().baseDir(), getReportPathKey());
+      inputFileResolver = CxxInputFileResolver.of(context);
       violationsPerFileCount.clear();
       violationsPerModuleCount = 0;
-
-      for (File report : reports) {
-        int prevViolationsCount = violationsPerModuleCount;
-        LOG.info("Processing report '{}'", report);
-        executeReport(context, report, prevViolationsCount);
+      duplicateViolationsCount = 0;
+
+      int threads = getReportThreads(reports.size());
+      if (threads > 1) {
+        processConcurrently(reports, threads, report -> collectViolations(context, report), (report, parsed) -> {
+          int prevViolationsCount = violationsPerModuleCount;
+          LOG.info("Processing report '{}'", report);
+          executeReport(context, report, prevViolationsCount, parsed);
+        });
+      } else {
+        for (File report : reports) {
+          int prevViolationsCount = violationsPerModuleCount;
+          LOG.info("Processing report '{}'", report);
+          executeReport(context, report, prevViolationsCount, null);
+        }
       }
 
       LOG.info("{} processed = {}", CxxMetrics.getKey(this.getSensorKey(), language), violationsPerModuleCount);
+      if (duplicateViolationsCount > 0) {
+        LOG.info("{} duplicate issues suppressed", duplicateViolationsCount);
+      }
+      if (LOG.isDebugEnabled()) {
+        CxxInputFileResolver resolver = getInputFileResolver(context);
+        LOG.debug("Input file resolution: {} hits, {} misses", resolver.getHits(), resolver.getMisses());
+      }
 
       String metricKey = CxxMetrics.getKey(this.getSensorKey(), language);
       Metric<Integer> metric = this.language.getMetric(metricKey);
@@ -129,15 +161,130 @@ public abstract class CxxReportSensor implements Sensor {
     }
   }
 
+  /**
+   * Work of a worker thread for one report, see {@link #processConcurrently}.
+   *
+   * @param <R> report
+   * @param <T> result of the report
+   * @param <E> exception of the work
+   */
+  @FunctionalInterface
+  protected interface ReportTask<R, T, E extends Exception> {
+
+    T process(R report) throws E;
+  }
+
+  /**
+   * Result of a {@link ReportTask}. {@link #get()} waits for the worker and throws the exception of the task.
+   *
+   * @param <T> result of the report
+   * @param <E> exception of the work
+   */
+  @FunctionalInterface
+  protected interface ReportResult<T, E extends Exception> {
+
+    T get() throws E;
+  }
+
+  /**
+   * Takes the result of a report on the calling thread, see {@link #processConcurrently}.
+   *
+   * @param <R> report
+   * @param <T> result of the report
+   * @param <E> exception of the work
+   */
+  @FunctionalInterface
+  protected interface ReportConsumer<R, T, E extends Exception> {
+
+    void accept(R report, ReportResult<T, E> result) throws E;
+  }
+
+  /**
+   * @param count number of reports
+   * @return number of threads to process the reports with: the configured report threads, at most one per report
+   */
+  protected int getReportThreads(int count) {
+    return Math.max(1, Math.min(this.language.getIntegerOption(REPORT_THREADS_KEY).orElse(1), count));
+  }
+
+  /**
+   * Runs the task for every report on a fixed pool of threads. The results are passed to the consumer on the calling
+   * thread in the order of the reports, so whatever the consumer saves is the same as in sequential processing. The
+   * pool is shut down when the consumer has taken all results or throws.
+   *
+   * @param reports to process
+   * @param threads size of the pool
+   * @param task runs on a worker thread
+   * @param consumer runs on the calling thread
+   * @throws E exception of the task (thrown by {@link ReportResult#get()}) or of the consumer
+   */
+  protected static <R, T, E extends Exception> void processConcurrently(List<R> reports, int threads,
+    ReportTask<R, T, E> task, ReportConsumer<R, T, E> consumer) throws E {
+    LOG.info("Processing {} reports with {} threads", reports.size(), threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<T>> results = new ArrayList<>();
+      for (R report : reports) {
+        results.add(executor.submit(() -> task.process(report)));
+      }
+      for (int i = 0; i < reports.size(); i++) {
+        Future<T> result = results.get(i);
+        consumer.accept(reports.get(i), () -> getResult(result));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T, E extends Exception> T getResult(Future<T> result) throws E {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Report processing interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      // the task throws no other checked exceptions than E
+      throw (E) cause;
+    }
+  }
+
+  private List<Violation> collectViolations(SensorContext context, File report) throws Exception {
+    List<Violation> violations = new ArrayList<>();
+    collectedViolations.set(violations);
+    try {
+      processReport(context, report);
+    } finally {
+      collectedViolations.remove();
+    }
+    return violations;
+  }
+
   /**
    * @param context
    * @param report
    * @param prevViolationsCount
+   * @param parsed violations of the report collected by a worker, null to process the report on this thread
    * @throws Exception
    */
-  private void executeReport(SensorContext context, File report, int prevViolationsCount) throws Exception {
+  private void executeReport(SensorContext context, File report, int prevViolationsCount,
+    @Nullable ReportResult<List<Violation>, Exception> parsed) throws Exception {
     try {
-      processReport(context, report);
+      if (parsed == null) {
+        processReport(context, report);
+      } else {
+        for (Violation violation : parsed.get()) {
+          saveUniqueViolation(context, violation.ruleRepoKey, violation.file, violation.line, violation.ruleId,
+            violation.msg);
+        }
+      }
       if (LOG.isDebugEnabled()) {
         LOG.debug("{} processed = {}", CxxMetrics.getKey(this.getSensorKey(), language),
           violationsPerModuleCount - prevViolationsCount);
@@ -269,10 +416,45 @@ public abstract class CxxReportSensor implements Sensor {
    */
   public void saveUniqueViolation(SensorContext sensorContext, String ruleRepoKey,
     @Nullable String file, @Nullable String line, String ruleId, String msg) {
-    // StringBuilder is slower
-    if (uniqueIssues.add(file + line + ruleId + msg)) {
+    List<Violation> collected = collectedViolations.get();
+    if (collected != null) {
+      // report parsed by a worker thread, saved later in the order of the reports
+      collected.add(new Violation(ruleRepoKey, file, line, ruleId, msg));
+      return;
+    }
+    // only a 128 bit hash of file + line + ruleId + msg is kept, not the texts
+    ByteBuffer hash = ByteBuffer.wrap(ISSUE_HASH.newHasher()
+      .putUnencodedChars(String.valueOf(file))
+      .putUnencodedChars(String.valueOf(line))
+      .putUnencodedChars(String.valueOf(ruleId))
+      .putUnencodedChars(String.valueOf(msg))
+      .hash().asBytes());
+    if (uniqueIssues.add(hash.getLong(), hash.getLong())) {
       saveViolation(sensorContext, ruleRepoKey, file, line, ruleId, msg);
+    } else {
+      duplicateViolationsCount++;
+    }
+  }
+
+  /**
+   * @param context of the sensor
+   * @return resolver of the current execution; a new one only if the reports are processed outside of
+   * {@link #execute(SensorContext)} or with another file system
+   */
+  protected CxxInputFileResolver getInputFileResolver(SensorContext context) {
+    CxxInputFileResolver resolver = inputFileResolver;
+    if (resolver == null || !resolver.resolves(context.fileSystem())) {
+      resolver = CxxInputFileResolver.of(context);
+      inputFileResolver = resolver;
     }
+    return resolver;
+  }
+
+  /**
+   * @return number of violations of the last execution not saved because they were already saved before
+   */
+  public int getDuplicateViolationsCount() {
+    return duplicateViolationsCount;
   }
 
   /**
@@ -284,11 +466,10 @@ public abstract class CxxReportSensor implements Sensor {
     @Nullable String filename, @Nullable String line, String ruleId, String msg) {
     // handles file="" situation -- file level
     if ((filename != null) && (!filename.isEmpty())) {
-      String root = sensorContext.fileSystem().baseDir().getAbsolutePath();
-      String normalPath = CxxUtils.normalizePathFull(filename, root);
+      CxxInputFileResolver resolver = getInputFileResolver(sensorContext);
+      String normalPath = resolver.getNormalizedPath(filename);
       if (normalPath != null && !notFoundFiles.contains(normalPath)) {
-        InputFile inputFile = sensorContext.fileSystem().inputFile(sensorContext.fileSystem()
-          .predicates().hasAbsolutePath(normalPath));
+        InputFile inputFile = resolver.getInputFile(filename);
         if (inputFile != null) {
           try {
             int lines = inputFile.lines();
@@ -370,4 +551,23 @@ public abstract class CxxReportSensor implements Sensor {
   public abstract String getReportPathKey();
 
   protected abstract String getSensorKey();
+
+  private static final class Violation {
+
+    private final String ruleRepoKey;
+    @Nullable
+    private final String file;
+    @Nullable
+    private final String line;
+    private final String ruleId;
+    private final String msg;
+
+    Violation(String ruleRepoKey, @Nullable String file, @Nullable String line, String ruleId, String msg) {
+      this.ruleRepoKey = ruleRepoKey;
+      this.file = file;
+      this.line = line;
+      this.ruleId = ruleId;
+      this.msg = msg;
+    }
+  }
 }
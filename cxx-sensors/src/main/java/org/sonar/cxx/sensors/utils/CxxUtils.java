@@ -19,12 +19,21 @@
  */
 package org.sonar.cxx.sensors.utils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -78,21 +87,59 @@ public final class CxxUtils {
     return filePath;
   }
 
+  /**
+   * Compiles a stylesheet. The stylesheet is read and compiled on every call, a sensor keeps the result for the
+   * reports of its analysis. Templates are thread safe, so one instance can transform several reports concurrently.
+   *
+   * @param stylesheet URL of the stylesheet (file, classpath resource or external)
+   * @return compiled stylesheet
+   * @exception IOException
+   * @exception TransformerException
+   */
+  public static Templates newTemplates(URL stylesheet) throws IOException, TransformerException {
+    try (InputStream input = stylesheet.openStream()) {
+      TransformerFactory factory = TransformerFactory.newInstance();
+      return factory.newTemplates(new StreamSource(input, stylesheet.toExternalForm()));
+    }
+  }
+
   /**
    * transformFile
    *
-   * @param stylesheetFile
+   * @param templates compiled stylesheet
    * @param input
    * @param output
    * @exception TransformerException
    */
-  public static void transformFile(Source stylesheetFile, File input, File output) throws TransformerException {
-    TransformerFactory factory = TransformerFactory.newInstance();
-    Transformer transformer = factory.newTransformer(stylesheetFile);
+  public static void transformFile(Templates templates, File input, File output) throws TransformerException {
+    Transformer transformer = templates.newTransformer();
     transformer.setOutputProperty(OutputKeys.INDENT, "yes");
     transformer.transform(new StreamSource(input), new StreamResult(output));
   }
 
+  /**
+   * Transforms a report into a temporary file, the result is streamed from there instead of being held in memory.
+   * The temporary file is deleted when the returned stream is closed.
+   *
+   * @param templates compiled stylesheet
+   * @param input
+   * @return transformed report, must be closed
+   * @exception IOException
+   * @exception TransformerException
+   */
+  public static InputStream transform(Templates templates, File input) throws IOException, TransformerException {
+    Path output = Files.createTempFile("cxx-transformed-", ".xml");
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+        templates.newTransformer().transform(new StreamSource(input), new StreamResult(out));
+      }
+      return new BufferedInputStream(Files.newInputStream(output, StandardOpenOption.DELETE_ON_CLOSE));
+    } catch (IOException | TransformerException | RuntimeException e) {
+      Files.deleteIfExists(output);
+      throw e;
+    }
+  }
+
   /**
    * <p>
    * Gets the stack trace from a Throwable as a String.</p>
@@ -0,0 +1,131 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+/**
+ * Set of 128 bit hash codes. The hash codes are stored as pairs of longs in an open addressing table, so only 16 bytes
+ * (32 at most with the free slots) are kept per entry instead of the hashed values.
+ *
+ * Not thread-safe.
+ */
+public final class Hash128Set {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // two longs per slot, a slot with both longs zero is free
+  private long[] table;
+  private int mask;
+  private int size;
+  private boolean containsZero;
+
+  public Hash128Set() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  /**
+   * @param high first 64 bits of the hash code
+   * @param low last 64 bits of the hash code
+   * @return true if the hash code was not yet in the set
+   */
+  public boolean add(long high, long low) {
+    if (high == 0 && low == 0) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    if (insert(table, mask, high, low)) {
+      size++;
+      if (size > (mask + 1) / 2) {
+        rehash();
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param high first 64 bits of the hash code
+   * @param low last 64 bits of the hash code
+   * @return true if the hash code is in the set
+   */
+  public boolean contains(long high, long low) {
+    if (high == 0 && low == 0) {
+      return containsZero;
+    }
+    int slot = slot(high, low, mask);
+    while (true) {
+      long h = table[2 * slot];
+      long l = table[2 * slot + 1];
+      if (h == high && l == low) {
+        return true;
+      }
+      if (h == 0 && l == 0) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void allocate(int slots) {
+    table = new long[2 * slots];
+    mask = slots - 1;
+  }
+
+  private void rehash() {
+    long[] old = table;
+    allocate(2 * (mask + 1));
+    for (int i = 0; i < old.length; i += 2) {
+      if (old[i] != 0 || old[i + 1] != 0) {
+        insert(table, mask, old[i], old[i + 1]);
+      }
+    }
+  }
+
+  private static int slot(long high, long low, int mask) {
+    // the hash codes are usually well distributed already, mixing protects against clustering if they are not
+    long bits = (high ^ low) * 0x9E3779B97F4A7C15L;
+    return (int) (bits >>> 32) & mask;
+  }
+
+  private static boolean insert(long[] table, int mask, long high, long low) {
+    int slot = slot(high, low, mask);
+    while (true) {
+      long h = table[2 * slot];
+      long l = table[2 * slot + 1];
+      if (h == high && l == low) {
+        return false;
+      }
+      if (h == 0 && l == 0) {
+        table[2 * slot] = high;
+        table[2 * slot + 1] = low;
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+}
@@ -19,15 +19,24 @@
  */
 package org.sonar.cxx.sensors.utils;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxCompilationUnitSettings;
@@ -35,11 +44,16 @@ import org.sonar.cxx.CxxConfiguration;
 
 /**
  * JsonCompilationDatabase
+ *
+ * The database is read as a stream, one command object at a time. Entries with the same defines and includes share
+ * one {@link CxxCompilationUnitSettings} instance.
  */
 public class JsonCompilationDatabase {
 
   private static final Logger LOG = Loggers.get(JsonCompilationDatabase.class);
 
+  private final Map<List<Object>, CxxCompilationUnitSettings> sharedSettings = new HashMap<>();
+
   /**
    * JsonCompilationDatabase
    *
@@ -48,49 +62,77 @@ public class JsonCompilationDatabase {
    * @throws IOException
    */
   public JsonCompilationDatabase(CxxConfiguration config, File compileCommandsFile) throws IOException {
+    this(config, compileCommandsFile, null);
+  }
+
+  /**
+   * JsonCompilationDatabase
+   *
+   * @param config
+   * @param compileCommandsFile
+   * @param filter accepts the normalized absolute path of a source file, entries of other files are skipped (null:
+   * load all entries)
+   * @throws IOException
+   */
+  public JsonCompilationDatabase(CxxConfiguration config, File compileCommandsFile,
+    @Nullable Predicate<String> filter) throws IOException {
     LOG.debug("Parsing 'JSON Compilation Database' format");
 
     ObjectMapper mapper = new ObjectMapper();
     mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
-    mapper.enable(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY);
-
-    JsonCompilationDatabaseCommandObject[] commandObjects = mapper.readValue(compileCommandsFile,
-      JsonCompilationDatabaseCommandObject[].class);
-
-    for (JsonCompilationDatabaseCommandObject commandObject : commandObjects) {
+    ObjectReader reader = mapper.readerFor(JsonCompilationDatabaseCommandObject.class);
 
-      Path cwd = Paths.get(".");
-
-      if (commandObject.getDirectory() != null) {
-        cwd = Paths.get(commandObject.getDirectory());
+    try (JsonParser parser = mapper.getFactory().createParser(compileCommandsFile)) {
+      try {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+          throw JsonMappingException.from(parser, "JSON Compilation Database must be an array of command objects");
+        }
+        int skipped = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          JsonCompilationDatabaseCommandObject commandObject = reader.readValue(parser);
+          if (!addCommandObject(config, commandObject, filter)) {
+            skipped++;
+          }
+        }
+        if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+          throw JsonMappingException.from(parser, "Unexpected token " + parser.getCurrentToken()
+            + " in JSON Compilation Database");
+        }
+        LOG.debug("JSON Compilation Database: {} distinct settings, {} entries of other files skipped",
+          sharedSettings.size(), skipped);
+      } catch (JsonParseException e) {
+        throw JsonMappingException.from(parser, e.getOriginalMessage(), e);
       }
+    }
+  }
 
-      Path absPath = cwd.resolve(commandObject.getFile());
-
-      if ("__global__".equals(commandObject.getFile())) {
-        CxxCompilationUnitSettings globalSettings = new CxxCompilationUnitSettings();
-
-        parseCommandObject(globalSettings, commandObject);
-
-        config.setGlobalCompilationUnitSettings(globalSettings);
-      } else {
-        CxxCompilationUnitSettings settings = new CxxCompilationUnitSettings();
+  /**
+   * @return false if the entry was skipped by the filter
+   */
+  private boolean addCommandObject(CxxConfiguration config, JsonCompilationDatabaseCommandObject commandObject,
+    @Nullable Predicate<String> filter) {
+    Path cwd = Paths.get(".");
 
-        parseCommandObject(settings, commandObject);
+    if (commandObject.getDirectory() != null) {
+      cwd = Paths.get(commandObject.getDirectory());
+    }
 
-        config.addCompilationUnitSettings(absPath.toAbsolutePath().normalize().toString(), settings);
+    if ("__global__".equals(commandObject.getFile())) {
+      config.setGlobalCompilationUnitSettings(parseCommandObject(commandObject));
+    } else {
+      String absPath = cwd.resolve(commandObject.getFile()).toAbsolutePath().normalize().toString();
+      if (filter != null && !filter.test(absPath)) {
+        return false;
       }
+      config.addCompilationUnitSettings(absPath, parseCommandObject(commandObject));
     }
+    return true;
   }
 
-  private static void parseCommandObject(CxxCompilationUnitSettings settings,
-    JsonCompilationDatabaseCommandObject commandObject) {
-    settings.setDefines(commandObject.getDefines());
-    settings.setIncludes(commandObject.getIncludes());
-
+  private CxxCompilationUnitSettings parseCommandObject(JsonCompilationDatabaseCommandObject commandObject) {
     // No need to parse command lines as we have needed information
     if (!commandObject.getDefines().isEmpty() || !commandObject.getIncludes().isEmpty()) {
-      return;
+      return getSettings(commandObject.getDefines(), commandObject.getIncludes());
     }
 
     String cmdLine;
@@ -100,7 +142,7 @@ public class JsonCompilationDatabase {
     } else if (!commandObject.getCommand().isEmpty()) {
       cmdLine = commandObject.getCommand();
     } else {
-      return;
+      return getSettings(commandObject.getDefines(), commandObject.getIncludes());
     }
 
     String[] args = tokenizeCommandLine(cmdLine);
@@ -138,8 +180,19 @@ public class JsonCompilationDatabase {
       }
     }
 
-    settings.setDefines(defines);
-    settings.setIncludes(includes);
+    return getSettings(defines, includes);
+  }
+
+  /**
+   * Flyweight: identical defines and includes are stored only once.
+   */
+  private CxxCompilationUnitSettings getSettings(Map<String, String> defines, List<String> includes) {
+    return sharedSettings.computeIfAbsent(Arrays.asList(defines, includes), (List<Object> key) -> {
+      CxxCompilationUnitSettings settings = new CxxCompilationUnitSettings();
+      settings.setDefines(defines);
+      settings.setIncludes(includes);
+      return settings;
+    });
   }
 
   private static String[] tokenizeCommandLine(String cmdLine) {
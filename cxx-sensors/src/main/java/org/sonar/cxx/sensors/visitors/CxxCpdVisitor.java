@@ -43,14 +43,22 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
   private final SensorContext sensorContext;
   private final Boolean ignoreLiterals;
   private final Boolean ignoreIdentifiers;
+  @Nullable
+  private final CxxFileDataRecorder recorder;
   private InputFile inputFile;
   private NewCpdTokens cpdTokens;
   private int isFunctionDefinition;
 
   public CxxCpdVisitor(SensorContext sensorContext, Boolean ignoreLiterals, Boolean ignoreIdentifiers) {
+    this(sensorContext, ignoreLiterals, ignoreIdentifiers, null);
+  }
+
+  public CxxCpdVisitor(SensorContext sensorContext, Boolean ignoreLiterals, Boolean ignoreIdentifiers,
+    @Nullable CxxFileDataRecorder recorder) {
     this.sensorContext = sensorContext;
     this.ignoreLiterals = ignoreLiterals;
     this.ignoreIdentifiers = ignoreIdentifiers;
+    this.recorder = recorder;
   }
 
   @Override
@@ -67,7 +75,9 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
 
   @Override
   public void leaveFile(@Nullable AstNode astNode) {
-    cpdTokens.save();
+    synchronized (sensorContext) {
+      cpdTokens.save();
+    }
   }
 
   @Override
@@ -102,6 +112,10 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
         TextRange range = inputFile.newRange(token.getLine(), token.getColumn(),
           token.getLine(), token.getColumn() + token.getValue().length());
         cpdTokens.addToken(range, text);
+        if (recorder != null) {
+          recorder.cpdToken(getContext().getFile(), token.getLine(), token.getColumn(),
+            token.getLine(), token.getColumn() + token.getValue().length(), text);
+        }
       } catch (IllegalArgumentException | IllegalStateException e) {
         // ignore range errors: parsing errors could lead to wrong location data
         if (LOG.isDebugEnabled()) {
@@ -31,6 +31,7 @@ import com.sonar.sslr.api.Trivia;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -52,12 +53,15 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
 
   private static final Logger LOG = Loggers.get(CxxFileLinesVisitor.class);
   private final FileLinesContextFactory fileLinesContextFactory;
-  private static final Set<Integer> linesOfCode = Sets.newHashSet();
-  private static final Set<Integer> linesOfComments = Sets.newHashSet();
-  private static final Set<Integer> executableLines = Sets.newHashSet();
+  private final Set<Integer> linesOfCode = Sets.newHashSet();
+  private final Set<Integer> linesOfComments = Sets.newHashSet();
+  private final Set<Integer> executableLines = Sets.newHashSet();
+  private final SensorContext context;
   private final FileSystem fileSystem;
   private final Map<InputFile, Set<Integer>> allLinesOfCode;
-  private static int isWithinFunctionDefinition;
+  @Nullable
+  private final CxxFileDataRecorder recorder;
+  private int isWithinFunctionDefinition;
   private static final Set<String> ignoreToken = Sets.newHashSet(";", "{", "}", "(", ")", "[", "]");
   private static final AstNodeType[] nodesToVisit = {
     CxxGrammarImpl.labeledStatement,
@@ -76,9 +80,24 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
    */
   public CxxFileLinesVisitor(FileLinesContextFactory fileLinesContextFactory, SensorContext context,
     Map<InputFile, Set<Integer>> allLinesOfCode) {
+    this(fileLinesContextFactory, context, allLinesOfCode, null);
+  }
+
+  /**
+   * CxxFileLinesVisitor generates sets for linesOfCode, linesOfComments, executableLines
+   *
+   * @param context for coverage analysis
+   * @param fileLinesContextFactory container for linesOfCode, linesOfComments, executableLines
+   * @param allLinesOfCode set of lines for a source file
+   * @param recorder receives a copy of the sets of each file, may be null
+   */
+  public CxxFileLinesVisitor(FileLinesContextFactory fileLinesContextFactory, SensorContext context,
+    Map<InputFile, Set<Integer>> allLinesOfCode, @Nullable CxxFileDataRecorder recorder) {
     this.fileLinesContextFactory = fileLinesContextFactory;
+    this.context = context;
     this.fileSystem = context.fileSystem();
     this.allLinesOfCode = allLinesOfCode;
+    this.recorder = recorder;
   }
 
   @Override
@@ -131,7 +150,7 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
   /**
    * @param astNode
    */
-  private static void visitStatement(AstNode astNode) {
+  private void visitStatement(AstNode astNode) {
     if (astNode.hasDirectChildren(CxxGrammarImpl.declarationStatement)
       && !astNode.hasDescendant(CxxGrammarImpl.initializer)) {
       return;
@@ -187,8 +206,13 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
     executableLines.stream().forEach(line -> fileLinesContext.setIntValue(CoreMetrics.EXECUTABLE_LINES_DATA_KEY,
       line, 1));
 
-    fileLinesContext.save();
+    synchronized (context) {
+      fileLinesContext.save();
+    }
     this.allLinesOfCode.put(inputFile, Sets.newHashSet(linesOfCode));
+    if (recorder != null) {
+      recorder.fileLines(getContext().getFile(), linesOfCode, linesOfComments, executableLines);
+    }
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("CxxFileLinesVisitor: '{}'", inputFile.absolutePath()); //@todo: deprecated absolutePath
@@ -43,6 +43,8 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
 
   private NewHighlighting newHighlighting;
   private final SensorContext context;
+  @Nullable
+  private final CxxFileDataRecorder recorder;
 
   private static class TokenLocation {
 
@@ -115,7 +117,12 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
   }
 
   public CxxHighlighterVisitor(SensorContext context) {
+    this(context, null);
+  }
+
+  public CxxHighlighterVisitor(SensorContext context, @Nullable CxxFileDataRecorder recorder) {
     this.context = context;
+    this.recorder = recorder;
   }
 
   @Override
@@ -131,7 +138,9 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
   @Override
   public void leaveFile(@Nullable AstNode astNode) {
     try {
-      newHighlighting.save();
+      synchronized (context) {
+        newHighlighting.save();
+      }
     } catch (IllegalStateException e) {
       // ignore highlight errors: parsing errors could lead to wrong location data
       LOG.debug("Highligthing error in file: {}, error: {}", getContext().getFile().getAbsoluteFile(), e);
@@ -166,6 +175,10 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
       if (!current.overlaps(last)) {
         newHighlighting.highlight(current.startLine(), current.startLineOffset(),
           current.endLine(), current.endLineOffset(), typeOfText);
+        if (recorder != null) {
+          recorder.highlight(getContext().getFile(), current.startLine(), current.startLineOffset(),
+            current.endLine(), current.endLineOffset(), typeOfText);
+        }
       }
     } catch (IllegalArgumentException ex) {
       // ignore highlight errors: parsing errors could lead to wrong location data
@@ -0,0 +1,62 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.clangtidy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class ClangTidyDiagnosticTest {
+
+  @Test
+  public void shouldParseDiagnostic() {
+    ClangTidyDiagnostic diagnostic = ClangTidyDiagnostic.parse(
+      "C:\\src\\a.cpp:76:20: warning: std::move of the const variable 'x' has no effect [performance-move-const-arg]");
+
+    assertThat(diagnostic).isNotNull();
+    assertThat(diagnostic.getPath()).isEqualTo("C:\\src\\a.cpp");
+    assertThat(diagnostic.getLine()).isEqualTo("76");
+    assertThat(diagnostic.getColumn()).isEqualTo("20");
+    assertThat(diagnostic.getLevel()).isEqualTo("warning");
+    assertThat(diagnostic.getMessage()).isEqualTo("std::move of the const variable 'x' has no effect");
+    assertThat(diagnostic.getCheck()).isEqualTo("performance-move-const-arg");
+  }
+
+  @Test
+  public void shouldUseLongestPath() {
+    ClangTidyDiagnostic diagnostic = ClangTidyDiagnostic.parse("a.cpp:1:2: b.cpp:3:4: error: message [check]");
+
+    assertThat(diagnostic).isNotNull();
+    assertThat(diagnostic.getPath()).isEqualTo("a.cpp:1:2: b.cpp");
+    assertThat(diagnostic.getLine()).isEqualTo("3");
+    assertThat(diagnostic.getMessage()).isEqualTo("message");
+  }
+
+  @Test
+  public void shouldRejectOtherLines() {
+    assertThat(ClangTidyDiagnostic.parse("")).isNull();
+    assertThat(ClangTidyDiagnostic.parse("    gets(buffer); //rats violation")).isNull();
+    assertThat(ClangTidyDiagnostic.parse("    ^")).isNull();
+    assertThat(ClangTidyDiagnostic.parse("    table[i][j] = matrix[j][i]")).isNull();
+    assertThat(ClangTidyDiagnostic.parse("a.h:12:5: note: expanded from macro 'FOO'")).isNull();
+    assertThat(ClangTidyDiagnostic.parse("a.cpp:1:2: warning: message []")).isNull();
+    assertThat(ClangTidyDiagnostic.parse("a.cpp:1:2: warning: array[i] [check]")).isNull();
+    assertThat(ClangTidyDiagnostic.parse("a.cpp:x:2: warning: message [check]")).isNull();
+  }
+}
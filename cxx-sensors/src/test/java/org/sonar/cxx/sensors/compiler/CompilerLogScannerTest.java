@@ -0,0 +1,103 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.cxx.visitors.RegexLiteral;
+
+public class CompilerLogScannerTest {
+
+  private static final Pattern GCC = Pattern.compile(CxxCompilerGccParser.DEFAULT_REGEX_DEF, Pattern.MULTILINE);
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldMatchLinesWithLiteral() throws IOException {
+    File log = log("make all\n"
+      + "src/a.cpp:12:5: warning: unused variable 'x' [-Wunused-variable]\n"
+      + "src/a.cpp:13:1: note: declared here [-Wunused-variable]\n"
+      + "src/b.cpp:7:2: warning: comparison [-Wsign-compare]\n");
+
+    assertThat(scan(log, GCC)).containsExactly("src/a.cpp:12", "src/b.cpp:7");
+  }
+
+  @Test
+  public void shouldSkipLinesWithoutLiteral() throws IOException {
+    File log = log("a.cpp:1:1: warning: first [-Wa]\n"
+      + "b.cpp:2:1: warning: second [-Wb] MARK\n");
+
+    // the pattern matches both lines, the line without the literal is not passed to the pattern
+    List<String> matches = new ArrayList<>();
+    CompilerLogScanner.scan(log, "UTF-8", GCC, "MARK", m -> matches.add(m.group(1)));
+    assertThat(matches).isEmpty();
+
+    CompilerLogScanner.scan(log, "UTF-8", Pattern.compile("^(.*):([0-9]+):[0-9]+:.*MARK$"), "MARK",
+      m -> matches.add(m.group(1)));
+    assertThat(matches).containsExactly("b.cpp");
+  }
+
+  @Test
+  public void shouldHandleCrLfAndLf() throws IOException {
+    File log = log("a.cpp:1:1: warning: first [-Wa]\r\n"
+      + "b.cpp:2:1: warning: second [-Wb]\n"
+      + "c.cpp:3:1: warning: third [-Wc]\r\n");
+
+    assertThat(scan(log, GCC)).containsExactly("a.cpp:1", "b.cpp:2", "c.cpp:3");
+  }
+
+  @Test
+  public void shouldMatchLastLineWithoutNewline() throws IOException {
+    File log = log("a.cpp:1:1: warning: first [-Wa]\n"
+      + "b.cpp:2:1: warning: last [-Wb]");
+
+    assertThat(scan(log, GCC)).containsExactly("a.cpp:1", "b.cpp:2");
+  }
+
+  @Test
+  public void shouldExtractLiteralOfDefaultPatterns() {
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile(CxxCompilerGccParser.DEFAULT_REGEX_DEF, Pattern.MULTILINE)))
+      .isEqualTo(": warning: ");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile(CxxCompilerVcParser.DEFAULT_REGEX_DEF, Pattern.MULTILINE)))
+      .isEqualTo(") : warning ");
+  }
+
+  private static List<String> scan(File log, Pattern pattern) throws IOException {
+    List<String> matches = new ArrayList<>();
+    CompilerLogScanner.scan(log, "UTF-8", pattern, m -> matches.add(m.group(1) + ":" + m.group(2)));
+    return matches;
+  }
+
+  private File log(String content) throws IOException {
+    File log = tempFolder.newFile();
+    Files.write(log.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return log;
+  }
+}
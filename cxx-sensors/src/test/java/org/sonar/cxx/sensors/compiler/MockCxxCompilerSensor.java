@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 import org.junit.Assert;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
@@ -45,19 +46,19 @@ public class MockCxxCompilerSensor extends CxxCompilerSensor {
     CompilerParser compileParser = mock(CompilerParser.class);
 
     try {
-      doAnswer(new Answer<List<CompilerParser.Warning>>() {
+      doAnswer(new Answer<Void>() {
 
         @Override
-        public List<CompilerParser.Warning> answer(InvocationOnMock invocation)
+        public Void answer(InvocationOnMock invocation)
           throws Throwable {
           Object[] args = invocation.getArguments();
-          if (args[4] instanceof List<?>) {
-            List<CompilerParser.Warning> list = (List<CompilerParser.Warning>) args[4];
-            list.addAll(warnings);
+          if (args[4] instanceof Consumer<?>) {
+            Consumer<CompilerParser.Warning> consumer = (Consumer<CompilerParser.Warning>) args[4];
+            warnings.forEach(consumer);
           }
           return null;
         }
-      }).when(compileParser).processReport(any(SensorContext.class), any(File.class), any(String.class), any(String.class), any(List.class));
+      }).when(compileParser).processReport(any(SensorContext.class), any(File.class), any(String.class), any(String.class), any(Consumer.class));
     } catch (FileNotFoundException e) {
       Assert.fail(e.getMessage());
     }
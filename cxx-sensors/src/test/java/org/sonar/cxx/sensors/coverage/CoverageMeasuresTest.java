@@ -0,0 +1,84 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.coverage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class CoverageMeasuresTest {
+
+  @Test
+  public void shouldSumHitsAndKeepLastConditions() {
+    CoverageMeasures measures = CoverageMeasures.create();
+    measures.setHits(3, 1);
+    measures.setHits(1, 0);
+    measures.setHits(3, 2);
+    measures.setConditions(3, 4, 1);
+    measures.setConditions(3, 2, 2);
+
+    assertThat(measures.size()).isEqualTo(2);
+    assertThat(measures.getLine(0)).isEqualTo(3);
+    assertThat(measures.getHits(0)).isEqualTo(3);
+    assertThat(measures.getConditions(0)).isEqualTo(2);
+    assertThat(measures.getCoveredConditions(0)).isEqualTo(2);
+    assertThat(measures.getLine(1)).isEqualTo(1);
+    assertThat(measures.getHits(1)).isEqualTo(0);
+    assertThat(measures.getCoveredLines()).containsOnly(3);
+    assertThat(measures.getCoveredConditions()).containsOnly(3);
+  }
+
+  @Test
+  public void shouldGrowWithManyLines() {
+    CoverageMeasures measures = CoverageMeasures.create();
+    for (int line = 1; line <= 100_000; line++) {
+      measures.setHits(line, line % 2);
+    }
+    for (int line = 1; line <= 100_000; line++) {
+      measures.setHits(line, 1);
+    }
+
+    assertThat(measures.size()).isEqualTo(100_000);
+    assertThat(measures.getLine(99_999)).isEqualTo(100_000);
+    assertThat(measures.getHits(99_999)).isEqualTo(1);
+    assertThat(measures.getHits(99_998)).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldMergeMeasuresOfSameFile() {
+    CoverageMeasures first = CoverageMeasures.create();
+    first.setHits(1, 1);
+    first.setHits(2, 0);
+    first.setConditions(2, 2, 0);
+    CoverageMeasures second = CoverageMeasures.create();
+    second.setHits(2, 3);
+    second.setConditions(2, 2, 1);
+    second.setHits(5, 1);
+
+    first.merge(second);
+
+    assertThat(first.size()).isEqualTo(3);
+    assertThat(first.getHits(0)).isEqualTo(1);
+    assertThat(first.getHits(1)).isEqualTo(3);
+    assertThat(first.getConditions(1)).isEqualTo(2);
+    assertThat(first.getCoveredConditions(1)).isEqualTo(1);
+    assertThat(first.getLine(2)).isEqualTo(5);
+    assertThat(second.size()).isEqualTo(2);
+  }
+}
@@ -19,6 +19,14 @@
  */
 package org.sonar.cxx.sensors.coverage;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.Before;
 import org.junit.Test;
@@ -219,4 +227,44 @@ public class CxxBullseyeCoverageSensorTest {
     }
   }
 
+  @Test
+  public void shouldParseReportsConcurrently() throws Exception {
+    File[] reports = new File(fs.baseDir(), "coverage-reports/bullseye").listFiles();
+    assertThat(reports).isNotEmpty();
+    SensorContextTester context = SensorContextTester.create(fs.baseDir());
+    BullseyeParser parser = new BullseyeParser();
+
+    Map<File, Map<String, CoverageMeasures>> expected = new HashMap<>();
+    for (File report : reports) {
+      Map<String, CoverageMeasures> coverageData = new HashMap<>();
+      parser.processReport(context, report, coverageData);
+      expected.put(report, coverageData);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Map<String, CoverageMeasures>>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        for (File report : reports) {
+          results.add(executor.submit(() -> {
+            Map<String, CoverageMeasures> coverageData = new HashMap<>();
+            parser.processReport(context, report, coverageData);
+            return coverageData;
+          }));
+        }
+      }
+      for (int i = 0; i < results.size(); i++) {
+        Map<String, CoverageMeasures> actual = results.get(i).get();
+        Map<String, CoverageMeasures> sequential = expected.get(reports[i % reports.length]);
+        assertThat(actual.keySet()).isEqualTo(sequential.keySet());
+        for (Map.Entry<String, CoverageMeasures> entry : sequential.entrySet()) {
+          CoverageMeasures measures = actual.get(entry.getKey());
+          assertThat(measures.getCoveredLines()).isEqualTo(entry.getValue().getCoveredLines());
+          assertThat(measures.getCoveredConditions()).isEqualTo(entry.getValue().getCoveredConditions());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
@@ -22,6 +22,7 @@ package org.sonar.cxx.sensors.coverage;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.Before;
@@ -178,6 +179,69 @@ public class CxxCoberturaSensorTest {
     assertThat(context.lineHits("ProjectKey:sources/utils/code_chunks.cpp", 1)).isNull();
   }
 
+  @Test
+  public void shouldResolveFilesWithSourceAfterPackages() {
+    SensorContextTester context = SensorContextTester.create(fs.baseDir());
+
+    settings.setProperty(language.getPluginProperty(CxxCoverageSensor.REPORT_PATH_KEY), "coverage-reports/cobertura/specific-cases/cobertura-sources-after-packages.xml");
+    context.setSettings(settings);
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/utils.cpp")
+      .setLanguage("cpp").initMetadata("asd\nasdas\nasda\n").build());
+
+    sensor = new CxxCoverageSensor(new CxxCoverageCache(), language, context);
+    sensor.execute(context);
+
+    assertThat(context.lineHits("ProjectKey:sources/utils/utils.cpp", 1)).isEqualTo(3);
+    assertThat(context.lineHits("ProjectKey:sources/utils/utils.cpp", 3)).isEqualTo(0);
+    assertThat(context.conditions("ProjectKey:sources/utils/utils.cpp", 2)).isEqualTo(2);
+    assertThat(context.coveredConditions("ProjectKey:sources/utils/utils.cpp", 2)).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldMergeTheSameMeasuresWithReportThreads() {
+    settings.setProperty(language.getPluginProperty(CxxCoverageSensor.REPORT_PATH_KEY),
+      "coverage-reports/cobertura/coverage-result-cobertura.xml,"
+      + "coverage-reports/cobertura/specific-cases/cobertura-sources-after-packages.xml");
+    SensorContextTester sequential = coverageOfUtils();
+
+    when(language.getIntegerOption(CxxCoverageSensor.REPORT_THREADS_KEY)).thenReturn(Optional.of(2));
+    SensorContextTester parallel = coverageOfUtils();
+
+    for (int line = 1; line <= 3; line++) {
+      assertThat(parallel.lineHits("ProjectKey:sources/utils/utils.cpp", line))
+        .isEqualTo(sequential.lineHits("ProjectKey:sources/utils/utils.cpp", line));
+      assertThat(parallel.conditions("ProjectKey:sources/utils/utils.cpp", line))
+        .isEqualTo(sequential.conditions("ProjectKey:sources/utils/utils.cpp", line));
+    }
+    assertThat(parallel.lineHits("ProjectKey:sources/utils/utils.cpp", 1)).isEqualTo(3);
+  }
+
+  private SensorContextTester coverageOfUtils() {
+    SensorContextTester context = SensorContextTester.create(fs.baseDir());
+    context.setSettings(settings);
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/utils.cpp")
+      .setLanguage("cpp").initMetadata("asd\nasdas\nasda\n").build());
+    sensor = new CxxCoverageSensor(new CxxCoverageCache(), language, context);
+    sensor.execute(context);
+    return context;
+  }
+
+  @Test
+  public void shouldDetectReportFormatByRootElement() {
+    SensorContextTester context = SensorContextTester.create(fs.baseDir());
+
+    settings.setProperty(language.getPluginProperty(CxxCoverageSensor.REPORT_PATH_KEY), "coverage-reports/cobertura/specific-cases/cobertura-sources-after-packages.xml");
+    context.setSettings(settings);
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/utils.cpp")
+      .setLanguage("cpp").initMetadata("asd\nasdas\nasda\n").build());
+
+    sensor = new CxxCoverageSensor(new CxxCoverageCache(Long.MAX_VALUE), language, context);
+    sensor.execute(context);
+
+    assertThat(logTester.logs().stream().anyMatch(s -> s.startsWith("Detected format 'CoberturaParser'"))).isTrue();
+    assertThat(context.lineHits("ProjectKey:sources/utils/utils.cpp", 1)).isEqualTo(3);
+  }
+
   @Test
   public void shouldReportCoverageWhenVisualStudioCase() {
     SensorContextTester context = SensorContextTester.create(fs.baseDir());
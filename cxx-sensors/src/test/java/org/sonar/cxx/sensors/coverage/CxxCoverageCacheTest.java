@@ -0,0 +1,131 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CxxCoverageCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldMoveLeastRecentlyUsedReportsToDisk() throws IOException {
+    CxxCoverageCache cache = new CxxCoverageCache(1);
+    File first = report("first");
+    File second = report("second");
+    cache.put(first, measures(1));
+    cache.put(second, measures(2));
+
+    assertThat(cache.getMemoryEntries()).isEqualTo(1);
+    assertThat(cache.getDiskEntries()).isEqualTo(1);
+
+    CoverageMeasures measures = cache.get(first).get("file.cpp");
+    assertThat(measures.size()).isEqualTo(1);
+    assertThat(measures.getLine(0)).isEqualTo(7);
+    assertThat(measures.getHits(0)).isEqualTo(1);
+    assertThat(measures.getConditions(0)).isEqualTo(4);
+    assertThat(measures.getCoveredConditions(0)).isEqualTo(1);
+    assertThat(cache.get(second).get("file.cpp").getHits(0)).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldNotReturnMeasuresOfChangedReport() throws IOException {
+    CxxCoverageCache cache = new CxxCoverageCache(CxxCoverageCache.DEFAULT_MAX_SIZE_MB * 1024 * 1024);
+    File report = report("report");
+    cache.put(report, measures(1));
+    assertThat(cache.get(report)).isNotNull();
+
+    Files.write(report.toPath(), "changed report".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(cache.get(report)).isNull();
+    assertThat(cache.getMemoryEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldNotOverwriteSpilledReportAfterFailedWrite() throws IOException {
+    CxxCoverageCache cache = new CxxCoverageCache(1);
+    File first = report("first");
+    File second = report("second");
+    File third = report("third");
+    cache.put(first, measures(1));
+    cache.put(second, measures(2));
+    cache.put(third, measures(3));
+
+    // a file name which cannot be written with writeUTF, moving the report to disk fails
+    Map<String, CoverageMeasures> unwritable = new HashMap<>();
+    unwritable.put(new String(new char[70_000]).replace('\0', 'x'), CoverageMeasures.create());
+    cache.put(first, unwritable);
+    cache.put(report("fourth"), measures(4));
+    cache.put(report("fifth"), measures(5));
+
+    assertThat(cache.get(second).get("file.cpp").getHits(0)).isEqualTo(2);
+    assertThat(cache.get(third).get("file.cpp").getHits(0)).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldDeleteSpilledReportsWhenAnalysisEnds() throws IOException {
+    CxxCoverageCache cache = new CxxCoverageCache(1);
+    File first = report("first");
+    cache.put(first, measures(1));
+    cache.put(report("second"), measures(2));
+    assertThat(cache.getDiskEntries()).isEqualTo(1);
+    File directory = cache.getDirectory();
+    assertThat(directory).isDirectory();
+
+    cache.stop();
+
+    assertThat(directory).doesNotExist();
+    assertThat(cache.getMemoryEntries()).isEqualTo(0);
+    assertThat(cache.getDiskEntries()).isEqualTo(0);
+    assertThat(cache.get(first)).isNull();
+  }
+
+  @Test
+  public void shouldNotShareStoreBetweenInstances() throws IOException {
+    File report = report("report");
+    new CxxCoverageCache().put(report, measures(1));
+    assertThat(new CxxCoverageCache().get(report)).isNull();
+  }
+
+  private File report(String content) throws IOException {
+    File report = tempFolder.newFile();
+    Files.write(report.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return report;
+  }
+
+  private static Map<String, CoverageMeasures> measures(int hits) {
+    CoverageMeasures measures = CoverageMeasures.create();
+    measures.setHits(7, hits);
+    measures.setConditions(7, 4, 1);
+    Map<String, CoverageMeasures> measuresByFile = new HashMap<>();
+    measuresByFile.put("file.cpp", measures);
+    return measuresByFile;
+  }
+}
@@ -19,7 +19,9 @@
  */
 package org.sonar.cxx.sensors.cppcheck;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.Before;
 import org.junit.Test;
@@ -61,6 +63,31 @@ public class CxxCppCheckSensorTest {
     assertThat(context.allIssues()).hasSize(9);
   }
 
+  @Test
+  public void shouldReportSameViolationsWhenParsingReportsInParallel() {
+    settings.setProperty(language.getPluginProperty(CxxCppCheckSensor.REPORT_PATH_KEY), "cppcheck-reports/cppcheck-result-*.xml");
+    List<String> sequential = reportIssues();
+
+    when(language.getIntegerOption(CxxCppCheckSensor.REPORT_THREADS_KEY)).thenReturn(Optional.of(4));
+    List<String> parallel = reportIssues();
+
+    assertThat(sequential).hasSize(9);
+    assertThat(parallel).containsExactlyElementsOf(sequential);
+  }
+
+  private List<String> reportIssues() {
+    SensorContextTester context = SensorContextTester.create(fs.baseDir());
+    context.setSettings(settings);
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/code_chunks.cpp")
+      .setLanguage("cpp").initMetadata("asd\nasdas\nasda\n").build());
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/utils.cpp")
+      .setLanguage("cpp").initMetadata("asd\nasdas\nasda\n").build());
+    new CxxCppCheckSensor(language).execute(context);
+    return context.allIssues().stream()
+      .map(issue -> issue.ruleKey() + ":" + issue.primaryLocation().message())
+      .collect(Collectors.toList());
+  }
+
   @Test
   public void shouldReportProjectLevelViolationsV1() {
     SensorContextTester context = SensorContextTester.create(fs.baseDir());
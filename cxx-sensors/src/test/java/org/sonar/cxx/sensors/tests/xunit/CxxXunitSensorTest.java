@@ -20,7 +20,13 @@
 package org.sonar.cxx.sensors.tests.xunit;
 
 import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import org.apache.commons.io.IOUtils;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.groups.Tuple.tuple;
 import org.junit.Before;
@@ -85,6 +91,36 @@ public class CxxXunitSensorTest {
         tuple(CoreMetrics.TEST_EXECUTION_TIME_KEY, 0L));
   }
 
+  @Test
+  public void shouldSumUpTheSameTotalsWithReportThreads() {
+    settings.setProperty(language.getPluginProperty(CxxXunitSensor.REPORT_PATH_KEY), "xunit-reports/xunit-result-*.xml");
+    SensorContextTester sequential = SensorContextTester.create(fs.baseDir());
+    sequential.setSettings(settings);
+    new CxxXunitSensor(language).execute(sequential);
+
+    when(language.getIntegerOption(CxxXunitSensor.REPORT_THREADS_KEY)).thenReturn(Optional.of(4));
+    SensorContextTester parallel = SensorContextTester.create(fs.baseDir());
+    parallel.setSettings(settings);
+    new CxxXunitSensor(language).execute(parallel);
+
+    assertThat(sequential.measures(sequential.module().key())).hasSize(6);
+    assertThat(parallel.measures(parallel.module().key()))
+      .extracting("metric.key", "value")
+      .containsOnlyElementsOf(sequential.measures(sequential.module().key()).stream()
+        .map(m -> tuple(m.metric().key(), m.value())).collect(Collectors.toList()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldThrowWhenGivenInvalidTimeWithReportThreads() {
+    SensorContextTester context = SensorContextTester.create(fs.baseDir());
+    settings.setProperty(language.getPluginProperty(CxxXunitSensor.REPORT_PATH_KEY),
+      "xunit-reports/invalid-time-xunit-report.xml,xunit-reports/xunit-result-2.xml");
+    context.setSettings(settings);
+    when(language.getIntegerOption(CxxXunitSensor.REPORT_THREADS_KEY)).thenReturn(Optional.of(2));
+
+    new CxxXunitSensor(language).execute(context);
+  }
+
   @Test(expected = IllegalStateException.class)
   public void shouldThrowWhenGivenInvalidTime() {
     SensorContextTester context = SensorContextTester.create(fs.baseDir());
@@ -116,8 +152,28 @@ public class CxxXunitSensorTest {
     CxxXunitSensor sensor = new CxxXunitSensor(language);
     File reportBefore = cppunitReport();
 
-    File reportAfter = sensor.transformReport(reportBefore);
-    assertThat(reportAfter).isNotSameAs(reportBefore);
+    try (InputStream reportAfter = sensor.transformReport(reportBefore)) {
+      assertThat(IOUtils.toString(reportAfter, "UTF-8")).contains("<testsuite");
+    }
+  }
+
+  @Test
+  public void transformReport_shouldDeleteTransformedReportWhenClosed()
+    throws java.io.IOException, javax.xml.transform.TransformerException {
+
+    when(language.getStringOption(CxxXunitSensor.XSLT_URL_KEY)).thenReturn(Optional.of("cppunit-1.x-to-junit-1.0.xsl"));
+
+    CxxXunitSensor sensor = new CxxXunitSensor(language);
+    List<String> before = transformedReports();
+    try (InputStream reportAfter = sensor.transformReport(cppunitReport())) {
+      assertThat(IOUtils.toString(reportAfter, "UTF-8")).contains("<testsuite");
+    }
+    assertThat(transformedReports()).containsOnlyElementsOf(before);
+  }
+
+  private static List<String> transformedReports() {
+    String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("cxx-transformed-"));
+    return names == null ? Collections.emptyList() : Arrays.asList(names);
   }
 
   File cppunitReport() {
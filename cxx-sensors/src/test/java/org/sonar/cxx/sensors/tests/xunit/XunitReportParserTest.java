@@ -53,6 +53,34 @@ public class XunitReportParserTest {
     }
   }
 
+  @Test
+  public void aggregateOnlyShouldCountLikeFullParse() throws javax.xml.stream.XMLStreamException {
+    String[] reports = {"xunit-result-2.xml", "xunit-result-SAMPLE.xml", "xunit-result-skippedonly.xml",
+      "nested_testsuites.xml"};
+
+    for (String name : reports) {
+      File report = TestUtils.loadResource(pathPrefix + name);
+      XunitReportParser full = new XunitReportParser();
+      new StaxParser(full, false).parse(report);
+      XunitReportParser aggregate = new XunitReportParser(true);
+      new StaxParser(aggregate, false).parse(report);
+
+      TestCaseTotals expected = new TestCaseTotals();
+      for (TestCase tc : full.getTestCases()) {
+        expected.add(tc.isSkipped() ? "skipped" : tc.isFailure() ? "failure" : tc.isError() ? "error" : "ok",
+          tc.getTime());
+      }
+      TestCaseTotals totals = aggregate.getTotals();
+      assertEquals(0, aggregate.getTestCases().size());
+      assertEquals(expected.getTests(), totals.getTests());
+      assertEquals(expected.getSkipped(), totals.getSkipped());
+      assertEquals(expected.getErrors(), totals.getErrors());
+      assertEquals(expected.getFailures(), totals.getFailures());
+      assertEquals(expected.getTime(), totals.getTime());
+      assertEquals(full.getTotals().getTests(), totals.getTests());
+    }
+  }
+
   @Test(expected = javax.xml.stream.XMLStreamException.class)
   public void shouldThrowWhenGivenInvalidTime() throws javax.xml.stream.XMLStreamException {
     parserHandler = new XunitReportParser();
@@ -0,0 +1,67 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.io.File;
+import java.io.IOException;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+public class CxxInputFileResolverTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void resolvesPathsOnceAndSharesThem() throws IOException {
+    File baseDir = tempFolder.getRoot().getCanonicalFile();
+    File source = new File(baseDir, "src/file.cpp");
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    InputFile inputFile = TestInputFileBuilder.create("ProjectKey", baseDir, source).setLanguage("cpp").build();
+    context.fileSystem().add(inputFile);
+
+    CxxInputFileResolver resolver = CxxInputFileResolver.of(context);
+    assertThat(resolver.getInputFile("src/file.cpp")).isEqualTo(inputFile);
+    assertThat(resolver.getInputFile(source.getPath())).isEqualTo(inputFile);
+    assertThat(resolver.getInputFile("src/other.cpp")).isNull();
+    assertThat(resolver.getInputFile(null)).isNull();
+    assertThat(resolver.getNormalizedPath("src/file.cpp")).isEqualTo(source.getPath());
+    assertThat(resolver.getMisses()).isEqualTo(3);
+    assertThat(resolver.getHits()).isEqualTo(1);
+
+    // a second sensor of the same module
+    CxxInputFileResolver other = CxxInputFileResolver.of(context);
+    assertThat(other.getInputFile("src/file.cpp")).isEqualTo(inputFile);
+    assertThat(other.getInputFile("src/other.cpp")).isNull();
+    assertThat(other.getMisses()).isEqualTo(3);
+    assertThat(other.getHits()).isEqualTo(3);
+
+    // another module
+    CxxInputFileResolver module = CxxInputFileResolver.of(SensorContextTester.create(baseDir));
+    assertThat(module.getInputFile("src/file.cpp")).isNull();
+    assertThat(module.getMisses()).isEqualTo(1);
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class Hash128SetTest {
+
+  @Test
+  public void addReportsNewEntries() {
+    Hash128Set set = new Hash128Set();
+    assertThat(set.add(1, 2)).isTrue();
+    assertThat(set.add(1, 2)).isFalse();
+    assertThat(set.add(2, 1)).isTrue();
+    assertThat(set.add(0, 0)).isTrue();
+    assertThat(set.add(0, 0)).isFalse();
+    assertThat(set.contains(1, 2)).isTrue();
+    assertThat(set.contains(1, 3)).isFalse();
+    assertThat(set.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void growsLikeHashSet() {
+    Hash128Set set = new Hash128Set();
+    Set<String> expected = new HashSet<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      // few distinct high values to provoke collisions of the slots
+      long high = random.nextInt(64);
+      long low = random.nextInt(20_000);
+      assertThat(set.add(high, low)).isEqualTo(expected.add(high + ":" + low));
+    }
+    assertThat(set.size()).isEqualTo(expected.size());
+  }
+
+}
@@ -136,6 +136,43 @@ public class JsonCompilationDatabaseTest {
     assertThat(cus).isNull();
   }
 
+  @Test
+  public void testIdenticalSettingsAreShared() throws Exception {
+    CxxConfiguration conf = new CxxConfiguration();
+
+    File file = new File("src/test/resources/org/sonar/cxx/sensors/json-compilation-database-project/shared-settings.json");
+
+    new JsonCompilationDatabase(conf, file);
+
+    CxxCompilationUnitSettings first = conf.getCompilationUnitSettings(absolutePath("first.cpp"));
+    CxxCompilationUnitSettings second = conf.getCompilationUnitSettings(absolutePath("second.cpp"));
+    CxxCompilationUnitSettings other = conf.getCompilationUnitSettings(absolutePath("other.cpp"));
+
+    assertThat(first).isNotNull();
+    assertThat(first.getDefines()).containsEntry("SHARED", "1");
+    assertThat(second).isSameAs(first);
+    assertThat(other).isNotSameAs(first);
+    assertThat(other.getDefines()).containsEntry("OTHER", "1");
+  }
+
+  @Test
+  public void testFilteredSettings() throws Exception {
+    CxxConfiguration conf = new CxxConfiguration();
+
+    File file = new File("src/test/resources/org/sonar/cxx/sensors/json-compilation-database-project/compile_commands.json");
+
+    new JsonCompilationDatabase(conf, file, (String path) -> path.equals(absolutePath("test-extension.cpp")));
+
+    assertThat(conf.getGlobalCompilationUnitSettings()).isNotNull();
+    assertThat(conf.getCompilationUnitSettings(absolutePath("test-extension.cpp"))).isNotNull();
+    assertThat(conf.getCompilationUnitSettings(absolutePath("test-with-command.cpp"))).isNull();
+    assertThat(conf.getCompilationUnitSettings(absolutePath("test-with-arguments.cpp"))).isNull();
+  }
+
+  private static String absolutePath(String filename) {
+    return Paths.get(".").resolve(filename).toAbsolutePath().normalize().toString();
+  }
+
   @Test(expected = JsonMappingException.class)
   public void testInvalidJson() throws Exception {
     CxxConfiguration conf = new CxxConfiguration();
@@ -19,15 +19,26 @@
  */
 package org.sonar.plugins.cxx.squid;
 
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -36,19 +47,33 @@ import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
 import org.sonar.api.batch.sensor.measure.Measure;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.sensors.coverage.CxxCoverageSensor;
+import org.sonar.cxx.sensors.squid.CustomCxxRulesDefinition;
 import org.sonar.cxx.sensors.squid.CxxSquidSensor;
 import org.sonar.cxx.sensors.utils.TestUtils;
+import org.sonar.squidbridge.checks.SquidCheck;
 
 public class CxxSquidSensorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
   private CxxSquidSensor sensor;
   private CxxLanguage language;
 
@@ -211,6 +236,170 @@ public class CxxSquidSensorTest {
     assertThat(GetIntegerMeasureByKey(measures, CoreMetrics.NCLOC).value()).isEqualTo(1);
   }
 
+  @Test
+  public void testParallelScanMatchesSequentialScan() throws UnsupportedEncodingException, IOException {
+    when(this.language.getStringArrayOption(CxxSquidSensor.INCLUDE_DIRECTORIES_KEY)).thenReturn(new String[]{"include"});
+    when(this.language.getStringArrayOption(CxxSquidSensor.FORCE_INCLUDE_FILES_KEY)).thenReturn(new String[]{"force1.hh", "subfolder/force2.hh"});
+    File baseDir = TestUtils.loadResource("/org/sonar/cxx/sensors/force-include-project");
+
+    SensorContextTester sequential = createForceIncludeContext(baseDir);
+    sensor.execute(sequential);
+
+    when(this.language.getIntegerOption(CxxSquidSensor.SCAN_THREADS_KEY)).thenReturn(Optional.of(2));
+    SensorContextTester parallel = createForceIncludeContext(baseDir);
+    sensor.execute(parallel);
+
+    for (String key : new String[]{"ProjectKey:src/src1.cc", "ProjectKey:src/scr2.cc"}) {
+      Collection<Measure> expected = sequential.measures(key);
+      Collection<Measure> actual = parallel.measures(key);
+      for (Metric<Integer> metric : Arrays.asList(CoreMetrics.FILES, CoreMetrics.NCLOC, CoreMetrics.STATEMENTS,
+        CoreMetrics.FUNCTIONS, CoreMetrics.CLASSES, CoreMetrics.COMPLEXITY)) {
+        assertThat(GetIntegerMeasureByKey(actual, metric).value())
+          .isEqualTo(GetIntegerMeasureByKey(expected, metric).value());
+      }
+    }
+  }
+
+  @Test
+  public void testIncrementalAnalysisReplaysUnchangedFiles() throws IOException {
+    CxxSquidSensor issueSensor = createFunctionIssueSensor();
+    File cacheDir = enableIncrementalAnalysis();
+    File baseDir = TestUtils.loadResource("/org/sonar/cxx/sensors/codechunks-project");
+
+    SensorContextTester analyzed = createContext(baseDir, "code_chunks.cc");
+    issueSensor.execute(analyzed);
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 0 of 1 files unchanged");
+    assertThat(cacheDir.listFiles()).hasSize(1);
+
+    logTester.clear();
+    SensorContextTester replayed = createContext(baseDir, "code_chunks.cc");
+    replayed.fileSystem().setWorkDir(temp.newFolder().toPath());
+    issueSensor.execute(replayed);
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 1 of 1 files unchanged");
+
+    String key = "ProjectKey:code_chunks.cc";
+    for (Metric<Integer> metric : Arrays.asList(CoreMetrics.FILES, CoreMetrics.NCLOC, CoreMetrics.STATEMENTS,
+      CoreMetrics.FUNCTIONS, CoreMetrics.CLASSES, CoreMetrics.COMPLEXITY, CoreMetrics.COMMENT_LINES)) {
+      assertThat(GetIntegerMeasureByKey(replayed.measures(key), metric).value())
+        .isEqualTo(GetIntegerMeasureByKey(analyzed.measures(key), metric).value());
+    }
+    assertThat(issues(analyzed)).isNotEmpty();
+    assertThat(issues(replayed)).containsExactlyInAnyOrder(issues(analyzed).toArray(new String[0]));
+    assertThat(replayed.cpdTokens(key)).hasSameSizeAs(analyzed.cpdTokens(key));
+    for (int line = 1; line <= 10; line++) {
+      assertThat(replayed.highlightingTypeAt(key, line, 0)).isEqualTo(analyzed.highlightingTypeAt(key, line, 0));
+    }
+  }
+
+  @Test
+  public void testIncrementalAnalysisAnalyzesFilesWithChangedInclude() throws IOException {
+    when(this.language.getStringArrayOption(CxxSquidSensor.INCLUDE_DIRECTORIES_KEY)).thenReturn(new String[]{"include"});
+    enableIncrementalAnalysis();
+    File baseDir = temp.newFolder();
+    FileUtils.copyDirectory(TestUtils.loadResource("/org/sonar/cxx/sensors/include-directories-project"), baseDir);
+
+    sensor.execute(createContext(baseDir, "src/main.cc"));
+
+    logTester.clear();
+    modify(new File(baseDir, "include/include2.hh"), "#define INCLUDE2 void include2(){} void include2b(){}\n");
+    SensorContextTester context = createContext(baseDir, "src/main.cc");
+    sensor.execute(context);
+
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 0 of 1 files unchanged");
+    assertThat(GetIntegerMeasureByKey(context.measures("ProjectKey:src/main.cc"), CoreMetrics.FUNCTIONS).value())
+      .isEqualTo(10);
+  }
+
+  @Test
+  public void testIncrementalAnalysisAnalyzesFilesWithChangedForceInclude() throws IOException {
+    when(this.language.getStringArrayOption(CxxSquidSensor.INCLUDE_DIRECTORIES_KEY)).thenReturn(new String[]{"include"});
+    when(this.language.getStringArrayOption(CxxSquidSensor.FORCE_INCLUDE_FILES_KEY)).thenReturn(new String[]{"force1.hh", "subfolder/force2.hh"});
+    enableIncrementalAnalysis();
+    File baseDir = temp.newFolder();
+    FileUtils.copyDirectory(TestUtils.loadResource("/org/sonar/cxx/sensors/force-include-project"), baseDir);
+
+    sensor.execute(createContext(baseDir, "src/src1.cc", "src/scr2.cc"));
+
+    logTester.clear();
+    modify(new File(baseDir, "include/force1.hh"), "#define MACRO1(a) if(a); if(a);\n");
+    SensorContextTester context = createContext(baseDir, "src/src1.cc", "src/scr2.cc");
+    sensor.execute(context);
+
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 0 of 2 files unchanged");
+    // every "if(a);" counts two statements, see testForceIncludedFiles
+    assertThat(GetIntegerMeasureByKey(context.measures("ProjectKey:src/src1.cc"), CoreMetrics.STATEMENTS).value())
+      .isEqualTo(4);
+  }
+
+  @Test
+  public void testImplementationVersionsIdentifyTheJars() throws Exception {
+    File location = new File(CxxSquidSensor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    File checksLocation = new File(FunctionIssueCheck.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+    Set<String> versions = CxxSquidSensor.getImplementationVersions(Arrays.asList(CxxSquidSensor.class,
+      FunctionIssueCheck.class));
+
+    assertThat(versions).contains(location.getAbsolutePath() + ":" + location.length() + ":" + location.lastModified(),
+      checksLocation.getAbsolutePath() + ":" + checksLocation.length() + ":" + checksLocation.lastModified());
+  }
+
+  private File enableIncrementalAnalysis() throws IOException {
+    File cacheDir = temp.newFolder();
+    when(this.language.getBooleanOption(CxxSquidSensor.INCREMENTAL_CACHE_KEY)).thenReturn(Optional.of(Boolean.TRUE));
+    when(this.language.getStringOption(CxxSquidSensor.INCREMENTAL_CACHE_DIR_KEY))
+      .thenReturn(Optional.of(cacheDir.getAbsolutePath()));
+    return cacheDir;
+  }
+
+  private CxxSquidSensor createFunctionIssueSensor() {
+    ActiveRules rules = new ActiveRulesBuilder()
+      .create(RuleKey.of(language.getRepositoryKey(), FunctionIssueCheck.KEY)).activate()
+      .build();
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(Mockito.any(InputFile.class))).thenReturn(mock(FileLinesContext.class));
+    return new CxxSquidSensor(language, fileLinesContextFactory, new CheckFactory(rules),
+      new CustomCxxRulesDefinition[]{new FunctionIssueRulesDefinition()});
+  }
+
+  private static List<String> issues(SensorContextTester context) {
+    List<String> issues = new ArrayList<>();
+    for (Issue issue : context.allIssues()) {
+      issues.add(issue.ruleKey() + ":" + issue.primaryLocation().textRange().start().line() + ":"
+        + issue.primaryLocation().message());
+    }
+    return issues;
+  }
+
+  private static void modify(File file, String content) throws IOException {
+    long lastModified = file.lastModified();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    // same size or timestamp must not hide the change
+    file.setLastModified(lastModified + 2000);
+  }
+
+  private SensorContextTester createContext(File baseDir, String... names) throws IOException {
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    for (String name : names) {
+      File target = new File(baseDir, name);
+      String content = new String(Files.readAllBytes(target.toPath()), "UTF-8");
+      context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", baseDir, target).setContents(content)
+        .setCharset(Charset.forName("UTF-8")).setLanguage(language.getKey())
+        .setType(InputFile.Type.MAIN).build());
+    }
+    return context;
+  }
+
+  private SensorContextTester createForceIncludeContext(File baseDir) throws IOException {
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    for (String name : new String[]{"src/src1.cc", "src/scr2.cc"}) {
+      File target = new File(baseDir, name);
+      String content = new String(Files.readAllBytes(target.toPath()), "UTF-8");
+      context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", baseDir, target).setContents(content)
+        .setLanguage(language.getKey()).setType(InputFile.Type.MAIN).build());
+    }
+    return context;
+  }
+
   private Measure GetIntegerMeasureByKey(Collection<Measure> measures, Metric<Integer> metric) {
     for (Measure measure : measures) {
       if (measure.metric().equals(metric)) {
@@ -219,4 +408,44 @@ public class CxxSquidSensorTest {
     }
     return null;
   }
+
+  @org.sonar.check.Rule(key = FunctionIssueCheck.KEY, name = "Function issue", description = "desc")
+  public static class FunctionIssueCheck extends SquidCheck<Grammar> {
+
+    static final String KEY = "FunctionIssue";
+
+    @Override
+    public void init() {
+      subscribeTo(CxxGrammarImpl.functionDefinition);
+    }
+
+    @Override
+    public void visitNode(AstNode node) {
+      getContext().createLineViolation(this, "Function found", node);
+    }
+  }
+
+  public static class FunctionIssueRulesDefinition extends CustomCxxRulesDefinition {
+
+    @Override
+    public String repositoryName() {
+      return "Function issue repository";
+    }
+
+    @Override
+    public String repositoryKey() {
+      return "cxx";
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Class[] checkClasses() {
+      return new Class[]{FunctionIssueCheck.class};
+    }
+
+    @Override
+    public CxxLanguage getLanguage() {
+      return TestUtils.mockCxxLanguage();
+    }
+  }
 }
@@ -35,6 +35,7 @@ import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.parser.CxxParser;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
 import org.sonar.cxx.visitors.CxxCognitiveComplexityVisitor;
+import org.sonar.cxx.visitors.CxxFileContentCache;
 import org.sonar.cxx.visitors.CxxFileVisitor;
 import org.sonar.cxx.visitors.CxxLinesOfCodeVisitor;
 import org.sonar.cxx.visitors.CxxParseErrorLoggerVisitor;
@@ -243,9 +244,11 @@ public final class CxxAstScanner {
     builder.withSquidAstVisitor(new CxxParseErrorLoggerVisitor<>(context));
 
     /* External visitors (typically Check ones) */
+    CxxFileContentCache fileContentCache = new CxxFileContentCache();
     for (SquidAstVisitor<Grammar> visitor : visitors) {
       if (visitor instanceof CxxCharsetAwareVisitor) {
         ((CxxCharsetAwareVisitor) visitor).setCharset(conf.getCharset());
+        ((CxxCharsetAwareVisitor) visitor).setFileContentCache(fileContentCache);
       }
       builder.withSquidAstVisitor(visitor);
     }
@@ -25,13 +25,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.preprocessor.IncludeIndex;
+import org.sonar.cxx.preprocessor.PrecompiledMacros;
+import org.sonar.cxx.preprocessor.SourceCodeCache;
 import org.sonar.squidbridge.api.SquidConfiguration;
 
 public class CxxConfiguration extends SquidConfiguration {
@@ -53,6 +58,11 @@ public class CxxConfiguration extends SquidConfiguration {
   private boolean scanOnlySpecifiedSources;
   private CxxCompilationUnitSettings globalCompilationUnitSettings;
   private HashMap<String, CxxCompilationUnitSettings> compilationUnitSettings = new HashMap<>();
+  private final Map<List<Object>, CxxCompilationUnitSettings> compilationUnitProfiles = new HashMap<>();
+  private final Map<CxxCompilationUnitSettings, Integer> compilationUnitProfileIndex = new IdentityHashMap<>();
+  private SourceCodeCache sourceCodeCache = new SourceCodeCache();
+  private final IncludeIndex includeIndex = new IncludeIndex();
+  private final PrecompiledMacros precompiledMacros = new PrecompiledMacros();
 
   private final CxxVCppBuildLogParser cxxVCppParser;
 
@@ -76,6 +86,34 @@ public class CxxConfiguration extends SquidConfiguration {
     cxxVCppParser = new CxxVCppBuildLogParser(uniqueIncludes, uniqueDefines);
   }
 
+  /**
+   * @param maxSizeMB upper bound of the decoded source code kept in memory, shared by all preprocessors using this
+   * configuration
+   */
+  public void setSourceCodeCacheSize(int maxSizeMB) {
+    sourceCodeCache = new SourceCodeCache(maxSizeMB);
+  }
+
+  public SourceCodeCache getSourceCodeCache() {
+    return sourceCodeCache;
+  }
+
+  /**
+   * @param cacheDirectory directory to keep the parsed build logs for the next analysis, null to parse them every
+   * time
+   */
+  public void setBuildLogCacheDirectory(@Nullable File cacheDirectory) {
+    cxxVCppParser.setCacheDirectory(cacheDirectory);
+  }
+
+  public IncludeIndex getIncludeIndex() {
+    return includeIndex;
+  }
+
+  public PrecompiledMacros getPrecompiledMacros() {
+    return precompiledMacros;
+  }
+
   public void setIgnoreHeaderComments(boolean ignoreHeaderComments) {
     this.ignoreHeaderComments = ignoreHeaderComments;
   }
@@ -246,8 +284,33 @@ public class CxxConfiguration extends SquidConfiguration {
     return compilationUnitSettings.get(filename);
   }
 
+  /**
+   * Add the settings of a compilation unit. Settings with the same defines and includes (a flag profile) are stored
+   * only once: all files of a profile share the settings instance added first.
+   *
+   * @param filename absolute path of the source file
+   * @param settings compilation unit settings
+   */
   public void addCompilationUnitSettings(String filename, CxxCompilationUnitSettings settings) {
-    compilationUnitSettings.put(filename, settings);
+    CxxCompilationUnitSettings profile = compilationUnitProfiles.computeIfAbsent(
+      Arrays.asList(settings.getDefines(), settings.getIncludes()), (List<Object> key) -> {
+        compilationUnitProfileIndex.put(settings, compilationUnitProfileIndex.size());
+        return settings;
+      });
+    compilationUnitSettings.put(filename, profile);
+  }
+
+  /**
+   * @param filename absolute path of the source file
+   * @return number of the flag profile of the file, -1 if there are no compilation unit settings for the file
+   */
+  public int getCompilationUnitProfile(String filename) {
+    CxxCompilationUnitSettings settings = compilationUnitSettings.get(filename);
+    return settings == null ? -1 : compilationUnitProfileIndex.get(settings);
+  }
+
+  public int getCompilationUnitProfileCount() {
+    return compilationUnitProfileIndex.size();
   }
 
   public List<File> getCompilationUnitSourceFiles() {
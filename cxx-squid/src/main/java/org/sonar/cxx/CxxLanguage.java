@@ -74,6 +74,10 @@ public abstract class CxxLanguage extends AbstractLanguage {
     return this.settings.getBoolean(getPluginProperty(key));
   }
 
+  public Optional<Integer> getIntegerOption(String key) {
+    return this.settings.getInt(getPluginProperty(key));
+  }
+
   public Optional<String> getStringOption(String key) {
     return this.settings.get(getPluginProperty(key));
   }
@@ -0,0 +1,222 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Cache of the includes and defines parsed from a build log by {@link CxxVCppBuildLogParser}.
+ *
+ * A result is valid as long as the build log has the same size and modification time and was parsed with the same
+ * base directory, charset, platform and platform toolset. Results are kept in a cache directory for the next
+ * analysis. The include directories are resolved while parsing: a cached result does not notice include directories
+ * which were created or removed after the log was parsed.
+ */
+final class CxxVCppBuildLogCache {
+
+  private static final Logger LOG = Loggers.get(CxxVCppBuildLogCache.class);
+  private static final int MAGIC = 0x43584243;
+  private static final int VERSION = 1;
+
+  private CxxVCppBuildLogCache() {
+  }
+
+  /**
+   * @return the cached result, null if the log was not parsed yet with these settings
+   */
+  @CheckForNull
+  static Result get(Key key, File cacheDirectory) {
+    return load(key, cacheFile(key, cacheDirectory));
+  }
+
+  static void put(Key key, Result result, File cacheDirectory) {
+    save(key, result, cacheFile(key, cacheDirectory));
+  }
+
+  private static File cacheFile(Key key, File cacheDirectory) {
+    return new File(cacheDirectory, "cxx-buildlog-"
+      + Hashing.murmur3_128().hashString(key.value, StandardCharsets.UTF_8) + ".cache");
+  }
+
+  @CheckForNull
+  private static Result load(Key key, File cacheFile) {
+    if (!cacheFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+      new FileInputStream(cacheFile))))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !readString(in).equals(key.value)) {
+        return null;
+      }
+      String platform = readString(in);
+      String platformToolset = readString(in);
+      boolean platformDetected = in.readBoolean();
+      HashMap<String, List<String>> includes = new HashMap<>();
+      for (int i = in.readInt(); i > 0; i--) {
+        String file = readString(in);
+        List<String> values = new ArrayList<>();
+        for (int j = in.readInt(); j > 0; j--) {
+          values.add(readString(in));
+        }
+        includes.put(file, values);
+      }
+      HashMap<String, Set<String>> defines = new HashMap<>();
+      for (int i = in.readInt(); i > 0; i--) {
+        String file = readString(in);
+        Set<String> values = new HashSet<>();
+        for (int j = in.readInt(); j > 0; j--) {
+          values.add(readString(in));
+        }
+        defines.put(file, values);
+      }
+      return new Result(includes, defines, platform, platformToolset, platformDetected);
+    } catch (IOException e) {
+      LOG.warn("Cannot read build log cache '{}': {}", cacheFile, e.getMessage());
+      return null;
+    }
+  }
+
+  private static void save(Key key, Result result, File cacheFile) {
+    File parent = cacheFile.getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      LOG.warn("Cannot create directory of build log cache '{}'", cacheFile);
+      return;
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+      new FileOutputStream(cacheFile))))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeString(out, key.value);
+      writeString(out, result.platform);
+      writeString(out, result.platformToolset);
+      out.writeBoolean(result.platformDetected);
+      out.writeInt(result.includes.size());
+      for (Map.Entry<String, List<String>> entry : result.includes.entrySet()) {
+        writeString(out, entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (String value : entry.getValue()) {
+          writeString(out, value);
+        }
+      }
+      out.writeInt(result.defines.size());
+      for (Map.Entry<String, Set<String>> entry : result.defines.entrySet()) {
+        writeString(out, entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (String value : entry.getValue()) {
+          writeString(out, value);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot write build log cache '{}': {}", cacheFile, e.getMessage());
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Build log and the settings it is parsed with.
+   */
+  static final class Key {
+
+    private final String value;
+
+    Key(File buildLog, String baseDir, String charsetName, String platform, String platformToolset) {
+      String path;
+      try {
+        path = buildLog.getCanonicalPath();
+      } catch (IOException e) {
+        path = buildLog.getAbsolutePath();
+      }
+      value = String.join("\0", path, Long.toString(buildLog.length()), Long.toString(buildLog.lastModified()),
+        String.valueOf(baseDir), charsetName, platform, platformToolset);
+    }
+  }
+
+  /**
+   * Includes and defines of one build log, together with the platform and platform toolset after parsing it.
+   */
+  static final class Result {
+
+    private final Map<String, List<String>> includes;
+    private final Map<String, Set<String>> defines;
+    private final String platform;
+    private final String platformToolset;
+    private final boolean platformDetected;
+
+    Result(Map<String, List<String>> includes, Map<String, Set<String>> defines, String platform,
+      String platformToolset, boolean platformDetected) {
+      this.includes = includes;
+      this.defines = defines;
+      this.platform = platform;
+      this.platformToolset = platformToolset;
+      this.platformDetected = platformDetected;
+    }
+
+    Map<String, List<String>> getIncludes() {
+      return includes;
+    }
+
+    Map<String, Set<String>> getDefines() {
+      return defines;
+    }
+
+    String getPlatform() {
+      return platform;
+    }
+
+    String getPlatformToolset() {
+      return platformToolset;
+    }
+
+    boolean isPlatformDetected() {
+      return platformDetected;
+    }
+  }
+}
@@ -31,9 +31,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
@@ -44,13 +46,143 @@ public class CxxVCppBuildLogParser {
 
   private static final Logger LOG = Loggers.get(CxxVCppBuildLogParser.class);
 
+  private static final Pattern INCLUDE_QUOTED = Pattern.compile("/I\"(.*?)\"");
+  private static final Pattern INCLUDE_PLAIN = Pattern.compile("/I([^\\s\"]+) ");
+  private static final Pattern DEFINE_SEPARATE = Pattern.compile("[/-]D\\s([^\\s]+)");
+  private static final Pattern DEFINE_JOINED = Pattern.compile("[/-]D([^\\s]+)");
+  // match "bin\CL.exe", "bin\amd64\CL.exe", "bin\x86_amd64\CL.exe"
+  private static final Pattern CL_EXE_LINE = Pattern.compile("^.*\\\\bin\\\\.*CL.exe\\x20.*$");
+  private static final Pattern SOLUTION_X64 = Pattern.compile("Building solution configuration \".*\\|x64\".");
+  private static final Pattern V141_CL_EXE = Pattern.compile(
+    "^.*VC\\\\Tools\\\\MSVC\\\\14\\.1\\d\\.\\d+\\\\bin\\\\HostX(86|64)\\\\x(86|64)\\\\CL.exe.*$");
+  private static final Pattern DRIVE_PATH = Pattern.compile("^[a-zA-Z]:.*$");
+  private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+  private static final String CPPWINRTVERSION = "__cplusplus_winrt=201009";
+  private static final String CPPVERSION = "__cplusplus=199711L";
+
+  /**
+   * Compiler options and the macros they define. The option is searched as substring of the command line, an option
+   * followed by a blank has to be the complete option.
+   *
+   * https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.100).aspx
+   * https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.110).aspx
+   * https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.120).aspx
+   * https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.140).aspx
+   */
+  private static final String[][] OPTION_MACROS = {
+    // _M_IX86
+    //    /GB _M_IX86 = 600 Blend
+    //    /G5 _M_IX86 = 500 (Default. Future compilers will emit a different value to reflect the dominant processor.) Pentium
+    //    /G6 _M_IX86 = 600  Pentium Pro, Pentium II, and Pentium III
+    //    /G3 _M_IX86 = 300  80386
+    //    /G4 _M_IX86 = 400  80486
+    {"/GB ", "_M_IX86=600"},
+    {"/G6", "_M_IX86=600"},
+    {"/G5", "_M_IX86=500"},
+    {"/G3", "_M_IX86=300"},
+    {"/G4", "_M_IX86=400"},
+    //_M_IX86_FP Expands to a value indicating which /arch compiler option was used:
+    //    0 if /arch was not used.
+    //    1 if /arch:SSE was used.
+    //    2 if /arch:SSE2 was used.
+    {"/arch:IA32", "_M_IX86_FP=0"},
+    {"/arch:SSE", "_M_IX86_FP=1"},
+    //arch:ARMv7VE or /arch:VFPv4
+    {"/arch:ARMv7VE", "_M_ARM=7", "_M_ARM_ARMV7VE=1"},
+    {"/arch:VFPv4", "_M_ARM=7"},
+    // WinCE and WinRT, see https://en.wikipedia.org/wiki/ARM_architecture
+    // In the range 30-39 if no /arch ARM option was specified, indicating the default architecture for ARM was used (VFPv3).
+    // In the range 40-49 if /arch:VFPv4 was used.
+    {"/arch:IA32 ", "_M_ARM_FP"},
+    {"/arch:SSE ", "_M_ARM_FP"},
+    {"/arch:SSE2 ", "_M_ARM_FP"},
+    {"/arch:AVX2 ", "_M_ARM_FP"},
+    {"/arch:AVX ", "_M_ARM_FP"},
+    {"/arch:VFPv4 ", "_M_ARM_FP"},
+    {"/arch:ARMv7VE ", "_M_ARM_FP"},
+    // __STDC__ Indicates full conformance with the ANSI C standard. Defined as the integer constant 1 only if
+    // the /Za compiler option is given and you are not compiling C++ code; otherwise is undefined.
+    {"/Za ", "__STDC__=1"},
+    //_CHAR_UNSIGNED Default char type is unsigned. Defined when /J is specified.
+    {"/J ", "_CHAR_UNSIGNED=1"},
+    //_CPPRTTI Defined for code compiled with /GR (Enable Run-Time Type Information).
+    {"/GR ", "_CPPRTTI"},
+    //_MANAGED Defined to be 1 when /clr is specified.
+    {"/clr ", "_MANAGED"},
+    //_M_CEE_PURE Defined for a compilation that uses /clr:pure.
+    {"/clr:pure ", "_M_CEE_PURE"},
+    //_M_CEE_SAFE Defined for a compilation that uses /clr:safe.
+    {"/clr:safe ", "_M_CEE_SAFE"},
+    // __CLR_VER Defines the version of the common language runtime used when the application was compiled.
+    // __cplusplus_cli Defined when you compile with /clr, /clr:pure, or /clr:safe. Value of __cplusplus_cli is 200406.
+    // __cplusplus_cli is in effect throughout the translation unit.
+    //_M_CEE Defined for a compilation that uses any form of /clr (/clr:oldSyntax, /clr:safe, for example).
+    {"/clr", "_M_CEE", "__cplusplus_cli=200406", "__CLR_VER"},
+    //_MSC_EXTENSIONS This macro is defined when you compile with the /Ze compiler option (the default). Its value, when defined, is 1.
+    {"/Ze ", "_MSC_EXTENSIONS"},
+    //__MSVC_RUNTIME_CHECKS Defined when one of the /RTC compiler options is specified.
+    {"/RTC ", "__MSVC_RUNTIME_CHECKS"},
+    //_DEBUG Defined when you compile with /LDd, /MDd, and /MTd.
+    //_DLL Defined when /MD or /MDd (Multithreaded DLL) is specified.
+    //_MT Defined when /MD, /MDd (Multithreaded DLL) or /MT, /MTd (Multithreaded) is specified.
+    {"/LDd ", "_DEBUG"},
+    {"/MD ", "_DLL", "_MT"},
+    {"/MDd ", "_DLL", "_MT", "_DEBUG"},
+    {"/MT ", "_MT"},
+    {"/MTd ", "_MT", "_DEBUG"},
+    //_OPENMP Defined when compiling with /openmp, returns an integer representing the date of the
+    // OpenMP specification implemented by Visual C++.
+    {"/openmp ", "_OPENMP=200203"},
+    //_VC_NODEFAULTLIB Defined when /Zl is used; see /Zl (Omit Default Library Name) for more information.
+    {"/Zl ", "_VC_NODEFAULTLIB"},
+    //_NATIVE_WCHAR_T_DEFINED Defined when /Zc:wchar_t is used.
+    //_WCHAR_T_DEFINED Defined when /Zc:wchar_t is used or if wchar_t is defined in a system header file
+    // included in your project.
+    {"/Zc:wchar_t ", "_WCHAR_T_DEFINED=1", "_NATIVE_WCHAR_T_DEFINED=1"},
+    //_Wp64 Defined when specifying /Wp64. Deprecated in Visual Studio 2010 and Visual Studio 2012,
+    // and not supported starting in Visual Studio 2013
+    {"/Wp64 ", "_Wp64"},
+    // VC++ 17.0, 18.0, 19.0
+    // _CPPUNWIND Defined for code compiled by using one of the /EH (Exception Handling Model) flags.
+    {"/EHs ", "_CPPUNWIND"},
+    {"/EHa ", "_CPPUNWIND"},
+    {"/EHsc ", "_CPPUNWIND"},
+    {"/EHac ", "_CPPUNWIND"}
+  };
+
+  /**
+   * Macros defined by the platform toolsets, independent of the options.
+   */
+  private static final Map<String, String[]> TOOLSET_MACROS = new HashMap<>();
+
+  static {
+    // VC++ V16.0 - VS2010 (V10.0), VS2010 SP1
+    //_MFC_VER Defines the MFC version. For example, in Visual Studio 2010, _MFC_VER is defined as 0x0C00.
+    TOOLSET_MACROS.put("V100", new String[]{CPPVERSION, "_MSC_VER=1600", "_MSC_FULL_VER=16004021901",
+      "_MFC_VER=0x0A00", "_ATL_VER=0x0A00"});
+    // VC++ V17.0 - VS2012 (V11.0), VS2012 Update 4
+    //_MFC_VER Defines the MFC version (see afxver_.h)
+    TOOLSET_MACROS.put("V110", new String[]{CPPVERSION, "_MSC_VER=1700", "_MSC_FULL_VER=1700610301",
+      "_MFC_VER=0x0B00", "_ATL_VER=0x0B00"});
+    // VC++ V18.0 - VS2013 (V12.0), VS2013 Update 4
+    TOOLSET_MACROS.put("V120", new String[]{CPPVERSION, "_MSC_VER=1800", "_MSC_FULL_VER=180031101",
+      "_MFC_VER=0x0C00", "_ATL_VER=0x0C00"});
+    // VC++ V19.0 - VS2015 (V14.0), VS2015 Update 3 V19.00.24215.1
+    TOOLSET_MACROS.put("V140", new String[]{CPPVERSION, "_MSC_VER=1900", "_MSC_FULL_VER=190024215",
+      "_MFC_VER=0x0E00", "_ATL_VER=0x0E00"});
+    // VC++ V19.1 - VS2017 (V15.0), VS2017 RC
+    TOOLSET_MACROS.put("V141", new String[]{CPPVERSION, "_MSC_VER=1910", "_MSC_FULL_VER=191024629",
+      "_MFC_VER=0x0E00", "_ATL_VER=0x0E00"});
+  }
+
   private final HashMap<String, List<String>> uniqueIncludes;
   private final HashMap<String, Set<String>> uniqueDefines;
 
   private String platformToolset = "V120";
   private String platform = "Win32";
-  private static final String CPPWINRTVERSION = "__cplusplus_winrt=201009";
-  private static final String CPPVERSION = "__cplusplus=199711L";
+  @Nullable
+  private File cacheDirectory;
 
   /**
    * CxxVCppBuildLogParser (ctor)
@@ -76,6 +208,13 @@ public class CxxVCppBuildLogParser {
     this.platformToolset = platformToolset;
   }
 
+  /**
+   * @param cacheDirectory directory to keep the parsed build logs between analyses, null to parse them every time
+   */
+  public void setCacheDirectory(@Nullable File cacheDirectory) {
+    this.cacheDirectory = cacheDirectory;
+  }
+
   /**
    * Can be used to create a list of includes, defines and options for a single line If it follows the format of VC++
    *
@@ -88,12 +227,64 @@ public class CxxVCppBuildLogParser {
   }
 
   /**
+   * Parses the build log and adds the includes and defines of the compilation units. With a cache directory the
+   * result of a log is cached (see {@link CxxVCppBuildLogCache}), an unchanged log with the same settings is not
+   * parsed again.
    *
    * @param buildLog
    * @param baseDir
    * @param charsetName
    */
   public void parseVCppLog(File buildLog, String baseDir, String charsetName) {
+    CxxVCppBuildLogCache.Key key = new CxxVCppBuildLogCache.Key(buildLog, baseDir, charsetName, platform,
+      platformToolset);
+    CxxVCppBuildLogCache.Result result = null;
+    if (cacheDirectory != null) {
+      result = CxxVCppBuildLogCache.get(key, cacheDirectory);
+    }
+    if (result == null) {
+      HashMap<String, List<String>> includes = new HashMap<>();
+      HashMap<String, Set<String>> defines = new HashMap<>();
+      includes.put(CxxConfiguration.OVERALLINCLUDEKEY, new ArrayList<>());
+      CxxVCppBuildLogParser parser = new CxxVCppBuildLogParser(includes, defines);
+      parser.setPlatform(platform);
+      parser.setPlatformToolset(platformToolset);
+      boolean detectedPlatform = parser.parseLog(buildLog, baseDir, charsetName);
+      result = new CxxVCppBuildLogCache.Result(includes, defines, parser.platform, parser.platformToolset,
+        detectedPlatform);
+      if (cacheDirectory != null) {
+        CxxVCppBuildLogCache.put(key, result, cacheDirectory);
+      }
+    } else {
+      LOG.info("Build log '{}' unchanged, reusing the parsed includes and defines", buildLog);
+    }
+
+    merge(result);
+    if (!result.isPlatformDetected()) {
+      LOG.info("Could not assign VS platform toolset - use default: {}", platformToolset);
+    }
+  }
+
+  private void merge(CxxVCppBuildLogCache.Result result) {
+    for (Map.Entry<String, List<String>> entry : result.getIncludes().entrySet()) {
+      List<String> includes = uniqueIncludes.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+      for (String include : entry.getValue()) {
+        if (!includes.contains(include)) {
+          includes.add(include);
+        }
+      }
+    }
+    for (Map.Entry<String, Set<String>> entry : result.getDefines().entrySet()) {
+      uniqueDefines.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+    }
+    platform = result.getPlatform();
+    platformToolset = result.getPlatformToolset();
+  }
+
+  /**
+   * @return true if the platform toolset was detected
+   */
+  private boolean parseLog(File buildLog, String baseDir, String charsetName) {
     boolean detectedPlatform = false;
     try (InputStream input = java.nio.file.Files.newInputStream(buildLog.toPath())) {
       BufferedReader br = new BufferedReader(new InputStreamReader(input, charsetName));
@@ -106,7 +297,8 @@ public class CxxVCppBuildLogParser {
       List<String> overallIncludes = uniqueIncludes.get(CxxConfiguration.OVERALLINCLUDEKEY);
 
       while ((line = br.readLine()) != null) {
-        if (line.trim().startsWith("INCLUDE=")) { // handle environment includes 
+        String trimmed = line.trim();
+        if (trimmed.startsWith("INCLUDE=")) { // handle environment includes
           String[] includes = line.split("=")[1].split(";");
           for (String include : includes) {
             if (!overallIncludes.contains(include)) {
@@ -115,7 +307,7 @@ public class CxxVCppBuildLogParser {
           }
         }
 
-        // get base path of project to make 
+        // get base path of project to make
         // Target "ClCompile" in file
         // "C:\Program Files (x86)\MSBuild\Microsoft.Cpp\v4.0\V120\Microsoft.CppCommon.targets"
         // from project
@@ -138,18 +330,18 @@ public class CxxVCppBuildLogParser {
         // 1>  Configuration=Debug
         // 1>Done executing task "Message".
         // 1>Task "Message"
-        //1>  Platform=Win32         
-        if (line.trim().endsWith("Platform=x64")
-          || line.trim().matches("Building solution configuration \".*\\|x64\".")) {
+        //1>  Platform=Win32
+        if (trimmed.endsWith("Platform=x64")
+          || (trimmed.startsWith("Building solution configuration") && SOLUTION_X64.matcher(trimmed).matches())) {
           setPlatform("x64");
           if (LOG.isDebugEnabled()) {
             LOG.debug("build log parser platform='{}'", this.platform);
           }
         }
-        // match "bin\CL.exe", "bin\amd64\CL.exe", "bin\x86_amd64\CL.exe"
-        if (line.matches("^.*\\\\bin\\\\.*CL.exe\\x20.*$")) {
+        // the literal check is cheap and skips most of the lines before the regular expression is used
+        if (line.contains("\\bin\\") && CL_EXE_LINE.matcher(line).matches()) {
           detectedPlatform = setPlatformToolsetFromLine(line);
-          String[] allElems = line.split("\\s+");
+          String[] allElems = WHITESPACES.split(line);
           String data = allElems[allElems.length - 1];
           parseCLParameters(line, currentProjectPath, data);
           if (LOG.isDebugEnabled()) {
@@ -161,9 +353,7 @@ public class CxxVCppBuildLogParser {
     } catch (IOException ex) {
       LOG.error("Cannot parse build log", ex);
     }
-    if (!detectedPlatform) {
-      LOG.info("Could not assign VS platform toolset - use default: {}", platformToolset);
-    }
+    return detectedPlatform;
   }
 
   /**
@@ -190,7 +380,7 @@ public class CxxVCppBuildLogParser {
       setPlatformToolset("V140");
       return true;
     } else if (line.contains("\\V141\\Microsoft.CppBuild.targets")
-      || line.matches("^.*VC\\\\Tools\\\\MSVC\\\\14\\.1\\d\\.\\d+\\\\bin\\\\HostX(86|64)\\\\x(86|64)\\\\CL.exe.*$")) {
+      || V141_CL_EXE.matcher(line).matches()) {
       setPlatformToolset("V141");
       return true;
     }
@@ -203,10 +393,10 @@ public class CxxVCppBuildLogParser {
    * @param data
    */
   private void parseCLParameters(String line, Path currentProjectPath, String data) {
-    String path = data.replaceAll("\"", "");
+    String path = data.replace("\"", "");
     String fileElement;
     try {
-      if (!path.isEmpty() && path.matches("^[a-zA-Z]:.*$")) {
+      if (!path.isEmpty() && DRIVE_PATH.matcher(path).matches()) {
         // do not add project path if data is not a relative path
         fileElement = Paths.get(path).toAbsolutePath().toString();
       } else {
@@ -230,55 +420,45 @@ public class CxxVCppBuildLogParser {
   }
 
   private void parseVCppCompilerCLLine(String line, String projectPath, String fileElement) {
-
-    for (String includeElem : getMatches(Pattern.compile("/I\"(.*?)\""), line)) {
-      parseInclude(includeElem, projectPath, fileElement);
+    List<String> includesPerUnit = uniqueIncludes.get(fileElement);
+    Matcher matcher = INCLUDE_QUOTED.matcher(line);
+    while (matcher.find()) {
+      parseInclude(matcher.group(1), projectPath, includesPerUnit);
     }
-
-    for (String includeElem : getMatches(Pattern.compile("/I([^\\s\"]+) "), line)) {
-      parseInclude(includeElem, projectPath, fileElement);
+    matcher = INCLUDE_PLAIN.matcher(line);
+    while (matcher.find()) {
+      parseInclude(matcher.group(1), projectPath, includesPerUnit);
     }
 
-    for (String macroElem : getMatches(Pattern.compile("[/-]D\\s([^\\s]+)"), line)) {
-      addMacro(macroElem, fileElement);
+    Set<String> definesPerUnit = uniqueDefines.get(fileElement);
+    matcher = DEFINE_SEPARATE.matcher(line);
+    while (matcher.find()) {
+      addMacro(matcher.group(1), definesPerUnit);
     }
-
-    for (String macroElem : getMatches(Pattern.compile("[/-]D([^\\s]+)"), line)) {
-      addMacro(macroElem, fileElement);
+    matcher = DEFINE_JOINED.matcher(line);
+    while (matcher.find()) {
+      addMacro(matcher.group(1), definesPerUnit);
     }
 
-    // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.100).aspx
-    // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.110).aspx
-    // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.120).aspx 
-    // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.140).aspx
-    parseCommonCompilerOptions(line, fileElement);
-
-    if ("V100".equals(platformToolset)) {
-      parseV100CompilerOptions(line, fileElement);
-    } else if ("V110".equals(platformToolset)) {
-      parseV110CompilerOptions(line, fileElement);
-    } else if ("V120".equals(platformToolset)) {
-      parseV120CompilerOptions(line, fileElement);
-    } else if ("V140".equals(platformToolset)) {
-      parseV140CompilerOptions(line, fileElement);
-    } else if ("V141".equals(platformToolset)) {
-      parseV141CompilerOptions(line, fileElement);
-    }
-  }
+    parseCommonCompilerOptions(line, definesPerUnit);
 
-  private static List<String> getMatches(Pattern pattern, String text) {
-    List<String> matches = new ArrayList<>();
-    Matcher m = pattern.matcher(text);
-    while (m.find()) {
-      matches.add(m.group(1));
+    String[] toolsetMacros = TOOLSET_MACROS.get(platformToolset);
+    if (toolsetMacros != null) {
+      for (String macro : toolsetMacros) {
+        addMacro(macro, definesPerUnit);
+      }
+      // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
+      if (line.contains("/ZW ")) {
+        addMacro(CPPWINRTVERSION, definesPerUnit);
+      }
+      // VC++ 16.0
+      if ("V100".equals(platformToolset) && line.contains("/GX ")) {
+        addMacro("_CPPUNWIND", definesPerUnit);
+      }
     }
-    return matches;
   }
 
-  private void parseInclude(String element, String project, String fileElement) {
-
-    List<String> includesPerUnit = uniqueIncludes.get(fileElement);
-
+  private static void parseInclude(String element, String project, List<String> includesPerUnit) {
     try {
       File includeRoot = new File(element.replace("\"", ""));
       String includePath;
@@ -305,199 +485,53 @@ public class CxxVCppBuildLogParser {
     }
   }
 
-  private void addMacro(String macroElem, String file) {
-
-    Set<String> definesPerUnit = uniqueDefines.get(file);
-
-    String macro = macroElem.replace('=', ' ');
-    if (!definesPerUnit.contains(macro)) {
-      definesPerUnit.add(macro);
-    }
+  private static void addMacro(String macroElem, Set<String> definesPerUnit) {
+    definesPerUnit.add(macroElem.replace('=', ' '));
   }
 
-  private boolean existMacro(String macroElem, String file) {
-    Set<String> definesPerUnit = uniqueDefines.get(file);
-    String macro = macroElem.replace('=', ' ');
-    return definesPerUnit.contains(macro);
+  private static boolean existMacro(String macroElem, Set<String> definesPerUnit) {
+    return definesPerUnit.contains(macroElem.replace('=', ' '));
   }
 
-  private void parseCommonCompilerOptions(String line, String fileElement) {
+  private void parseCommonCompilerOptions(String line, Set<String> definesPerUnit) {
     // Always Defined //
-    //_INTEGRAL_MAX_BITS Reports the maximum size (in bits) for an integral type.    
-    addMacro("_INTEGRAL_MAX_BITS=64", fileElement);
+    //_INTEGRAL_MAX_BITS Reports the maximum size (in bits) for an integral type.
+    addMacro("_INTEGRAL_MAX_BITS=64", definesPerUnit);
     //_MSC_BUILD Evaluates to the revision number component of the compiler's version number. The revision number is
     // the fourth component of the period-delimited version number. For example, if the version number of the
     // Visual C++ compiler is 15.00.20706.01, the _MSC_BUILD macro evaluates to 1.
-    addMacro("_MSC_BUILD=1", fileElement);
+    addMacro("_MSC_BUILD=1", definesPerUnit);
     //__COUNTER__ Expands to an integer starting with 0 and incrementing by 1 every time it is used in a source file
     // or included headers of the source file. __COUNTER__ remembers its state when you use precompiled headers.
-    addMacro("__COUNTER__=0", fileElement);
+    addMacro("__COUNTER__=0", definesPerUnit);
     //__DATE__ The compilation date of the current source file. The date is a string literal of the form Mmm dd yyyy.
     // The month name Mmm is the same as for dates generated by the library function asctime declared in TIME.H.
-    addMacro("__DATE__=\"??? ?? ????\"", fileElement);
+    addMacro("__DATE__=\"??? ?? ????\"", definesPerUnit);
     //__FILE__ The name of the current source file. __FILE__ expands to a string surrounded by double quotation marks.
     // To ensure that the full path to the file is displayed, use /FC (Full Path of Source Code File in Diagnostics).
-    addMacro("__FILE__=\"file\"", fileElement);
+    addMacro("__FILE__=\"file\"", definesPerUnit);
     //__LINE__ The line number in the current source file. The line number is a decimal integer constant.
     // It can be changed with a #line directive.
-    addMacro("__LINE__=1", fileElement);
+    addMacro("__LINE__=1", definesPerUnit);
     //__TIME__ The most recent compilation time of the current source file.
     // The time is a string literal of the form hh:mm:ss.
-    addMacro("__TIME__=\"??:??:??\"", fileElement);
-    //__TIMESTAMP__ The date and time of the last modification of the current source file, 
-    // expressed as a string literal in the form Ddd Mmm Date hh:mm:ss yyyy, where Ddd is 
+    addMacro("__TIME__=\"??:??:??\"", definesPerUnit);
+    //__TIMESTAMP__ The date and time of the last modification of the current source file,
+    // expressed as a string literal in the form Ddd Mmm Date hh:mm:ss yyyy, where Ddd is
     // the abbreviated day of the week and Date is an integer from 1 to 31.
-    addMacro("__TIMESTAMP__=\"??? ?? ???? ??:??:??\"", fileElement);
-    // _M_IX86 
-    //    /GB _M_IX86 = 600 Blend
-    //    /G5 _M_IX86 = 500 (Default. Future compilers will emit a different value to reflect the dominant processor.) Pentium
-    //    /G6 _M_IX86 = 600  Pentium Pro, Pentium II, and Pentium III 
-    //    /G3 _M_IX86 = 300  80386
-    //    /G4 _M_IX86 = 400  80486    
-    if (line.contains("/GB ") || line.contains("/G6")) {
-      addMacro("_M_IX86=600", fileElement);
-    }
-    if (line.contains("/G5")) {
-      addMacro("_M_IX86=500", fileElement);
-    }
-    if (line.contains("/G3")) {
-      addMacro("_M_IX86=300", fileElement);
-    }
-    if (line.contains("/G4")) {
-      addMacro("_M_IX86=400", fileElement);
-    }
-    //_M_IX86_FP Expands to a value indicating which /arch compiler option was used:
-    //    0 if /arch was not used.
-    //    1 if /arch:SSE was used.
-    //    2 if /arch:SSE2 was used.
-    // Expands to an integer literal value indicating which /arch compiler option was used. 
+    addMacro("__TIMESTAMP__=\"??? ?? ???? ??:??:??\"", definesPerUnit);
+    // Expands to an integer literal value indicating which /arch compiler option was used.
     // The default value is '2' if /arch was not specified
-    addMacro("_M_IX86_FP=2", fileElement);
-    if (line.contains("/arch:IA32")) {
-      addMacro("_M_IX86_FP=0", fileElement);
-    }
-    if (line.contains("/arch:SSE")) {
-      addMacro("_M_IX86_FP=1", fileElement);
-    }
-    //arch:ARMv7VE or /arch:VFPv4
-    if (line.contains("/arch:ARMv7VE")) {
-      addMacro("_M_ARM=7", fileElement);
-      addMacro("_M_ARM_ARMV7VE=1", fileElement);
-    }
-    if (line.contains("/arch:VFPv4")) {
-      addMacro("_M_ARM=7", fileElement);
-    }
-    // WinCE and WinRT
-    // see https://en.wikipedia.org/wiki/ARM_architecture
-    if (line.contains("/arch:IA32 ")
-      || line.contains("/arch:SSE ")
-      || line.contains("/arch:SSE2 ")
-      || line.contains("/arch:AVX2 ")
-      || line.contains("/arch:AVX ")
-      || line.contains("/arch:VFPv4 ")
-      || line.contains("/arch:ARMv7VE ")) {
-      // In the range 30-39 if no /arch ARM option was specified, indicating the default architecture for ARM was used (VFPv3).
-      // In the range 40-49 if /arch:VFPv4 was used.
-      addMacro("_M_ARM_FP", fileElement);
-    }
-    // __STDC__ Indicates full conformance with the ANSI C standard. Defined as the integer constant 1 only if 
-    // the /Za compiler option is given and you are not compiling C++ code; otherwise is undefined.
-    if (line.contains("/Za ")) {
-      addMacro("__STDC__=1", fileElement);
-    }
-
-    //_CHAR_UNSIGNED Default char type is unsigned. Defined when /J is specified.
-    if (line.contains("/J ")) {
-      addMacro("_CHAR_UNSIGNED=1", fileElement);
-    }
+    addMacro("_M_IX86_FP=2", definesPerUnit);
 
-    //_CPPRTTI Defined for code compiled with /GR (Enable Run-Time Type Information).
-    if (line.contains("/GR ")) {
-      addMacro("_CPPRTTI", fileElement);
-    }
-
-    //_MANAGED Defined to be 1 when /clr is specified.
-    if (line.contains("/clr ")) {
-      addMacro("_MANAGED", fileElement);
-    }
-    //_M_CEE_PURE Defined for a compilation that uses /clr:pure.
-    if (line.contains("/clr:pure ")) {
-      addMacro("_M_CEE_PURE", fileElement);
-    }
-    //_M_CEE_SAFE Defined for a compilation that uses /clr:safe.
-    if (line.contains("/clr:safe ")) {
-      addMacro("_M_CEE_SAFE", fileElement);
-    }
-    // __CLR_VER Defines the version of the common language runtime used when the application was compiled. 
-    // The value returned will be in the following format:
-    // __cplusplus_cli Defined when you compile with /clr, /clr:pure, or /clr:safe. Value of __cplusplus_cli is 200406. 
-    // __cplusplus_cli is in effect throughout the translation unit.    
-    //_M_CEE Defined for a compilation that uses any form of /clr (/clr:oldSyntax, /clr:safe, for example).    
-    if (line.contains("/clr")) {
-
-      addMacro("_M_CEE", fileElement);
-      addMacro("__cplusplus_cli=200406", fileElement);
-      addMacro("__CLR_VER", fileElement);
-      if (line.contains("/clr:pure ")) {
-        addMacro("_M_CEE_PURE", fileElement);
-      }
-      if (line.contains("/clr:safe ")) {
-        addMacro("_M_CEE_SAFE", fileElement);
+    for (String[] optionMacros : OPTION_MACROS) {
+      if (line.contains(optionMacros[0])) {
+        for (int i = 1; i < optionMacros.length; i++) {
+          addMacro(optionMacros[i], definesPerUnit);
+        }
       }
     }
 
-    //_MSC_EXTENSIONS This macro is defined when you compile with the /Ze compiler option (the default). Its value, when defined, is 1.
-    if (line.contains("/Ze ")) {
-      addMacro("_MSC_EXTENSIONS", fileElement);
-    }
-
-    //__MSVC_RUNTIME_CHECKS Defined when one of the /RTC compiler options is specified.
-    if (line.contains("/RTC ")) {
-      addMacro("__MSVC_RUNTIME_CHECKS", fileElement);
-    }
-
-    //_DEBUG Defined when you compile with /LDd, /MDd, and /MTd.
-    if (line.contains("/LDd ")) {
-      addMacro("_DEBUG", fileElement);
-    }
-    //_DLL Defined when /MD or /MDd (Multithreaded DLL) is specified. 
-    if (line.contains("/MD ") || line.contains("/MDd ")) {
-      addMacro("_DLL", fileElement);
-    }
-    //_MT Defined when /MD (Multithreaded DLL) or /MT (Multithreaded) is specified.
-    if (line.contains("/MD ") || line.contains("/MT ")) {
-      addMacro("_MT", fileElement);
-    }
-    //_MT Defined when /MDd (Multithreaded DLL) or /MTd (Multithreaded) is specified.
-    if (line.contains("/MDd ") || line.contains("/MTd ")) {
-      addMacro("_MT", fileElement);
-      addMacro("_DEBUG", fileElement);
-    }
-    //_OPENMP Defined when compiling with /openmp, returns an integer representing the date of the 
-    // OpenMP specification implemented by Visual C++.
-    if (line.contains("/openmp ")) {
-      addMacro("_OPENMP=200203", fileElement);
-    }
-
-    //_VC_NODEFAULTLIB Defined when /Zl is used; see /Zl (Omit Default Library Name) for more information.
-    if (line.contains("/Zl ")) {
-      addMacro("_VC_NODEFAULTLIB", fileElement);
-    }
-
-    //_NATIVE_WCHAR_T_DEFINED Defined when /Zc:wchar_t is used.    
-    //_WCHAR_T_DEFINED Defined when /Zc:wchar_t is used or if wchar_t is defined in a system header file
-    // included in your project.
-    if (line.contains("/Zc:wchar_t ")) {
-      addMacro("_WCHAR_T_DEFINED=1", fileElement);
-      addMacro("_NATIVE_WCHAR_T_DEFINED=1", fileElement);
-    }
-
-    //_Wp64 Defined when specifying /Wp64. Deprecated in Visual Studio 2010 and Visual Studio 2012,
-    // and not supported starting in Visual Studio 2013
-    if (line.contains("/Wp64 ")) {
-      addMacro("_Wp64", fileElement);
-    }
-
     //_M_AMD64 Defined for x64 processors.
     //_WIN32 Defined for applications for Win32 and Win64. Always defined.
     //_WIN64 Defined for applications for Win64.
@@ -507,116 +541,27 @@ public class CxxVCppBuildLogParser {
     //_M_IA64 Defined for Itanium Processor Family 64-bit processors.
     if ("x64".equals(platform) || line.contains("/D WIN64")) {
       // Defined for compilations that target x64 processors.
-      addMacro("_WIN32", fileElement);
+      addMacro("_WIN32", definesPerUnit);
       // This is not defined for x86 processors.
-      addMacro("_WIN64", fileElement);
-      addMacro("_M_X64=100", fileElement);
-      addMacro("_M_IA64", fileElement);
-      addMacro("_M_AMD64", fileElement);
+      addMacro("_WIN64", definesPerUnit);
+      addMacro("_M_X64=100", definesPerUnit);
+      addMacro("_M_IA64", definesPerUnit);
+      addMacro("_M_AMD64", definesPerUnit);
     } else if ("Win32".equals(platform)) {
-      // Defined for compilations that target x86 processors. 
-      addMacro("_WIN32", fileElement);
+      // Defined for compilations that target x86 processors.
+      addMacro("_WIN32", definesPerUnit);
       //This is not defined for x64 processors.
-      addMacro("_M_IX86=600", fileElement);
-    }
-    // VC++ 17.0, 18.0, 19.0
-    // _CPPUNWIND Defined for code compiled by using one of the /EH (Exception Handling Model) flags.
-    if (line.contains("/EHs ")
-      || line.contains("/EHa ")
-      || line.contains("/EHsc ")
-      || line.contains("/EHac ")) {
-      addMacro("_CPPUNWIND", fileElement);
-    }
-    if (line.contains("/favor:ATOM") && (existMacro("_M_X64 100", fileElement)
-      || existMacro("_M_IX86 600", fileElement))) {
-      addMacro("__ATOM__=1", fileElement);
+      addMacro("_M_IX86=600", definesPerUnit);
     }
-    if (line.contains("/arch:AVX") && (existMacro("_M_X64 100", fileElement)
-      || existMacro("_M_IX86 600", fileElement))) {
-      addMacro("__AVX__=1", fileElement);
+    boolean x86OrX64 = existMacro("_M_X64 100", definesPerUnit) || existMacro("_M_IX86 600", definesPerUnit);
+    if (x86OrX64 && line.contains("/favor:ATOM")) {
+      addMacro("__ATOM__=1", definesPerUnit);
     }
-    if (line.contains("/arch:AVX2") && (existMacro("_M_X64 100", fileElement)
-      || existMacro("_M_IX86 600", fileElement))) {
-      addMacro("__AVX2__=1", fileElement);
+    if (x86OrX64 && line.contains("/arch:AVX")) {
+      addMacro("__AVX__=1", definesPerUnit);
     }
-  }
-
-  private void parseV100CompilerOptions(String line, String fileElement) {
-    // VC++ V16.0 - VS2010 (V10.0)
-    addMacro(CPPVERSION, fileElement);
-    // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
-      addMacro(CPPWINRTVERSION, fileElement);
-    }
-    addMacro("_MSC_VER=1600", fileElement);
-    // VS2010 SP1
-    addMacro("_MSC_FULL_VER=16004021901", fileElement);
-    //_MFC_VER Defines the MFC version. For example, in Visual Studio 2010, _MFC_VER is defined as 0x0C00.
-    addMacro("_MFC_VER=0x0A00", fileElement);
-    addMacro("_ATL_VER=0x0A00", fileElement);
-    // VC++ 16.0
-    if (line.contains("/GX ")) {
-      addMacro("_CPPUNWIND", fileElement);
-    }
-  }
-
-  private void parseV110CompilerOptions(String line, String fileElement) {
-    // VC++ V17.0 - VS2012 (V11.0)
-    addMacro(CPPVERSION, fileElement);
-    // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
-      addMacro(CPPWINRTVERSION, fileElement);
-    }
-    addMacro("_MSC_VER=1700", fileElement);
-    // VS2012 Update 4
-    addMacro("_MSC_FULL_VER=1700610301", fileElement);
-    //_MFC_VER Defines the MFC version (see afxver_.h)
-    addMacro("_MFC_VER=0x0B00", fileElement);
-    addMacro("_ATL_VER=0x0B00", fileElement);
-  }
-
-  private void parseV120CompilerOptions(String line, String fileElement) {
-    // VC++ V18.0 - VS2013 (V12.0)
-    addMacro(CPPVERSION, fileElement);
-    // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
-      addMacro(CPPWINRTVERSION, fileElement);
-    }
-    addMacro("_MSC_VER=1800", fileElement);
-    // VS2013 Update 4
-    addMacro("_MSC_FULL_VER=180031101", fileElement);
-    //_MFC_VER Defines the MFC version (see afxver_.h)
-    addMacro("_MFC_VER=0x0C00", fileElement);
-    addMacro("_ATL_VER=0x0C00", fileElement);
-  }
-
-  private void parseV140CompilerOptions(String line, String fileElement) {
-    // VC++ V19.0 - VS2015 (V14.0)
-    addMacro(CPPVERSION, fileElement);
-    // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
-      addMacro(CPPWINRTVERSION, fileElement);
+    if (x86OrX64 && line.contains("/arch:AVX2")) {
+      addMacro("__AVX2__=1", definesPerUnit);
     }
-    addMacro("_MSC_VER=1900", fileElement);
-    // VS2015 Update 3 V19.00.24215.1
-    addMacro("_MSC_FULL_VER=190024215", fileElement);
-    //_MFC_VER Defines the MFC version (see afxver_.h)
-    addMacro("_MFC_VER=0x0E00", fileElement);
-    addMacro("_ATL_VER=0x0E00", fileElement);
-  }
-
-  private void parseV141CompilerOptions(String line, String fileElement) {
-    // VC++ V19.1 - VS2017 (V15.0)
-    addMacro(CPPVERSION, fileElement);
-    // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
-      addMacro(CPPWINRTVERSION, fileElement);
-    }
-    addMacro("_MSC_VER=1910", fileElement);
-    // VS2017 RC
-    addMacro("_MSC_FULL_VER=191024629", fileElement);
-    //_MFC_VER Defines the MFC version (see afxver_.h)
-    addMacro("_MFC_VER=0x0E00", fileElement);
-    addMacro("_ATL_VER=0x0E00", fileElement);
   }
 }
@@ -34,21 +34,24 @@ import org.sonar.squidbridge.api.SourceProject;
 
 public final class CxxParser {
 
-  private static volatile CxxPreprocessor cxxpp;
+  /**
+   * The preprocessor is bound to the thread which created the parser, so several scanners can run side by side.
+   */
+  private static final ThreadLocal<CxxPreprocessor> cxxpp = new ThreadLocal<>();
 
   private CxxParser() {
   }
 
   public static void finishedParsing(File path) {
-    cxxpp.finishedPreprocessing(path);
+    cxxpp.get().finishedPreprocessing(path);
   }
 
   public static Collection<CxxPreprocessor.Include> getIncludedFiles(File path) {
-    return cxxpp.getIncludedFiles(path);
+    return cxxpp.get().getIncludedFiles(path);
   }
 
   public static Collection<CxxPreprocessor.Include> getMissingIncludeFiles(File path) {
-    return cxxpp.getMissingIncludeFiles(path);
+    return cxxpp.get().getMissingIncludeFiles(path);
   }
 
   public static Parser<Grammar> create(CxxLanguage language) {
@@ -62,9 +65,10 @@ public final class CxxParser {
 
   public static Parser<Grammar> create(SquidAstVisitorContext<Grammar> context, CxxConfiguration conf,
     CxxLanguage language) {
-    cxxpp = new CxxPreprocessor(context, conf, language);
+    CxxPreprocessor preprocessor = new CxxPreprocessor(context, conf, language);
+    cxxpp.set(preprocessor);
     return Parser.builder(CxxGrammarImpl.create(conf))
-      .withLexer(CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor()))
+      .withLexer(CxxLexer.create(conf, preprocessor, new JoinStringsPreprocessor()))
       .build();
   }
 }
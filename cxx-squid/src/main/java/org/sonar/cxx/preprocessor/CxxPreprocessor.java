@@ -25,12 +25,14 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+import static com.sonar.sslr.api.GenericTokenType.UNKNOWN_CHAR;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Preprocessor;
 import com.sonar.sslr.api.PreprocessorAction;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.Parser;
 import java.io.File;
 import java.io.IOException;
@@ -46,9 +48,11 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.stream.Collectors;
@@ -58,13 +62,13 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxCompilationUnitSettings;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.api.CppKeyword;
 import static org.sonar.cxx.api.CppKeyword.IFDEF;
 import static org.sonar.cxx.api.CppKeyword.IFNDEF;
-import static org.sonar.cxx.api.CppPunctuator.BR_RIGHT;
-import static org.sonar.cxx.api.CppPunctuator.COMMA;
-import static org.sonar.cxx.api.CppPunctuator.HASH;
-import static org.sonar.cxx.api.CppPunctuator.HASHHASH;
+import org.sonar.cxx.api.CppPunctuator;
 import static org.sonar.cxx.api.CppPunctuator.LT;
+import org.sonar.cxx.api.CxxKeyword;
+import org.sonar.cxx.api.CxxPunctuator;
 import static org.sonar.cxx.api.CxxTokenType.NUMBER;
 import static org.sonar.cxx.api.CxxTokenType.PREPROCESSOR;
 import static org.sonar.cxx.api.CxxTokenType.STRING;
@@ -112,24 +116,117 @@ public class CxxPreprocessor extends Preprocessor {
     }
   }
 
-  static class MismatchException extends Exception {
+  /**
+   * State shared by the compilation units of one flag profile (same defines and includes).
+   */
+  private static final class Profile {
 
-    private static final long serialVersionUID = 1960113363232807009L;
+    private final SourceCodeProvider codeProvider;
+    private final Map<String, Macro> defines;
+    // base layers by directory of the unit, relative force includes are searched there first
+    private final Map<String, BaseLayer> baseLayers = createLruMap(MAX_BASE_LAYERS);
 
-    MismatchException(String message) {
-      super(message);
+    Profile(SourceCodeProvider codeProvider, Map<String, Macro> defines) {
+      this.codeProvider = codeProvider;
+      this.defines = defines;
     }
+  }
+
+  /**
+   * State at the start of a compilation unit after the configured defines, the standard macros, the force includes
+   * and the defines of the profile. Built by the first unit of a profile, the following units fork it.
+   */
+  private static final class BaseLayer {
+
+    private MapChain<String, Macro> macros;
+    private PersistentMap<File, File> analysedFiles;
+    private long analysedFilesFingerprint;
+    private final List<Include> includes = new ArrayList<>();
+    private final List<Include> missingIncludes = new ArrayList<>();
+  }
+
+  /**
+   * A token of a macro replacement with its hide set, the names of the macros which must not replace it again when it
+   * is rescanned (C++ standard 16.3.4). Hide sets are not modified after creation.
+   */
+  private static final class ExpansionToken {
 
-    MismatchException(Throwable cause) {
-      super(cause);
+    private final Token token;
+    private final Set<String> hideSet;
+
+    ExpansionToken(Token token) {
+      this(token, Collections.emptySet());
     }
 
-    MismatchException(String message, Throwable cause) {
-      super(message, cause);
+    ExpansionToken(Token token, Set<String> hideSet) {
+      this.token = token;
+      this.hideSet = hideSet;
     }
 
-    MismatchException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
-      super(message, cause, enableSuppression, writableStackTrace);
+    String getValue() {
+      return token.getValue();
+    }
+  }
+
+  /**
+   * Input of a rescan: the pending tokens of the replacements, followed by the source tokens after the macro
+   * invocation. Source tokens are only read to complete the arguments of a function-like macro at the end of a
+   * replacement.
+   */
+  private static final class ExpansionInput {
+
+    // reversed, the next token is the last one
+    private final List<ExpansionToken> pending = new ArrayList<>();
+    private final List<Token> source;
+    private int consumed;
+
+    ExpansionInput(List<Token> source) {
+      this.source = source;
+    }
+
+    boolean hasPending() {
+      return !pending.isEmpty();
+    }
+
+    /**
+     * @return number of source tokens read so far
+     */
+    int getConsumed() {
+      return consumed;
+    }
+
+    void push(List<ExpansionToken> tokens) {
+      for (int i = tokens.size() - 1; i >= 0; i--) {
+        pending.add(tokens.get(i));
+      }
+    }
+
+    ExpansionToken next() {
+      if (!pending.isEmpty()) {
+        return pending.remove(pending.size() - 1);
+      }
+      return new ExpansionToken(source.get(consumed++));
+    }
+
+    void skip(int count) {
+      for (int i = 0; i < count; i++) {
+        next();
+      }
+    }
+
+    /**
+     * @return the token at the given offset from the next one, null at the end of the input
+     */
+    @Nullable
+    ExpansionToken peek(int offset) {
+      if (offset < pending.size()) {
+        return pending.get(pending.size() - 1 - offset);
+      }
+      int index = consumed + offset - pending.size();
+      if (index < source.size() && !source.get(index).getType().equals(EOF)) {
+        return new ExpansionToken(source.get(index));
+      }
+      return null;
     }
   }
 
@@ -155,6 +252,10 @@ public class CxxPreprocessor extends Preprocessor {
       this.isVariadic = variadic;
     }
 
+    public String getName() {
+      return name;
+    }
+
     @Override
     public String toString() {
       return name
@@ -162,6 +263,52 @@ public class CxxPreprocessor extends Preprocessor {
         + " -> '" + serialize(body) + "'";
     }
 
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Macro that = (Macro) o;
+      return isVariadic == that.isVariadic
+        && name.equals(that.name)
+        && sameTokens(params, that.params)
+        && sameTokens(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * (31 * name.hashCode() + tokensHash(params)) + tokensHash(body)) + (isVariadic ? 1 : 0);
+    }
+
+    private static boolean sameTokens(@Nullable List<Token> a, @Nullable List<Token> b) {
+      if (a == null || b == null) {
+        return a == b;
+      }
+      if (a.size() != b.size()) {
+        return false;
+      }
+      for (int i = 0; i < a.size(); i++) {
+        if (!a.get(i).getValue().equals(b.get(i).getValue()) || !a.get(i).getType().equals(b.get(i).getType())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static int tokensHash(@Nullable List<Token> tokens) {
+      if (tokens == null) {
+        return -1;
+      }
+      int hash = 1;
+      for (Token token : tokens) {
+        hash = 31 * hash + token.getValue().hashCode();
+      }
+      return hash;
+    }
+
     public boolean checkArgumentsCount(int count) {
       return isVariadic
         ? count >= params.size() - 1
@@ -173,7 +320,15 @@ public class CxxPreprocessor extends Preprocessor {
   private Parser<Grammar> pplineParser;
   private final MapChain<String, Macro> fixedMacros = new MapChain<>();
   private MapChain<String, Macro> unitMacros;
-  private final Set<File> analysedFiles = new HashSet<>();
+  private MapChain<String, Macro> unitBaseMacros;
+  private final Map<CxxCompilationUnitSettings, Profile> profiles = createLruMap(MAX_PROFILES);
+  private final boolean relativeForceIncludes;
+  @Nullable
+  private BaseLayer baseLayerUnderConstruction;
+  private PersistentMap<File, File> analysedFiles = PersistentMap.empty();
+  private long analysedFilesFingerprint;
+  private final IncludeSummaryCache includeSummaryCache = new IncludeSummaryCache();
+  private Lexer tokenLexer;
   private SourceCodeProvider codeProvider = new SourceCodeProvider();
   private SourceCodeProvider unitCodeProvider;
   private SquidAstVisitorContext<Grammar> context;
@@ -182,6 +337,25 @@ public class CxxPreprocessor extends Preprocessor {
   private CxxConfiguration conf;
   private CxxCompilationUnitSettings compilationUnitSettings;
   private static final String VARIADICPARAMETER = "__VA_ARGS__";
+  private static final int MAX_PROFILES = 64;
+  private static final int MAX_BASE_LAYERS = 256;
+  private static final Map<String, TokenType> CXX_TOKEN_TYPES = createCxxTokenTypes();
+
+  /**
+   * Types the CxxLexer gives to keywords and punctuators, by value.
+   */
+  private static Map<String, TokenType> createCxxTokenTypes() {
+    Map<String, TokenType> types = new HashMap<>();
+    for (CxxKeyword keyword : CxxKeyword.values()) {
+      types.put(keyword.getValue(), keyword);
+    }
+    for (CxxPunctuator punctuator : CxxPunctuator.values()) {
+      types.put(punctuator.getValue(), punctuator);
+    }
+    // C++ Standard, Section 2.14.7 "Pointer literals"
+    types.put(CxxKeyword.NULLPTR.getValue(), NUMBER);
+    return types;
+  }
 
   public static class Include {
 
@@ -238,7 +412,7 @@ public class CxxPreprocessor extends Preprocessor {
   }
 
   public CxxPreprocessor(SquidAstVisitorContext<Grammar> context, CxxConfiguration conf, CxxLanguage language) {
-    this(context, conf, new SourceCodeProvider(), language);
+    this(context, conf, new SourceCodeProvider(conf.getSourceCodeCache(), conf.getIncludeIndex()), language);
   }
 
   public CxxPreprocessor(SquidAstVisitorContext<Grammar> context,
@@ -255,22 +429,17 @@ public class CxxPreprocessor extends Preprocessor {
     codeProvider.setIncludeRoots(conf.getIncludeDirectories(), conf.getBaseDir());
 
     pplineParser = CppParser.create(conf);
+    relativeForceIncludes = conf.getForceIncludeFiles().stream()
+      .anyMatch(include -> !"".equals(include) && !new File(include).isAbsolute());
 
     try {
       getMacros().setHighPrio(true);
 
-      // parse the configured defines and store into the macro library
-      for (String define : conf.getDefines()) {
-        LOG.debug("parsing external macro: '{}'", define);
-        if (!"".equals(define)) {
-          Macro macro = parseMacroDefinition("#define " + define);
-          LOG.debug("storing external macro: '{}'", macro);
-          getMacros().put(macro.name, macro);
-        }
-      }
+      // configured defines, parsed once per configuration
+      getMacros().putAll(getConfiguredDefines());
 
       // set standard macros
-      registerMacros(StandardDefinitions.macros());
+      getMacros().putAll(PrecompiledMacros.getStandardMacros());
 
       // parse the configured force includes and store into the macro library
       for (String include : conf.getForceIncludeFiles()) {
@@ -285,23 +454,106 @@ public class CxxPreprocessor extends Preprocessor {
     }
   }
 
-  private void registerMacros(Map<String, String> standardMacros) {
-    for (Map.Entry<String, String> entry : standardMacros.entrySet()) {
-      Token bodyToken;
-      try {
-        bodyToken = Token.builder()
-          .setLine(1)
-          .setColumn(0)
-          .setURI(new java.net.URI(""))
-          .setValueAndOriginalValue(entry.getValue())
-          .setType(STRING)
-          .build();
-      } catch (java.net.URISyntaxException e) {
-        throw new PreprocessorRuntimeException("URI cannot be handled", e);
+  private static <K, V> Map<K, V> createLruMap(int maxSize) {
+    return new LinkedHashMap<K, V>(16, 0.75f, true) {
+      private static final long serialVersionUID = 6373557329496462718L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxSize;
       }
+    };
+  }
 
-      getMacros().put(entry.getKey(), new Macro(entry.getKey(), null, Collections.singletonList(bodyToken), false));
+  private Profile getProfile(CxxCompilationUnitSettings settings) {
+    Profile profile = profiles.get(settings);
+    if (profile == null) {
+      SourceCodeProvider provider = new SourceCodeProvider(conf.getSourceCodeCache(), conf.getIncludeIndex());
+      provider.setIncludeRoots(settings.getIncludes(), conf.getBaseDir());
+      profile = new Profile(provider, PrecompiledMacros.createMacros(settings.getDefines()));
+      profiles.put(settings, profile);
     }
+    return profile;
+  }
+
+  /**
+   * Start the current compilation unit on the base layer of its profile, the layer is built by the first unit.
+   */
+  private void startUnit(Profile profile) {
+    String directory = relativeForceIncludes ? currentContextFile.getAbsoluteFile().getParent() : "";
+    BaseLayer layer = profile.baseLayers.get(directory);
+    if (layer == null) {
+      layer = createBaseLayer(profile);
+      profile.baseLayers.put(directory, layer);
+    }
+
+    unitMacros = layer.macros.fork();
+    analysedFiles = layer.analysedFiles;
+    analysedFilesFingerprint = layer.analysedFilesFingerprint;
+    includedFiles.putAll(currentContextFile.getPath(), layer.includes);
+    missingIncludeFiles.putAll(currentContextFile.getPath(), layer.missingIncludes);
+  }
+
+  private BaseLayer createBaseLayer(Profile profile) {
+    BaseLayer layer = new BaseLayer();
+    // configured defines and standard macros are shared, the layer works on a fork
+    unitMacros = getUnitBaseMacros().fork();
+    baseLayerUnderConstruction = layer;
+
+    try {
+      // Treat all global defines as high prio
+      getMacros().setHighPrio(true);
+
+      // parse the configured force includes and store into the macro library
+      for (String include : conf.getForceIncludeFiles()) {
+        LOG.debug("parsing force include to unit: '{}'", include);
+        if (!"".equals(include)) {
+          // TODO -> this needs to come from language
+          parseIncludeLine("#include \"" + include + "\"", "sonar.cxx.forceIncludes", conf.getEncoding());
+        }
+      }
+
+      // rest of defines comes from compilation unit settings
+      getMacros().putAll(profile.defines);
+    } finally {
+      getMacros().setHighPrio(false);
+      baseLayerUnderConstruction = null;
+    }
+
+    if (getMacro("__cplusplus") == null) {
+      //Create macros to replace C++ keywords when parsing C files
+      getMacros().putAll(PrecompiledMacros.getCompatibilityMacros());
+    }
+
+    layer.macros = unitMacros;
+    layer.analysedFiles = analysedFiles;
+    layer.analysedFilesFingerprint = analysedFilesFingerprint;
+    return layer;
+  }
+
+  private MapChain<String, Macro> getUnitBaseMacros() {
+    if (unitBaseMacros == null) {
+      unitBaseMacros = new MapChain<>();
+      unitBaseMacros.setHighPrio(true);
+
+      // configured defines, parsed once per configuration
+      unitBaseMacros.putAll(getConfiguredDefines());
+
+      // set standard macros
+      // using smaller set of defines as rest is provides by compilation unit settings
+      unitBaseMacros.putAll(PrecompiledMacros.getUnitStandardMacros());
+      unitBaseMacros.setHighPrio(false);
+    }
+    return unitBaseMacros;
+  }
+
+  private Map<String, Macro> getConfiguredDefines() {
+    return conf.getPrecompiledMacros().getDefines(conf.getDefines(), (String define) -> {
+      LOG.debug("parsing external macro: '{}'", define);
+      Macro macro = parseMacroDefinition("#define " + define);
+      LOG.debug("storing external macro: '{}'", macro);
+      return macro;
+    });
   }
 
   public Collection<Include> getIncludedFiles(File file) {
@@ -347,62 +599,16 @@ public class CxxPreprocessor extends Preprocessor {
       }
 
       if (compilationUnitSettings != null) {
-        // Use compilation unit settings
-        unitCodeProvider = new SourceCodeProvider();
-        unitCodeProvider.setIncludeRoots(compilationUnitSettings.getIncludes(), conf.getBaseDir());
-
-        unitMacros = new MapChain<>();
-
-        try {
-          // Treat all global defines as high prio
-          getMacros().setHighPrio(true);
-
-          // parse the configured defines and store into the macro library
-          for (String define : conf.getDefines()) {
-            LOG.debug("parsing external macro to unit: '{}'", define);
-            if (!"".equals(define)) {
-              Macro macro = parseMacroDefinition("#define " + define);
-              if (macro != null) {
-                LOG.debug("storing external macro to unit: '{}'", macro);
-                getMacros().put(macro.name, macro);
-              }
-            }
-          }
-
-          // set standard macros
-          // using smaller set of defines as rest is provides by compilation unit settings
-          HashMap<String, String> defines = new HashMap<>();
-          defines.put("__FILE__", "\"file\"");
-          defines.put("__LINE__", "1");
-          defines.put("__DATE__", "\"??? ?? ????\"");
-          defines.put("__TIME__", "\"??:??:??\"");
-          registerMacros(defines);
-
-          // parse the configured force includes and store into the macro library
-          for (String include : conf.getForceIncludeFiles()) {
-            LOG.debug("parsing force include to unit: '{}'", include);
-            if (!"".equals(include)) {
-              // TODO -> this needs to come from language
-              parseIncludeLine("#include \"" + include + "\"", "sonar.cxx.forceIncludes", conf.getEncoding());
-            }
-          }
-
-          // rest of defines comes from compilation unit settings
-          registerMacros(compilationUnitSettings.getDefines());
-        } finally {
-          getMacros().setHighPrio(false);
-        }
-
-        if (getMacro("__cplusplus") == null) {
-          //Create macros to replace C++ keywords when parsing C files
-          registerMacros(StandardDefinitions.compatibilityMacros());
-        }
+        // Use compilation unit settings, files with the same settings share include resolver and macros
+        Profile profile = getProfile(compilationUnitSettings);
+        unitCodeProvider = profile.codeProvider;
+        startUnit(profile);
       } else {
         // Use global settings
         LOG.debug("global settings for: '{}'", rootFilePath);
         if (isCFile(currentContextFile.getAbsolutePath())) {
           //Create macros to replace C++ keywords when parsing C files
-          registerMacros(StandardDefinitions.compatibilityMacros());
+          getMacros().putAll(PrecompiledMacros.getCompatibilityMacros());
           fixedMacros.disable("__cplusplus");
         } else {
           fixedMacros.enable("__cplusplus");
@@ -476,8 +682,13 @@ public class CxxPreprocessor extends Preprocessor {
     // is encountered) until the end of the translation unit.
 
     LOG.debug("finished preprocessing '{}'", file);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("include summary cache: {} hits, {} misses",
+        includeSummaryCache.getHits(), includeSummaryCache.getMisses());
+    }
 
-    analysedFiles.clear();
+    analysedFiles = PersistentMap.empty();
+    analysedFilesFingerprint = 0;
     fixedMacros.clearLowPrio();
     unitMacros = null;
     compilationUnitSettings = null;
@@ -647,7 +858,7 @@ public class CxxPreprocessor extends Preprocessor {
     if (LOG.isTraceEnabled()) {
       LOG.trace("[{}:{}]: storing macro: '{}'", filename, token.getLine(), macro);
     }
-    getMacros().put(macro.name, macro);
+    defineMacro(macro);
 
     return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
       new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
@@ -674,7 +885,7 @@ public class CxxPreprocessor extends Preprocessor {
 
     File currentFile = this.getFileUnderAnalysis();
     if (currentFile != null && includedFile != null) {
-      includedFiles.put(currentFile.getPath(), new Include(token.getLine(), includedFile.getAbsolutePath()));
+      addIncludedFile(currentFile.getPath(), new Include(token.getLine(), includedFile.getAbsolutePath()));
     }
 
     if (includedFile == null) {
@@ -683,24 +894,42 @@ public class CxxPreprocessor extends Preprocessor {
           + token.getValue() + "'");
       }
       if (currentFile != null) {
-        missingIncludeFiles.put(currentFile.getPath(), new Include(token.getLine(), token.getValue()));
+        addMissingIncludeFile(currentFile.getPath(), new Include(token.getLine(), token.getValue()));
       }
-    } else if (!analysedFiles.contains(includedFile)) {
-      analysedFiles.add(includedFile.getAbsoluteFile());
-      if (LOG.isTraceEnabled()) {
-        LOG.trace("[{}:{}]: processing {}, resolved to file '{}'",
-          filename, token.getLine(), token.getValue(), includedFile.getAbsolutePath());
+    } else if (analysedFiles.get(includedFile) == null) {
+      IncludeSummaryCache.Key key = new IncludeSummaryCache.Key(includedFile,
+        getCodeProvider().lastModified(includedFile), getMacros(), analysedFiles, analysedFilesFingerprint,
+        getCodeProvider().getIncludeRoots());
+      List<IncludeSummaryCache.Action> summary = includeSummaryCache.get(key);
+      if (summary == null) {
+        key = includeSummaryCache.snapshot(key);
       }
+      addAnalysedFile(includedFile.getAbsoluteFile());
+
+      if (summary != null) {
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("[{}:{}]: replaying {}, resolved to file '{}'",
+            filename, token.getLine(), token.getValue(), includedFile.getAbsolutePath());
+        }
+        replay(summary);
+      } else {
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("[{}:{}]: processing {}, resolved to file '{}'",
+            filename, token.getLine(), token.getValue(), includedFile.getAbsolutePath());
+        }
 
-      globalStateStack.push(currentFileState);
-      currentFileState = new State(includedFile);
+        globalStateStack.push(currentFileState);
+        currentFileState = new State(includedFile);
+        includeSummaryCache.begin();
 
-      try {
-        IncludeLexer.create(this).lex(getCodeProvider().getSourceCode(includedFile, charset));
-      } catch (IOException ex) {
-        LOG.error("[{}: Cannot read file]: {}", includedFile.getAbsoluteFile(), ex);
-      } finally {
-        currentFileState = globalStateStack.pop();
+        try {
+          IncludeLexer.create(this).lex(getCodeProvider().getSourceCode(includedFile, charset));
+        } catch (IOException ex) {
+          LOG.error("[{}: Cannot read file]: {}", includedFile.getAbsoluteFile(), ex);
+        } finally {
+          includeSummaryCache.end(key);
+          currentFileState = globalStateStack.pop();
+        }
       }
     }
 
@@ -710,67 +939,94 @@ public class CxxPreprocessor extends Preprocessor {
 
   PreprocessorAction handleUndefLine(AstNode ast, Token token) { //@todo: deprecated PreprocessorAction
     String macroName = ast.getFirstDescendant(IDENTIFIER).getTokenValue();
-    getMacros().removeLowPrio(macroName);
+    undefineMacro(macroName);
     return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
       new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
   }
 
+  private void defineMacro(Macro macro) {
+    getMacros().put(macro.name, macro);
+    includeSummaryCache.record(IncludeSummaryCache.Kind.DEFINE, macro.name, macro);
+  }
+
+  private void undefineMacro(String macroName) {
+    getMacros().removeLowPrio(macroName);
+    includeSummaryCache.record(IncludeSummaryCache.Kind.UNDEF, macroName, null);
+  }
+
+  private void addAnalysedFile(File file) {
+    if (analysedFiles.get(file) == null) {
+      analysedFiles = analysedFiles.put(file, file);
+      analysedFilesFingerprint ^= file.hashCode() * 0x9e3779b97f4a7c15L;
+    }
+    includeSummaryCache.record(IncludeSummaryCache.Kind.ANALYSED, file.getPath(), file);
+  }
+
+  private void addIncludedFile(String path, Include include) {
+    if (baseLayerUnderConstruction != null && currentFileState.includeUnderAnalysis == null) {
+      baseLayerUnderConstruction.includes.add(include);
+    }
+    includedFiles.put(path, include);
+    includeSummaryCache.record(IncludeSummaryCache.Kind.INCLUDE, path, include);
+  }
+
+  private void addMissingIncludeFile(String path, Include include) {
+    if (baseLayerUnderConstruction != null && currentFileState.includeUnderAnalysis == null) {
+      baseLayerUnderConstruction.missingIncludes.add(include);
+    }
+    missingIncludeFiles.put(path, include);
+    includeSummaryCache.record(IncludeSummaryCache.Kind.MISSING_INCLUDE, path, include);
+  }
+
+  /**
+   * Apply the recorded effect of an included file instead of preprocessing it again.
+   */
+  private void replay(List<IncludeSummaryCache.Action> summary) {
+    for (IncludeSummaryCache.Action action : summary) {
+      switch (action.getKind()) {
+        case DEFINE:
+          defineMacro((Macro) action.getValue());
+          break;
+        case UNDEF:
+          undefineMacro(action.getName());
+          break;
+        case ANALYSED:
+          addAnalysedFile((File) action.getValue());
+          break;
+        case INCLUDE:
+          addIncludedFile(action.getName(), (Include) action.getValue());
+          break;
+        case MISSING_INCLUDE:
+          Include missing = (Include) action.getValue();
+          if (conf.getMissingIncludeWarningsEnabled()) {
+            LOG.warn("[" + action.getName() + ":" + missing.getLine() + "]: cannot find the sources for '"
+              + missing.getPath() + "'");
+          }
+          addMissingIncludeFile(action.getName(), missing);
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
   PreprocessorAction handleIdentifiersAndKeywords(List<Token> tokens, Token curr, String filename) {//@todo:deprecated
     //
     // Every identifier and every keyword can be a macro instance.
-    // Pipe the resulting string through a lexer to create proper Tokens
-    // and to expand recursively all macros which may be in there.
+    // The replacement is rescanned as a token list to expand recursively all macros which may be in there,
+    // a function-like macro at its end can consume further tokens of the input.
     //
 
     PreprocessorAction ppaction = PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
     Macro macro = getMacro(curr.getValue());
     if (macro != null) {
-      List<Token> replTokens = new LinkedList<>();
-      int tokensConsumed = 0;
-
-      if (macro.params == null) {
-        tokensConsumed = 1;
-        replTokens = new LinkedList<>(expandMacro(macro.name, serialize(evaluateHashhashOperators(macro.body))));
-      } else {
-        int tokensConsumedMatchingArgs = expandFunctionLikeMacro(macro.name,
-          tokens.subList(1, tokens.size()),
-          replTokens);
-        if (tokensConsumedMatchingArgs > 0) {
-          tokensConsumed = 1 + tokensConsumedMatchingArgs;
-        }
-      }
+      ExpansionInput input = new ExpansionInput(tokens);
+      List<ExpansionToken> replacement = replace(macro, input.next().hideSet, input);
 
-      if (tokensConsumed > 0) {
-
-        // Rescanning to expand function like macros, in case it requires consuming more tokens
-        List<Token> outTokens = new LinkedList<>();
-        getMacros().disable(macro.name);
-        while (!replTokens.isEmpty()) {
-          Token c = replTokens.get(0);
-          PreprocessorAction action = PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
-          if (c.getType().equals(IDENTIFIER)) {
-            List<Token> rest = new ArrayList(replTokens);
-            rest.addAll(tokens.subList(tokensConsumed, tokens.size()));
-            action = handleIdentifiersAndKeywords(rest, c, filename);
-          }
-          if (action.equals(PreprocessorAction.NO_OPERATION)) { //@todo: deprecated PreprocessorAction
-            replTokens.remove(0);
-            outTokens.add(c);
-          } else {
-            outTokens.addAll(action.getTokensToInject());
-            int tokensConsumedRescanning = action.getNumberOfConsumedTokens();
-            if (tokensConsumedRescanning >= replTokens.size()) {
-              tokensConsumed += tokensConsumedRescanning - replTokens.size();
-              replTokens.clear();
-            } else {
-              replTokens.subList(0, tokensConsumedRescanning).clear();
-            }
-          }
-        }
-        replTokens = outTokens;
-        getMacros().enable(macro.name);
-
-        replTokens = reallocate(replTokens, curr);
+      if (replacement != null) {
+        input.push(replacement);
+        List<Token> replTokens = reallocate(rescan(input), curr);
+        int tokensConsumed = input.getConsumed();
 
         if (LOG.isTraceEnabled()) {
           LOG.trace("[{}:{}]: replacing '" + curr.getValue()
@@ -791,36 +1047,16 @@ public class CxxPreprocessor extends Preprocessor {
   }
 
   public String expandFunctionLikeMacro(String macroName, List<Token> restTokens) {
-    List<Token> expansion = new LinkedList<>();
-    expandFunctionLikeMacro(macroName, restTokens, expansion);
-    return serialize(expansion);
-  }
-
-  private int expandFunctionLikeMacro(String macroName, List<Token> restTokens, List<Token> expansion) {
-    List<Token> arguments = new ArrayList<>();
-    int tokensConsumedMatchingArgs = matchArguments(restTokens, arguments);
-
+    List<ExpansionToken> expansion = Collections.emptyList();
     Macro macro = getMacro(macroName);
-    if (macro != null && macro.checkArgumentsCount(arguments.size())) {
-      if (arguments.size() > macro.params.size()) {
-        //Group all arguments into the last one
-        List<Token> vaargs = arguments.subList(macro.params.size() - 1, arguments.size());
-        Token firstToken = vaargs.get(0);
-        arguments = arguments.subList(0, macro.params.size() - 1);
-        arguments.add(Token.builder()
-          .setLine(firstToken.getLine())
-          .setColumn(firstToken.getColumn())
-          .setURI(firstToken.getURI())
-          .setValueAndOriginalValue(serialize(vaargs, ","))
-          .setType(STRING)
-          .build());
+    if (macro != null) {
+      List<ExpansionToken> replacement = replace(macro, Collections.emptySet(),
+        new ExpansionInput(toCxxTokens(restTokens)));
+      if (replacement != null) {
+        expansion = rescan(replacement);
       }
-      List<Token> replTokens = replaceParams(macro.body, macro.params, arguments);
-      replTokens = evaluateHashhashOperators(replTokens);
-      expansion.addAll(expandMacro(macro.name, serialize(replTokens)));
     }
-
-    return tokensConsumedMatchingArgs;
+    return serialize(tokens(expansion));
   }
 
   public Boolean expandHasIncludeExpression(AstNode exprAst) {
@@ -829,16 +1065,200 @@ public class CxxPreprocessor extends Preprocessor {
     return findIncludedFile(exprAst, exprAst.getToken(), filePath) != null;
   }
 
-  private List<Token> expandMacro(String macroName, String macroExpression) {
-    // C++ standard 16.3.4/2 Macro Replacement - Rescanning and further replacement
-    List<Token> tokens = null;
-    getMacros().disable(macroName);
-    try {
-      tokens = stripEOF(CxxLexer.create(this).lex(macroExpression));
-    } finally {
-      getMacros().enable(macroName);
+  /**
+   * Replaces a macro invocation, the arguments of a function-like macro are read from the input.
+   *
+   * @param hideSet hide set of the macro name
+   * @return replacement list with the hide sets of the invocation, null if a function-like macro name is not followed
+   * by an argument list
+   */
+  @Nullable
+  private List<ExpansionToken> replace(Macro macro, Set<String> hideSet, ExpansionInput input) {
+    if (macro.params == null) {
+      return substitute(macro, Collections.emptyList(), union(hideSet, Collections.singleton(macro.name)));
+    }
+
+    List<List<ExpansionToken>> arguments = new ArrayList<>();
+    int tokensConsumedMatchingArgs = matchArguments(input, arguments);
+    if (tokensConsumedMatchingArgs == 0) {
+      return null;
+    }
+    Set<String> closingHideSet = input.peek(tokensConsumedMatchingArgs - 1).hideSet;
+    input.skip(tokensConsumedMatchingArgs);
+    if (!macro.checkArgumentsCount(arguments.size())) {
+      return Collections.emptyList();
+    }
+
+    if (arguments.size() > macro.params.size()) {
+      //Group all arguments into the last one
+      List<ExpansionToken> vaargs = new ArrayList<>();
+      for (List<ExpansionToken> argument : arguments.subList(macro.params.size() - 1, arguments.size())) {
+        if (!vaargs.isEmpty()) {
+          Token firstToken = argument.get(0).token;
+          vaargs.add(new ExpansionToken(Token.builder()
+            .setLine(firstToken.getLine())
+            .setColumn(firstToken.getColumn())
+            .setURI(firstToken.getURI())
+            .setValueAndOriginalValue(CxxPunctuator.COMMA.getValue())
+            .setType(CxxPunctuator.COMMA)
+            .setGeneratedCode(true)
+            .build()));
+        }
+        vaargs.addAll(argument);
+      }
+      arguments = new ArrayList<>(arguments.subList(0, macro.params.size() - 1));
+      arguments.add(vaargs);
+    }
+
+    // the hide set of the name and of the closing parenthesis, plus the macro itself
+    Set<String> replacementHideSet = new HashSet<>(intersection(hideSet, closingHideSet));
+    replacementHideSet.add(macro.name);
+    return substitute(macro, arguments, replacementHideSet);
+  }
+
+  /**
+   * Substitutes the parameters in the macro body and evaluates the ## operators. The result has the token types of
+   * the CxxLexer, every token carries the hide set of the invocation.
+   */
+  private List<ExpansionToken> substitute(Macro macro, List<List<ExpansionToken>> arguments, Set<String> hideSet) {
+    List<Token> body = macro.body == null ? Collections.emptyList() : macro.body;
+    List<Token> params = macro.params == null ? Collections.emptyList() : macro.params;
+    List<ExpansionToken> replacement = new ArrayList<>();
+    List<Token> cxxTokens = new ArrayList<>();
+    for (ExpansionToken token : evaluateHashhashOperators(replaceParams(body, params, arguments))) {
+      cxxTokens.clear();
+      addCxxTokens(token.token, cxxTokens);
+      Set<String> tokenHideSet = union(token.hideSet, hideSet);
+      for (Token cxxToken : cxxTokens) {
+        replacement.add(new ExpansionToken(cxxToken, tokenHideSet));
+      }
+    }
+    return replacement;
+  }
+
+  /**
+   * C++ standard 16.3.4 Rescanning and further replacement: replaces the macros in the pending tokens of the input
+   * until none is left. A token is not replaced by a macro of its hide set.
+   */
+  private List<ExpansionToken> rescan(ExpansionInput input) {
+    List<ExpansionToken> result = new ArrayList<>();
+    while (input.hasPending()) {
+      ExpansionToken token = input.next();
+      List<ExpansionToken> replacement = null;
+      if (!token.hideSet.contains(token.getValue())) {
+        Macro macro = getExpandableMacro(token.token);
+        if (macro != null) {
+          replacement = replace(macro, token.hideSet, input);
+        }
+      }
+      if (replacement == null) {
+        result.add(token);
+      } else {
+        input.push(replacement);
+      }
+    }
+    return result;
+  }
+
+  private List<ExpansionToken> rescan(List<ExpansionToken> tokens) {
+    ExpansionInput input = new ExpansionInput(Collections.emptyList());
+    input.push(tokens);
+    return rescan(input);
+  }
+
+  /**
+   * Expands all macros in a list of tokens which is not followed by further input, e.g. a directive.
+   */
+  private List<Token> expand(List<Token> tokens) {
+    List<ExpansionToken> expansionTokens = new ArrayList<>();
+    for (Token token : toCxxTokens(tokens)) {
+      expansionTokens.add(new ExpansionToken(token));
+    }
+    return tokens(rescan(expansionTokens));
+  }
+
+  @Nullable
+  private Macro getExpandableMacro(Token token) {
+    TokenType type = token.getType();
+    if (type.equals(STRING) || type.equals(NUMBER)) {
+      return null;
+    }
+    return getMacro(token.getValue());
+  }
+
+  private static Set<String> union(Set<String> a, Set<String> b) {
+    if (b.containsAll(a)) {
+      return b;
+    }
+    Set<String> result = new HashSet<>(b);
+    result.addAll(a);
+    return result;
+  }
+
+  private static Set<String> intersection(Set<String> a, Set<String> b) {
+    if (b.containsAll(a)) {
+      return a;
+    }
+    Set<String> result = new HashSet<>(a);
+    result.retainAll(b);
+    return result;
+  }
+
+  /**
+   * Gives tokens of a macro definition or directive (CppLexer) the types of the CxxLexer, whitespace is dropped.
+   * Tokens of the CxxLexer keep their type.
+   */
+  private List<Token> toCxxTokens(List<Token> tokens) {
+    List<Token> result = new ArrayList<>(tokens.size());
+    for (Token token : tokens) {
+      addCxxTokens(token, result);
+    }
+    return result;
+  }
+
+  private void addCxxTokens(Token token, List<Token> result) {
+    TokenType type = token.getType();
+    if (type.equals(WS) || type.equals(EOF)) {
+      return;
+    }
+    if (type.equals(IDENTIFIER) || type instanceof CppPunctuator || type.equals(UNKNOWN_CHAR)) {
+      TokenType cxxType = CXX_TOKEN_TYPES.get(token.getValue());
+      if (cxxType != null) {
+        result.add(Token.builder(token).setType(cxxType).build());
+        return;
+      }
+      if (type.equals(IDENTIFIER)) {
+        result.add(token);
+        return;
+      }
+    } else if (!(type instanceof CppKeyword)) {
+      result.add(token);
+      return;
+    }
+    // digraphs, a single '#' and directive keywords have no CxxLexer counterpart
+    result.addAll(lex(token.getValue(), token));
+  }
+
+  /**
+   * Lex the text of a pasted token with a plain CxxLexer, the tokens get the position of the given token. There are
+   * no directives inside of a replacement, so preprocessor tokens are dropped.
+   */
+  private List<Token> lex(String source, Token position) {
+    if (tokenLexer == null) {
+      tokenLexer = CxxLexer.create();
+    }
+    List<Token> result = new ArrayList<>();
+    for (Token token : tokenLexer.lex(source)) {
+      if (!token.getType().equals(EOF) && !token.getType().equals(PREPROCESSOR)) {
+        result.add(Token.builder(token)
+          .setLine(position.getLine())
+          .setColumn(position.getColumn())
+          .setURI(position.getURI())
+          .setGeneratedCode(true)
+          .build());
+      }
     }
-    return tokens;
+    return result;
   }
 
   private static List<Token> stripEOF(List<Token> tokens) {
@@ -861,219 +1281,186 @@ public class CxxPreprocessor extends Preprocessor {
     return js.toString();
   }
 
-  private static int matchArguments(List<Token> tokens, List<Token> arguments) {
-    List<Token> rest = new ArrayList<>(tokens);
-    try {
-      rest = match(rest, "(");
-    } catch (MismatchException me) {
-      return 0;
+  private static List<Token> tokens(List<ExpansionToken> tokens) {
+    List<Token> result = new ArrayList<>(tokens.size());
+    for (ExpansionToken token : tokens) {
+      result.add(token.token);
     }
-
-    try {
-      do {
-        rest = matchArgument(rest, arguments);
-        try {
-          rest = match(rest, ",");
-        } catch (MismatchException me) {
-          break;
-        }
-      } while (true);
-    } catch (MismatchException me) {
-    }
-    try {
-      rest = match(rest, ")");
-    } catch (MismatchException me) {
-      LOG.error("MismatchException : '{}' rest: '{}'", me.getMessage(), rest);
-      return 0;
-    }
-    return tokens.size() - rest.size();
+    return result;
   }
 
-  private static List<Token> match(List<Token> tokens, String str) throws MismatchException {
-    if (!tokens.get(0).getValue().equals(str)) {
-      throw new MismatchException("Mismatch: expected '" + str + "' got: '"
-        + tokens.get(0).getValue() + "'" + " [" + tokens.get(0).getURI() + "("
-        + tokens.get(0).getLine() + "," + tokens.get(0).getColumn() + ")]");
+  /**
+   * Matches the argument list of a function-like macro invocation at the front of the input without consuming it.
+   * Empty arguments are skipped.
+   *
+   * @return number of tokens of the argument list including the parentheses, 0 if there is no complete list
+   */
+  private static int matchArguments(ExpansionInput input, List<List<ExpansionToken>> arguments) {
+    ExpansionToken token = input.peek(0);
+    if (token == null || !"(".equals(token.getValue())) {
+      return 0;
     }
-    return tokens.subList(1, tokens.size());
-  }
 
-  private static List<Token> matchArgument(List<Token> tokens, List<Token> arguments) throws MismatchException {
     int nestingLevel = 0;
-    int tokensConsumed = 0;
-    int noTokens = tokens.size();
-    Token firstToken = tokens.get(0);
-    Token currToken = firstToken;
-    String curr = currToken.getValue();
-    List<Token> matchedTokens = new LinkedList<>();
-
-    while (true) {
+    List<ExpansionToken> argument = new ArrayList<>();
+    for (int offset = 1; (token = input.peek(offset)) != null; offset++) {
+      String curr = token.getValue();
       if (nestingLevel == 0 && (",".equals(curr) || ")".equals(curr))) {
-        if (tokensConsumed > 0) {
-          arguments.add(Token.builder()
-            .setLine(firstToken.getLine())
-            .setColumn(firstToken.getColumn())
-            .setURI(firstToken.getURI())
-            .setValueAndOriginalValue(serialize(matchedTokens).trim())
-            .setType(STRING)
-            .build());
+        if (!argument.isEmpty()) {
+          arguments.add(argument);
+          argument = new ArrayList<>();
         }
-        return tokens.subList(tokensConsumed, noTokens);
-      }
-
-      if ("(".equals(curr)) {
-        nestingLevel++;
-      } else if (")".equals(curr)) {
-        nestingLevel--;
-      }
-
-      tokensConsumed++;
-      if (tokensConsumed == noTokens) {
-        throw new MismatchException("reached the end of the stream while matching a macro argument");
+        if (")".equals(curr)) {
+          return offset + 1;
+        }
+      } else {
+        if ("(".equals(curr)) {
+          nestingLevel++;
+        } else if (")".equals(curr)) {
+          nestingLevel--;
+        }
+        argument.add(token);
       }
-
-      matchedTokens.add(currToken);
-      currToken = tokens.get(tokensConsumed);
-      curr = currToken.getValue();
     }
+
+    LOG.error("reached the end of the stream while matching a macro argument [{}({},{})]",
+      input.peek(0).token.getURI(), input.peek(0).token.getLine(), input.peek(0).token.getColumn());
+    arguments.clear();
+    return 0;
   }
 
-  private List<Token> replaceParams(List<Token> body, List<Token> parameters, List<Token> arguments) {
+  private List<ExpansionToken> replaceParams(List<Token> body, List<Token> parameters,
+    List<List<ExpansionToken>> arguments) {
     // Replace all parameters by according arguments
     // "Stringify" the argument if the according parameter is preceded by an #
 
-    List<Token> newTokens = new ArrayList<>();
+    List<ExpansionToken> newTokens = new ArrayList<>();
     if (!body.isEmpty()) {
       List<String> defParamValues = new ArrayList<>();
       for (Token t : parameters) {
         defParamValues.add(t.getValue());
       }
-
-      boolean tokenPastingLeftOp = false;
-      boolean tokenPastingRightOp = false;
+      List<List<ExpansionToken>> expandedArguments = new ArrayList<>(Collections.nCopies(arguments.size(), null));
 
       for (int i = 0; i < body.size(); ++i) {
         Token curr = body.get(i);
         int index = defParamValues.indexOf(curr.getValue());
         if (index == -1) {
-          if (tokenPastingRightOp && !curr.getType().equals(WS) && !curr.getType().equals(HASHHASH)) {
-            tokenPastingRightOp = false;
-          }
-          newTokens.add(curr);
-        } else if (index == arguments.size()) {
+          newTokens.add(new ExpansionToken(curr));
+          continue;
+        }
+
+        List<ExpansionToken> argument = index < arguments.size() ? arguments.get(index) : null;
+        int pred = skipWhitespace(body, i, -1);
+        if (pred >= 0 && "#".equals(body.get(pred).getValue())) {
+          // If the token is a macro, the macro is not expanded - the macro
+          // name is converted into a string.
+          removeLast(newTokens, "#");
+          String value = argument == null ? "" : serialize(tokens(argument));
+          newTokens.add(new ExpansionToken(Token.builder()
+            .setLine(curr.getLine())
+            .setColumn(curr.getColumn())
+            .setURI(curr.getURI())
+            .setValueAndOriginalValue(encloseWithQuotes(quote(value)))
+            .setType(STRING)
+            .setGeneratedCode(true)
+            .build()));
+        } else if (argument == null) {
           // EXTENSION: GCC's special meaning of token paste operator
           // If variable argument is left out then the comma before the paste
           // operator will be deleted
-          int j = i;
-          while (j > 0 && body.get(j - 1).getType().equals(WS)) {
-            j--;
-          }
-          if (j > 0 && "##".equals(body.get(j - 1).getValue())) {
-            int k = --j;
-            while (j > 0 && body.get(j - 1).getType().equals(WS)) {
-              j--;
-            }
-            if (j > 0 && ",".equals(body.get(j - 1).getValue())) {
-              newTokens.remove(newTokens.size() - 1 + j - i); // remove the comma
-              newTokens.remove(newTokens.size() - 1 + k - i); // remove the paste operator
+          if (!removeLast(newTokens, ",")) {
+            int hashhash = lastNonWhitespace(newTokens, newTokens.size());
+            if (hashhash >= 0 && "##".equals(newTokens.get(hashhash).getValue())) {
+              int comma = lastNonWhitespace(newTokens, hashhash);
+              if (comma >= 0 && ",".equals(newTokens.get(comma).getValue())) {
+                newTokens.remove(hashhash);
+                newTokens.remove(comma);
+              }
             }
-          } else if (j > 0 && ",".equals(body.get(j - 1).getValue())) {
-            // Got empty variadic args, remove comma
-            newTokens.remove(newTokens.size() - 1 + j - i);
-          }
-        } else if (index < arguments.size()) {
-          // token pasting operator?
-          int j = i + 1;
-          while (j < body.size() && body.get(j).getType().equals(WS)) {
-            j++;
-          }
-          if (j < body.size() && "##".equals(body.get(j).getValue())) {
-            tokenPastingLeftOp = true;
           }
+        } else if ((pred >= 0 && "##".equals(body.get(pred).getValue()))
+          || "##".equals(valueAt(body, skipWhitespace(body, i, 1)))) {
           // in case of token pasting operator do not fully expand
-          Token replacement = arguments.get(index);
-          String newValue;
-          if (tokenPastingLeftOp) {
-            newValue = replacement.getValue();
-            tokenPastingLeftOp = false;
-            tokenPastingRightOp = true;
-          } else if (tokenPastingRightOp) {
-            newValue = replacement.getValue();
-            tokenPastingLeftOp = false;
-            tokenPastingRightOp = false;
-          } else {
-            if (i > 0 && "#".equals(body.get(i - 1).getValue())) {
-              // If the token is a macro, the macro is not expanded - the macro
-              // name is converted into a string.
-              newTokens.remove(newTokens.size() - 1);
-              newValue = encloseWithQuotes(quote(replacement.getValue()));
-            } else {
-              // otherwise the arguments have to be fully expanded before
-              // expanding the body of the macro
-              newValue = serialize(expandMacro("", replacement.getValue()));
-            }
+          newTokens.addAll(argument);
+        } else {
+          // otherwise the arguments have to be fully expanded before
+          // expanding the body of the macro
+          List<ExpansionToken> expanded = expandedArguments.get(index);
+          if (expanded == null) {
+            expanded = rescan(argument);
+            expandedArguments.set(index, expanded);
           }
-
-          if (newValue.isEmpty() && VARIADICPARAMETER.equals(curr.getValue())) {
+          if (expanded.isEmpty() && VARIADICPARAMETER.equals(curr.getValue())) {
             // the Visual C++ implementation will suppress a trailing comma
             // if no arguments are passed to the ellipsis
-            for (int n = newTokens.size() - 1; n != 0; n = newTokens.size() - 1) {
-              if (newTokens.get(n).getType().equals(WS)) {
-                newTokens.remove(n);
-              } else if (newTokens.get(n).getType().equals(COMMA)) {
-                newTokens.remove(n);
-                break;
-              } else {
-                break;
-              }
-            }
+            removeLast(newTokens, ",");
           } else {
-            newTokens.add(Token.builder().setLine(replacement.getLine()).setColumn(replacement.getColumn())
-              .setURI(replacement.getURI()).setValueAndOriginalValue(newValue).setType(replacement.getType())
-              .setGeneratedCode(true).build());
+            newTokens.addAll(expanded);
           }
         }
       }
     }
 
-    // replace # with "" if sequence HASH BR occurs for body HASH __VA_ARGS__    
-    if (newTokens.size() > 3 && newTokens.get(newTokens.size() - 2).getType().equals(HASH)
-      && newTokens.get(newTokens.size() - 1).getType().equals(BR_RIGHT)) {
-      for (int n = newTokens.size() - 2; n != 0; n--) {
-        if (newTokens.get(n).getType().equals(WS)) {
-          newTokens.remove(n);
-        } else if (newTokens.get(n).getType().equals(HASH)) {
-          newTokens.remove(n);
-          newTokens.add(n, Token.builder().setLine(newTokens.get(n).getLine()).setColumn(newTokens.get(n).getColumn())
-            .setURI(newTokens.get(n).getURI()).setValueAndOriginalValue("\"\"").setType(STRING)
-            .setGeneratedCode(true).build());
-          break;
-        } else {
-          break;
-        }
+    return newTokens;
+  }
+
+  /**
+   * @return index of the next token which is no whitespace in the given direction, -1 if there is none
+   */
+  private static int skipWhitespace(List<Token> tokens, int index, int direction) {
+    for (int i = index + direction; i >= 0 && i < tokens.size(); i += direction) {
+      if (!tokens.get(i).getType().equals(WS)) {
+        return i;
       }
     }
-    return newTokens;
+    return -1;
+  }
+
+  /**
+   * @return index of the last token before end which is no whitespace, -1 if there is none
+   */
+  private static int lastNonWhitespace(List<ExpansionToken> tokens, int end) {
+    for (int i = end - 1; i >= 0; i--) {
+      if (!tokens.get(i).token.getType().equals(WS)) {
+        return i;
+      }
+    }
+    return -1;
   }
 
-  private static List<Token> evaluateHashhashOperators(List<Token> tokens) {
-    List<Token> newTokens = new ArrayList<>();
+  @Nullable
+  private static String valueAt(List<Token> tokens, int index) {
+    return index == -1 ? null : tokens.get(index).getValue();
+  }
 
-    Iterator<Token> it = tokens.iterator();
+  /**
+   * Removes the last token which is no whitespace (and the whitespace after it) if it has the given value.
+   */
+  private static boolean removeLast(List<ExpansionToken> tokens, String value) {
+    int index = lastNonWhitespace(tokens, tokens.size());
+    if (index >= 0 && value.equals(tokens.get(index).getValue())) {
+      tokens.subList(index, tokens.size()).clear();
+      return true;
+    }
+    return false;
+  }
+
+  private List<ExpansionToken> evaluateHashhashOperators(List<ExpansionToken> tokens) {
+    List<ExpansionToken> newTokens = new ArrayList<>();
+
+    Iterator<ExpansionToken> it = tokens.iterator();
     while (it.hasNext()) {
-      Token curr = it.next();
+      ExpansionToken curr = it.next();
       if ("##".equals(curr.getValue())) {
-        Token pred = predConcatToken(newTokens);
-        Token succ = succConcatToken(it);
+        ExpansionToken pred = predConcatToken(newTokens);
+        ExpansionToken succ = succConcatToken(it);
         if (pred != null && succ != null) {
-          newTokens.add(Token.builder()
-            .setLine(pred.getLine())
-            .setColumn(pred.getColumn())
-            .setURI(pred.getURI())
-            .setValueAndOriginalValue(pred.getValue() + succ.getValue())
-            .setType(pred.getType())
-            .setGeneratedCode(true)
-            .build());
+          // the pasted spelling is lexed again, the result keeps the hide set both operands have in common
+          Set<String> hideSet = intersection(pred.hideSet, succ.hideSet);
+          for (Token token : lex(pred.getValue() + succ.getValue(), pred.token)) {
+            newTokens.add(new ExpansionToken(token, hideSet));
+          }
         } else {
           LOG.error("Missing data : succ ='{}' or pred = '{}'", succ, pred);
         }
@@ -1086,24 +1473,23 @@ public class CxxPreprocessor extends Preprocessor {
   }
 
   @Nullable
-  private static Token predConcatToken(List<Token> tokens) {
+  private static ExpansionToken predConcatToken(List<ExpansionToken> tokens) {
     while (!tokens.isEmpty()) {
-      Token last = tokens.remove(tokens.size() - 1);
-      if (!last.getType().equals(WS)) {
+      ExpansionToken last = tokens.remove(tokens.size() - 1);
+      if (!last.token.getType().equals(WS)) {
         if (!tokens.isEmpty()) {
-          Token pred = tokens.get(tokens.size() - 1);
-          if (!pred.getType().equals(WS) && !pred.hasTrivia()) {
+          Token pred = tokens.get(tokens.size() - 1).token;
+          if (isAdjacent(pred, last.token)) {
             // Needed to paste tokens 0 and x back together after #define N(hex) 0x ## hex
-            tokens.remove(tokens.size() - 1);
-            String replacement = pred.getValue() + last.getValue();
-            last = Token.builder()
+            Set<String> hideSet = intersection(tokens.remove(tokens.size() - 1).hideSet, last.hideSet);
+            last = new ExpansionToken(Token.builder()
               .setLine(pred.getLine())
               .setColumn(pred.getColumn())
               .setURI(pred.getURI())
-              .setValueAndOriginalValue(replacement)
+              .setValueAndOriginalValue(pred.getValue() + last.getValue())
               .setType(pred.getType())
               .setGeneratedCode(true)
-              .build();
+              .build(), hideSet);
           }
         }
         return last;
@@ -1112,12 +1498,23 @@ public class CxxPreprocessor extends Preprocessor {
     return null;
   }
 
+  /**
+   * Tokens of the same definition or source line without anything in between.
+   */
+  private static boolean isAdjacent(Token pred, Token succ) {
+    return !pred.getType().equals(WS) && !pred.hasTrivia() && !succ.hasTrivia()
+      && !pred.isGeneratedCode() && !succ.isGeneratedCode()
+      && pred.getLine() == succ.getLine()
+      && pred.getColumn() + pred.getValue().length() == succ.getColumn()
+      && Objects.equals(pred.getURI(), succ.getURI());
+  }
+
   @Nullable
-  private static Token succConcatToken(Iterator<Token> it) {
-    Token succ = null;
+  private static ExpansionToken succConcatToken(Iterator<ExpansionToken> it) {
+    ExpansionToken succ = null;
     while (it.hasNext()) {
       succ = it.next();
-      if (!"##".equals(succ.getValue()) && !succ.getType().equals(WS)) {
+      if (!"##".equals(succ.getValue()) && !succ.token.getType().equals(WS)) {
         break;
       }
     }
@@ -1172,10 +1569,11 @@ public class CxxPreprocessor extends Preprocessor {
     return "\"" + str + "\"";
   }
 
-  private static List<Token> reallocate(List<Token> tokens, Token token) {
-    List<Token> reallocated = new LinkedList<>();
+  private static List<Token> reallocate(List<ExpansionToken> tokens, Token token) {
+    List<Token> reallocated = new ArrayList<>(tokens.size());
     int currColumn = token.getColumn();
-    for (Token t : tokens) {
+    for (ExpansionToken expansionToken : tokens) {
+      Token t = expansionToken.token;
       reallocated.add(Token.builder()
         .setLine(token.getLine())
         .setColumn(currColumn)
@@ -1260,7 +1658,7 @@ public class CxxPreprocessor extends Preprocessor {
     } else if ((node = ast.getFirstDescendant(CppGrammar.includeBodyFreeform)) != null) {
       // expand and recurse
       String includeBody = serialize(stripEOF(node.getTokens()), "");
-      String expandedIncludeBody = serialize(stripEOF(CxxLexer.create(this).lex(includeBody)), "");
+      String expandedIncludeBody = serialize(expand(stripEOF(node.getTokens())), "");
       if (LOG.isTraceEnabled()) {
         LOG.trace("Include resolve macros: includeBody '{}' - expandedIncludeBody: '{}'",
           includeBody, expandedIncludeBody);
@@ -0,0 +1,181 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Index used to resolve include files without probing the file system for every include directive and include root.
+ *
+ * The content of each directory is listed once, on first use, and looked up in memory afterwards. On top of that the
+ * index keeps one table of resolved includes per list of include roots: translation units with the same include roots
+ * share the results. Only the final candidate of a lookup is checked with {@link File#isFile()}.
+ *
+ * Files created during the analysis are not seen, the modification time of a file is read once. The index is thread-safe, one instance is shared by all
+ * preprocessors created for the same {@code CxxConfiguration}.
+ */
+public class IncludeIndex {
+
+  private static final boolean CASE_INSENSITIVE = new File("a").equals(new File("A"));
+  private static final Pattern SEPARATORS = Pattern.compile(File.separatorChar == '\\' ? "[/\\\\]" : "/");
+  private static final Map<String, String> EMPTY = Collections.emptyMap();
+
+  private final ConcurrentMap<String, Map<String, String>> directories = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Optional<File>> canonicalRoots = new ConcurrentHashMap<>();
+  private final ConcurrentMap<List<File>, ConcurrentMap<Key, Optional<File>>> resolved = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Long> lastModified = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @return canonical form of an include root, null if it is not a directory
+   */
+  @CheckForNull
+  File getIncludeRoot(File includeRoot) {
+    return canonicalRoots.computeIfAbsent(includeRoot.getAbsolutePath(), path -> {
+      File root = new File(path);
+      try {
+        root = root.getCanonicalFile();
+      } catch (IOException e) {
+        // keep the absolute path, isDirectory() decides
+      }
+      return Optional.ofNullable(root.isDirectory() ? root : null);
+    }).orElse(null);
+  }
+
+  /**
+   * @return table of resolved includes shared by all providers with these include roots
+   */
+  ConcurrentMap<Key, Optional<File>> getResolvedIncludes(List<File> includeRoots) {
+    return resolved.computeIfAbsent(new ArrayList<>(includeRoots), roots -> new ConcurrentHashMap<>());
+  }
+
+  /**
+   * Checks if the relative path names an existing file in the directory, using the cached directory listings.
+   */
+  boolean isFile(File directory, String relativePath) {
+    File current = directory;
+    for (String part : SEPARATORS.split(relativePath)) {
+      if (part.isEmpty() || ".".equals(part)) {
+        continue;
+      }
+      if ("..".equals(part)) {
+        // the listing can't follow a parent reference through symbolic links
+        return new File(directory, relativePath).isFile();
+      }
+      String name = list(current).get(normalize(part));
+      if (name == null) {
+        return false;
+      }
+      current = new File(current, name);
+    }
+    return !current.equals(directory) && current.isFile();
+  }
+
+  /**
+   * @return modification time of the file when it was asked for the first time
+   */
+  long lastModified(File file) {
+    return lastModified.computeIfAbsent(file.getPath(), path -> new File(path).lastModified());
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public int getListedDirectories() {
+    return directories.size();
+  }
+
+  void countLookup(boolean hit) {
+    (hit ? hits : misses).incrementAndGet();
+  }
+
+  private Map<String, String> list(File directory) {
+    return directories.computeIfAbsent(directory.getPath(), path -> {
+      String[] names = new File(path).list();
+      if (names == null) {
+        return EMPTY;
+      }
+      Map<String, String> result = new HashMap<>(names.length * 2);
+      for (String name : names) {
+        result.put(normalize(name), name);
+      }
+      return result;
+    });
+  }
+
+  private static String normalize(String name) {
+    return CASE_INSENSITIVE ? name.toLowerCase(Locale.ROOT) : name;
+  }
+
+  /**
+   * Key of a resolved include: spelled name, quoted or angled form and (quoted form only) the including directory.
+   */
+  static final class Key {
+
+    private final String filename;
+    private final String cwd;
+    private final boolean quoted;
+
+    Key(String filename, @Nullable String cwd, boolean quoted) {
+      this.filename = filename;
+      this.cwd = quoted ? cwd : null;
+      this.quoted = quoted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return quoted == that.quoted && filename.equals(that.filename) && Objects.equals(cwd, that.cwd);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(filename, cwd, quoted);
+    }
+  }
+
+}
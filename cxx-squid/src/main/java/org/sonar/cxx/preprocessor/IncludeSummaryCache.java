@@ -0,0 +1,282 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.function.UnaryOperator;
+import javax.annotation.Nullable;
+
+/**
+ * Cache for the net effect of preprocessing an included file.
+ *
+ * Processing a header only depends on its content, the macros defined so far, the set of files already analysed in
+ * the translation unit and the include roots. If a later translation unit includes the same header in the same
+ * state, the recorded effect (defines, undefs, nested includes, missing includes) is replayed instead of lexing the
+ * header again.
+ */
+final class IncludeSummaryCache {
+
+  static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+  enum Kind {
+    DEFINE, UNDEF, ANALYSED, INCLUDE, MISSING_INCLUDE
+  }
+
+  /**
+   * One recorded side effect of processing an included file.
+   */
+  static final class Action {
+
+    private final Kind kind;
+    private final String name;
+    private final Object value;
+
+    Action(Kind kind, String name, @Nullable Object value) {
+      this.kind = kind;
+      this.name = name;
+      this.value = value;
+    }
+
+    Kind getKind() {
+      return kind;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    @Nullable
+    Object getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * State in which an included file was processed.
+   *
+   * The fingerprints are only used for hashing and to rule out different states quickly: two keys are equal if the
+   * macros, the analysed files and the include roots are equal. The analysed files are a persistent map, so a stored
+   * key shares them with the state it was taken from; the macros and include roots of stored keys are shared between
+   * all keys of the same state, see {@link IncludeSummaryCache#snapshot(Key)}.
+   */
+  static final class Key {
+
+    private final String path;
+    private final long lastModified;
+    private final Macros macros;
+    private final PersistentMap<File, ?> analysedFiles;
+    private final long analysedFilesFingerprint;
+    private final List<File> includeRoots;
+
+    /**
+     * Creates the key of the current state. The key refers to the given macros and include roots: use it for lookups
+     * only and store a {@link IncludeSummaryCache#snapshot(Key)}.
+     */
+    Key(File file, long lastModified, MapChain<?, ?> macros, PersistentMap<File, ?> analysedFiles,
+      long analysedFilesFingerprint, List<File> includeRoots) {
+      this(file.getPath(), lastModified, new Macros(macros), analysedFiles, analysedFilesFingerprint, includeRoots);
+    }
+
+    private Key(String path, long lastModified, Macros macros, PersistentMap<File, ?> analysedFiles,
+      long analysedFilesFingerprint, List<File> includeRoots) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.macros = macros;
+      this.analysedFiles = analysedFiles;
+      this.analysedFilesFingerprint = analysedFilesFingerprint;
+      this.includeRoots = includeRoots;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return lastModified == that.lastModified
+        && analysedFilesFingerprint == that.analysedFilesFingerprint
+        && path.equals(that.path)
+        && includeRoots.equals(that.includeRoots)
+        && analysedFiles.contentEquals(that.analysedFiles)
+        && macros.equals(that.macros);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, lastModified, macros.fingerprint, analysedFilesFingerprint);
+    }
+  }
+
+  /**
+   * Macros of a key, compared by content.
+   */
+  private static final class Macros {
+
+    private final MapChain<?, ?> chain;
+    private final long fingerprint;
+    private final boolean highPrio;
+
+    Macros(MapChain<?, ?> chain) {
+      this.chain = chain;
+      this.fingerprint = chain.getFingerprint();
+      this.highPrio = chain.isHighPrio();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Macros that = (Macros) o;
+      return fingerprint == that.fingerprint
+        && highPrio == that.highPrio
+        && (chain == that.chain || chain.hasSameContent(that.chain));
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(fingerprint);
+    }
+  }
+
+  /**
+   * Pool of equal objects, so equal parts of the stored keys exist only once. The pool holds its objects weakly: they
+   * are collected together with the last evicted key referring to them.
+   */
+  private static final class Interner<T> {
+
+    private final Map<T, WeakReference<T>> pool = new WeakHashMap<>();
+
+    /**
+     * @param value to look up, not stored
+     * @param copy creates the object to store if there is no equal one yet
+     * @return pooled object equal to the value
+     */
+    T intern(T value, UnaryOperator<T> copy) {
+      WeakReference<T> reference = pool.get(value);
+      T pooled = reference == null ? null : reference.get();
+      if (pooled == null) {
+        pooled = copy.apply(value);
+        pool.put(pooled, new WeakReference<>(pooled));
+      }
+      return pooled;
+    }
+  }
+
+  private final Map<Key, List<Action>> summaries;
+  private final Interner<Macros> macroPool = new Interner<>();
+  private final Interner<List<File>> includeRootPool = new Interner<>();
+  private final Deque<List<Action>> recording = new LinkedList<>();
+  private long hits;
+  private long misses;
+
+  IncludeSummaryCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  IncludeSummaryCache(final int maxEntries) {
+    this.summaries = new LinkedHashMap<Key, List<Action>>(16, 0.75f, true) {
+      private static final long serialVersionUID = 4200217498338446406L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, List<Action>> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @return recorded actions or null if the file wasn't processed in this state yet
+   */
+  @Nullable
+  List<Action> get(Key key) {
+    List<Action> actions = summaries.get(key);
+    if (actions == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return actions;
+  }
+
+  /**
+   * The analysed files are immutable and kept, the macros and include roots are shared with earlier snapshots of the
+   * same state or copied.
+   *
+   * @param key of the current state
+   * @return key not affected by later changes of the state
+   */
+  Key snapshot(Key key) {
+    return new Key(key.path, key.lastModified, macroPool.intern(key.macros, m -> new Macros(m.chain.fork())),
+      key.analysedFiles, key.analysedFilesFingerprint, includeRootPool.intern(key.includeRoots, ArrayList::new));
+  }
+
+  /**
+   * Start recording the side effects of an included file.
+   */
+  void begin() {
+    recording.push(new ArrayList<>());
+  }
+
+  /**
+   * Record a side effect for all files currently being processed.
+   */
+  void record(Kind kind, String name, @Nullable Object value) {
+    if (!recording.isEmpty()) {
+      recording.peek().add(new Action(kind, name, value));
+    }
+  }
+
+  /**
+   * Stop recording the included file and store its summary. The effects are part of the including file as well.
+   *
+   * @param key snapshot of the state before the file was processed
+   */
+  void end(Key key) {
+    List<Action> actions = recording.pop();
+    summaries.put(key, actions);
+    if (!recording.isEmpty()) {
+      recording.peek().addAll(actions);
+    }
+  }
+
+  long getHits() {
+    return hits;
+  }
+
+  long getMisses() {
+    return misses;
+  }
+}
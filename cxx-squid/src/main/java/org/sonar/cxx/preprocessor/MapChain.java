@@ -19,23 +19,53 @@
  */
 package org.sonar.cxx.preprocessor;
 
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * MapChain
  *
+ * Two levels of mappings (high priority mappings win) stored in persistent maps, so {@link #fork()} is O(1) and the
+ * fork shares the content with its origin. Disabling an entry only adds its key to a hide set, the maps are not
+ * changed.
+ *
  * @param <K>
  * @param <V>
  *
  */
 public class MapChain<K, V> {
 
-  private final Map<K, V> highPrioMap = new HashMap<>();
-  private final Map<K, V> lowPrioMap = new HashMap<>();
-  private final Map<K, V> highPrioDisabled = new HashMap<>();
-  private final Map<K, V> lowPrioDisabled = new HashMap<>();
+  private PersistentMap<K, V> highPrioMap;
+  private PersistentMap<K, V> lowPrioMap;
+  private final Set<K> hidden;
   private boolean isHighPrioEnabled;
+  private long highPrioFingerprint;
+  private long lowPrioFingerprint;
+
+  public MapChain() {
+    highPrioMap = PersistentMap.empty();
+    lowPrioMap = PersistentMap.empty();
+    hidden = new HashSet<>();
+  }
+
+  private MapChain(MapChain<K, V> other) {
+    highPrioMap = other.highPrioMap;
+    lowPrioMap = other.lowPrioMap;
+    hidden = new HashSet<>(other.hidden);
+    isHighPrioEnabled = other.isHighPrioEnabled;
+    highPrioFingerprint = other.highPrioFingerprint;
+    lowPrioFingerprint = other.lowPrioFingerprint;
+  }
+
+  /**
+   * Snapshot of the current state. Changes of the snapshot and of this chain are independent of each other.
+   *
+   * @return MapChain
+   */
+  public MapChain<K, V> fork() {
+    return new MapChain<>(this);
+  }
 
   /**
    * get
@@ -44,6 +74,9 @@ public class MapChain<K, V> {
    * @return V
    */
   public V get(Object key) {
+    if (!hidden.isEmpty() && hidden.contains(key)) {
+      return null;
+    }
     V value = highPrioMap.get(key);
     return value != null ? value : lowPrioMap.get(key);
   }
@@ -52,6 +85,33 @@ public class MapChain<K, V> {
     isHighPrioEnabled = value;
   }
 
+  public boolean isHighPrio() {
+    return isHighPrioEnabled;
+  }
+
+  /**
+   * Order independent hash of all (enabled and disabled) entries, maintained incrementally. Two chains with the same
+   * content have the same fingerprint, which allows to rule out a different macro state in O(1).
+   *
+   * @return fingerprint of the current content
+   */
+  public long getFingerprint() {
+    return highPrioFingerprint * 31 + lowPrioFingerprint;
+  }
+
+  /**
+   * Compares the entries of both priorities and the disabled keys. Use the fingerprints to rule out most chains first,
+   * a matching fingerprint does not prove the same content.
+   *
+   * @param other chain to compare with
+   * @return true if both chains have the same content
+   */
+  public boolean hasSameContent(MapChain<?, ?> other) {
+    return highPrioMap.contentEquals(other.highPrioMap)
+      && lowPrioMap.contentEquals(other.lowPrioMap)
+      && hidden.equals(other.hidden);
+  }
+
   /**
    * put
    *
@@ -61,9 +121,26 @@ public class MapChain<K, V> {
    */
   public V put(K key, V value) {
     if (isHighPrioEnabled) {
-      return highPrioMap.put(key, value);
+      V old = highPrioMap.get(key);
+      highPrioMap = highPrioMap.put(key, value);
+      highPrioFingerprint ^= entryHash(key, old) ^ entryHash(key, value);
+      return old;
     } else {
-      return lowPrioMap.put(key, value);
+      V old = lowPrioMap.get(key);
+      lowPrioMap = lowPrioMap.put(key, value);
+      lowPrioFingerprint ^= entryHash(key, old) ^ entryHash(key, value);
+      return old;
+    }
+  }
+
+  /**
+   * putAll
+   *
+   * @param entries copied into the map of the current priority
+   */
+  public void putAll(Map<? extends K, ? extends V> entries) {
+    for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+      put(entry.getKey(), entry.getValue());
     }
   }
 
@@ -74,14 +151,18 @@ public class MapChain<K, V> {
    * @return V
    */
   public V removeLowPrio(K key) {
-    return lowPrioMap.remove(key);
+    V old = lowPrioMap.get(key);
+    lowPrioMap = lowPrioMap.remove(key);
+    lowPrioFingerprint ^= entryHash(key, old);
+    return old;
   }
 
   /**
    * clearLowPrio
    */
   public void clearLowPrio() {
-    lowPrioMap.clear();
+    lowPrioMap = PersistentMap.empty();
+    lowPrioFingerprint = 0;
   }
 
   /**
@@ -90,8 +171,7 @@ public class MapChain<K, V> {
    * @param key
    */
   public void disable(K key) {
-    move(key, lowPrioMap, lowPrioDisabled);
-    move(key, highPrioMap, highPrioDisabled);
+    hidden.add(key);
   }
 
   /**
@@ -100,14 +180,17 @@ public class MapChain<K, V> {
    * @param key
    */
   public void enable(K key) {
-    move(key, lowPrioDisabled, lowPrioMap);
-    move(key, highPrioDisabled, highPrioMap);
+    hidden.remove(key);
   }
 
-  private void move(K key, Map<K, V> from, Map<K, V> to) {
-    V value = from.remove(key);
-    if (value != null) {
-      to.put(key, value);
+  private static long entryHash(Object key, Object value) {
+    if (value == null) {
+      return 0;
     }
+    // SplitMix64 finalizer, spreads key and value hash over all 64 bits
+    long h = ((long) key.hashCode() << 32) ^ (value.hashCode() & 0xffffffffL);
+    h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+    h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+    return h ^ (h >>> 31);
   }
 }
@@ -0,0 +1,393 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.util.Arrays;
+import javax.annotation.CheckForNull;
+
+/**
+ * Immutable hash map with structural sharing (hash array mapped trie).
+ *
+ * {@link #put(Object, Object)} and {@link #remove(Object)} return a new map and copy only the nodes on the path to the
+ * changed entry, so keeping an older version costs nothing. Keys and values must not be {@code null}.
+ *
+ * @param <K>
+ * @param <V>
+ */
+final class PersistentMap<K, V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(null, 0);
+
+  @CheckForNull
+  private final Node root;
+  private final int size;
+
+  private PersistentMap(@CheckForNull Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentMap<K, V> empty() {
+    return (PersistentMap<K, V>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  @CheckForNull
+  @SuppressWarnings("unchecked")
+  V get(Object key) {
+    return root == null ? null : (V) root.find(0, hash(key), key);
+  }
+
+  PersistentMap<K, V> put(K key, V value) {
+    int hash = hash(key);
+    if (root == null) {
+      return new PersistentMap<>(new BitmapNode(bit(hash, 0), new Object[]{key, value}), 1);
+    }
+    boolean[] added = new boolean[1];
+    Node newRoot = root.put(0, hash, key, value, added);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  PersistentMap<K, V> remove(Object key) {
+    if (root == null) {
+      return this;
+    }
+    Node newRoot = root.remove(0, hash(key), key);
+    if (newRoot == root) {
+      return this;
+    }
+    return newRoot == null ? empty() : new PersistentMap<>(newRoot, size - 1);
+  }
+
+  /**
+   * Compares the entries of both maps. Sub trees shared by both maps are skipped, comparing a map with a modified
+   * version of itself only visits the changed paths.
+   *
+   * @param other map to compare with
+   * @return true if both maps contain equal values for the same keys
+   */
+  boolean contentEquals(PersistentMap<?, ?> other) {
+    if (root == other.root) {
+      return true;
+    }
+    if (size != other.size || root == null || other.root == null) {
+      return false;
+    }
+    return root.isContainedIn(other.root, 0);
+  }
+
+  private static boolean isFound(Object key, Object value, Node node, int shift) {
+    Object found = node.find(shift, hash(key), key);
+    return found == value || (found != null && found.equals(value));
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private static Object[] replace(Object[] array, int index, Object value) {
+    Object[] copy = array.clone();
+    copy[index] = value;
+    return copy;
+  }
+
+  private static Object[] insertPair(Object[] array, int index, Object key, Object value) {
+    Object[] copy = new Object[array.length + 2];
+    System.arraycopy(array, 0, copy, 0, index);
+    copy[index] = key;
+    copy[index + 1] = value;
+    System.arraycopy(array, index, copy, index + 2, array.length - index);
+    return copy;
+  }
+
+  private static Object[] removePair(Object[] array, int index) {
+    Object[] copy = new Object[array.length - 2];
+    System.arraycopy(array, 0, copy, 0, index);
+    System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+    return copy;
+  }
+
+  private static Node createNode(int shift, Object key1, Object value1, int hash1, Object key2, Object value2,
+    int hash2) {
+    if (hash1 == hash2) {
+      return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+    }
+    int bit1 = bit(hash1, shift);
+    int bit2 = bit(hash2, shift);
+    if (bit1 == bit2) {
+      return new BitmapNode(bit1, new Object[]{null, createNode(shift + BITS, key1, value1, hash1, key2, value2,
+        hash2)});
+    }
+    if (Integer.compareUnsigned(bit1, bit2) < 0) {
+      return new BitmapNode(bit1 | bit2, new Object[]{key1, value1, key2, value2});
+    }
+    return new BitmapNode(bit1 | bit2, new Object[]{key2, value2, key1, value1});
+  }
+
+  private abstract static class Node {
+
+    @CheckForNull
+    abstract Object find(int shift, int hash, Object key);
+
+    /**
+     * @return this node if nothing changed
+     */
+    abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+    /**
+     * @return this node if nothing changed, {@code null} if the node became empty
+     */
+    @CheckForNull
+    abstract Node remove(int shift, int hash, Object key);
+
+    /**
+     * @return true if every entry of this node is found in the other node of the same level with an equal value
+     */
+    abstract boolean isContainedIn(Node other, int shift);
+
+    /**
+     * @return true if every entry of this node is found with an equal value by looking it up in the other node, which
+     * is a node of the given level
+     */
+    abstract boolean isFoundIn(Node other, int shift);
+  }
+
+  /**
+   * Up to 32 slots selected by 5 bits of the hash. A slot holds a key and its value, or {@code null} and a sub node.
+   */
+  private static final class BitmapNode extends Node {
+
+    private final int bitmap;
+    private final Object[] array;
+
+    BitmapNode(int bitmap, Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    private int index(int bit) {
+      return 2 * Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int idx = index(bit);
+      Object k = array[idx];
+      if (k == null) {
+        return ((Node) array[idx + 1]).find(shift + BITS, hash, key);
+      }
+      return key.equals(k) ? array[idx + 1] : null;
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+      int bit = bit(hash, shift);
+      int idx = index(bit);
+      if ((bitmap & bit) == 0) {
+        added[0] = true;
+        return new BitmapNode(bitmap | bit, insertPair(array, idx, key, value));
+      }
+      Object k = array[idx];
+      Object v = array[idx + 1];
+      if (k == null) {
+        Node sub = ((Node) v).put(shift + BITS, hash, key, value, added);
+        return sub == v ? this : new BitmapNode(bitmap, replace(array, idx + 1, sub));
+      }
+      if (key.equals(k)) {
+        return value == v ? this : new BitmapNode(bitmap, replace(array, idx + 1, value));
+      }
+      added[0] = true;
+      Node sub = createNode(shift + BITS, k, v, hash(k), key, value, hash);
+      Object[] copy = array.clone();
+      copy[idx] = null;
+      copy[idx + 1] = sub;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int idx = index(bit);
+      Object k = array[idx];
+      Object v = array[idx + 1];
+      if (k == null) {
+        Node sub = ((Node) v).remove(shift + BITS, hash, key);
+        if (sub == v) {
+          return this;
+        }
+        if (sub != null) {
+          return new BitmapNode(bitmap, replace(array, idx + 1, sub));
+        }
+      } else if (!key.equals(k)) {
+        return this;
+      }
+      return bitmap == bit ? null : new BitmapNode(bitmap ^ bit, removePair(array, idx));
+    }
+
+    @Override
+    boolean isContainedIn(Node other, int shift) {
+      if (this == other) {
+        return true;
+      }
+      for (int bits = bitmap; bits != 0; bits &= bits - 1) {
+        int bit = Integer.lowestOneBit(bits);
+        int idx = index(bit);
+        Object k = array[idx];
+        if (k != null) {
+          if (!isFound(k, array[idx + 1], other, shift)) {
+            return false;
+          }
+        } else {
+          Node sub = (Node) array[idx + 1];
+          Node otherSub = subNode(other, bit);
+          if (otherSub != null ? !sub.isContainedIn(otherSub, shift + BITS) : !sub.isFoundIn(other, shift)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    @Override
+    boolean isFoundIn(Node other, int shift) {
+      for (int i = 0; i < array.length; i += 2) {
+        Object k = array[i];
+        if (k != null ? !isFound(k, array[i + 1], other, shift) : !((Node) array[i + 1]).isFoundIn(other, shift)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return the sub node in the slot of the other node with the same bit, null if the slot holds no sub node
+     */
+    @CheckForNull
+    private static Node subNode(Node other, int bit) {
+      if (other instanceof BitmapNode) {
+        BitmapNode node = (BitmapNode) other;
+        if ((node.bitmap & bit) != 0) {
+          int idx = node.index(bit);
+          if (node.array[idx] == null) {
+            return (Node) node.array[idx + 1];
+          }
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Entries of keys with the same hash value.
+   */
+  private static final class CollisionNode extends Node {
+
+    private final int hash;
+    private final Object[] array;
+
+    CollisionNode(int hash, Object[] array) {
+      this.hash = hash;
+      this.array = array;
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      if (hash != this.hash) {
+        return null;
+      }
+      int idx = indexOf(key);
+      return idx < 0 ? null : array[idx + 1];
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+      if (hash != this.hash) {
+        return new BitmapNode(bit(this.hash, shift), new Object[]{null, this}).put(shift, hash, key, value, added);
+      }
+      int idx = indexOf(key);
+      if (idx >= 0) {
+        return array[idx + 1] == value ? this : new CollisionNode(hash, replace(array, idx + 1, value));
+      }
+      added[0] = true;
+      Object[] copy = Arrays.copyOf(array, array.length + 2);
+      copy[array.length] = key;
+      copy[array.length + 1] = value;
+      return new CollisionNode(hash, copy);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int idx = hash == this.hash ? indexOf(key) : -1;
+      if (idx < 0) {
+        return this;
+      }
+      return array.length == 2 ? null : new CollisionNode(hash, removePair(array, idx));
+    }
+
+    @Override
+    boolean isContainedIn(Node other, int shift) {
+      return this == other || isFoundIn(other, shift);
+    }
+
+    @Override
+    boolean isFoundIn(Node other, int shift) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (!isFound(array[i], array[i + 1], other, shift)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
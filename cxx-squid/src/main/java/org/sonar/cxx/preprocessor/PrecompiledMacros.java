@@ -0,0 +1,119 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import org.sonar.cxx.preprocessor.CxxPreprocessor.Macro;
+
+/**
+ * Macro sets which are the same for every translation unit: the configured defines and the standard definitions.
+ *
+ * The sets are parsed once and shared read-only by all preprocessors created for the same
+ * {@code CxxConfiguration}; a preprocessor copies them into its own macro table as the high priority base layer.
+ * The class is thread-safe.
+ */
+public class PrecompiledMacros {
+
+  private static final Map<String, Macro> STANDARD_MACROS = createMacros(StandardDefinitions.macros());
+  private static final Map<String, Macro> UNIT_STANDARD_MACROS = createMacros(unitStandardDefinitions());
+  private static final Map<String, Macro> COMPATIBILITY_MACROS
+    = createMacros(StandardDefinitions.compatibilityMacros());
+
+  private final ConcurrentMap<List<String>, Map<String, Macro>> defines = new ConcurrentHashMap<>();
+
+  /**
+   * Parsed macros of a list of define strings ({@code NAME body} or {@code NAME(args) body}).
+   *
+   * @param defineList configured defines
+   * @param parser used to parse each define the first time a list is requested
+   * @return read-only map of macro name to macro
+   */
+  Map<String, Macro> getDefines(List<String> defineList, Function<String, Macro> parser) {
+    return defines.computeIfAbsent(new ArrayList<>(defineList), (List<String> key) -> {
+      Map<String, Macro> macros = new HashMap<>();
+      for (String define : key) {
+        if (!"".equals(define)) {
+          Macro macro = parser.apply(define);
+          if (macro != null) {
+            macros.put(macro.getName(), macro);
+          }
+        }
+      }
+      return Collections.unmodifiableMap(macros);
+    });
+  }
+
+  /**
+   * @return standard predefined macros, used with global settings
+   */
+  static Map<String, Macro> getStandardMacros() {
+    return STANDARD_MACROS;
+  }
+
+  /**
+   * @return smaller set of predefined macros, used with compilation unit settings (the rest is provided by the unit)
+   */
+  static Map<String, Macro> getUnitStandardMacros() {
+    return UNIT_STANDARD_MACROS;
+  }
+
+  /**
+   * @return macros to replace C++ keywords when parsing C files
+   */
+  static Map<String, Macro> getCompatibilityMacros() {
+    return COMPATIBILITY_MACROS;
+  }
+
+  /**
+   * Create object-like macros from name/value pairs. The replacement text is split into tokens once, like the body of
+   * a #define line.
+   *
+   * @param definitions macro name to replacement text
+   * @return read-only map of macro name to macro
+   */
+  static Map<String, Macro> createMacros(Map<String, String> definitions) {
+    Lexer lexer = CppLexer.create();
+    Map<String, Macro> macros = new HashMap<>();
+    for (Map.Entry<String, String> entry : definitions.entrySet()) {
+      List<Token> body = new ArrayList<>(lexer.lex(entry.getValue()));
+      body.remove(body.size() - 1); // EOF
+      macros.put(entry.getKey(), new Macro(entry.getKey(), null, body, false));
+    }
+    return Collections.unmodifiableMap(macros);
+  }
+
+  private static Map<String, String> unitStandardDefinitions() {
+    Map<String, String> source = new HashMap<>();
+    source.put("__FILE__", "\"file\"");
+    source.put("__LINE__", "1");
+    source.put("__DATE__", "\"??? ?? ????\"");
+    source.put("__TIME__", "\"??:??:??\"");
+    return source;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Loads the content of source files and keeps the decoded content of the recently used files.
+ *
+ * Larger files are mapped into memory with a {@link FileChannel} and decoded directly into characters, small files are
+ * read into a heap buffer (mapping has a fixed cost). In both cases there is no intermediate byte array. The cache is
+ * bounded by the size of the decoded content and evicts the least recently used files first.
+ *
+ * The cache is thread-safe, one instance is shared by all preprocessors created for the same {@code CxxConfiguration}.
+ * Like the modification times in {@link IncludeIndex}, the content is read once per analysis: a lookup doesn't query
+ * the file system again.
+ */
+public class SourceCodeCache {
+
+  public static final int DEFAULT_MAX_SIZE_MB = 64;
+  private static final long MAPPING_THRESHOLD = 16 * 1024L;
+
+  private final long maxChars;
+  private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedChars;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long bytesMapped;
+  private long bytesRead;
+
+  public SourceCodeCache() {
+    this(DEFAULT_MAX_SIZE_MB);
+  }
+
+  /**
+   * @param maxSizeMB upper bound of the decoded content in MB, '0' disables caching
+   */
+  public SourceCodeCache(int maxSizeMB) {
+    // a char takes two bytes
+    this.maxChars = Math.max(0, maxSizeMB) * 1024L * 1024L / 2;
+  }
+
+  public String getSourceCode(File file, Charset charset) throws IOException {
+    Key key = new Key(file, charset);
+    synchronized (this) {
+      String content = entries.get(key);
+      if (content != null) {
+        hits++;
+        return content;
+      }
+      misses++;
+    }
+
+    String content = load(file, charset);
+    if (content.length() <= maxChars) {
+      synchronized (this) {
+        if (entries.put(key, content) == null) {
+          cachedChars += content.length();
+        }
+        evict();
+      }
+    }
+    return content;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return percentage of the requests served from the cache
+   */
+  public synchronized double getHitRate() {
+    long requests = hits + misses;
+    return requests == 0 ? 0.0 : hits * 100.0 / requests;
+  }
+
+  /**
+   * @return total number of bytes loaded through memory mapped regions
+   */
+  public synchronized long getBytesMapped() {
+    return bytesMapped;
+  }
+
+  /**
+   * @return total number of bytes loaded through heap buffers
+   */
+  public synchronized long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * @return current size of the decoded content in bytes
+   */
+  public synchronized long getCachedBytes() {
+    return cachedChars * 2;
+  }
+
+  private String load(File file, Charset charset) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File too large: " + file);
+      }
+
+      ByteBuffer buffer;
+      if (size >= MAPPING_THRESHOLD) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        synchronized (this) {
+          bytesMapped += size;
+        }
+      } else {
+        buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+          // read until the buffer is full or the end of the file is reached
+        }
+        buffer.flip();
+        synchronized (this) {
+          bytesRead += buffer.remaining();
+        }
+      }
+
+      // same replacement behavior as new String(bytes, charset)
+      return charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+        .decode(buffer)
+        .toString();
+    }
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Key, String>> iterator = entries.entrySet().iterator();
+    while (cachedChars > maxChars && iterator.hasNext()) {
+      cachedChars -= iterator.next().getValue().length();
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Files are identified by path and charset.
+   */
+  private static final class Key {
+
+    private final String path;
+    private final Charset charset;
+
+    Key(File file, Charset charset) {
+      this.path = file.getAbsolutePath();
+      this.charset = charset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return path.equals(that.path) && charset.equals(that.charset);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, charset);
+    }
+  }
+
+}
@@ -22,10 +22,11 @@ package org.sonar.cxx.preprocessor;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
@@ -37,8 +38,25 @@ import org.sonar.api.utils.log.Loggers;
 public class SourceCodeProvider {
 
   private final List<File> includeRoots = new LinkedList<>();
+  private final SourceCodeCache sourceCodeCache;
+  private final IncludeIndex includeIndex;
+  private ConcurrentMap<IncludeIndex.Key, Optional<File>> resolvedIncludes;
   private static final Logger LOG = Loggers.get(SourceCodeProvider.class);
 
+  public SourceCodeProvider() {
+    this(new SourceCodeCache(), new IncludeIndex());
+  }
+
+  /**
+   * @param sourceCodeCache loads the content of the source files, can be shared between providers
+   * @param includeIndex resolves the include files, can be shared between providers
+   */
+  public SourceCodeProvider(SourceCodeCache sourceCodeCache, IncludeIndex includeIndex) {
+    this.sourceCodeCache = sourceCodeCache;
+    this.includeIndex = includeIndex;
+    this.resolvedIncludes = includeIndex.getResolvedIncludes(this.includeRoots);
+  }
+
   public void setIncludeRoots(List<String> includeRoots, String baseDir) {
     for (String tmp : includeRoots) {
 
@@ -47,22 +65,43 @@ public class SourceCodeProvider {
         includeRoot = new File(baseDir, tmp);
       }
 
-      try {
-        includeRoot = includeRoot.getCanonicalFile();
-      } catch (java.io.IOException io) {
-        LOG.error("cannot get canonical form of: '{}'", includeRoot, io);
-      }
-
-      if (includeRoot.isDirectory()) {
-        LOG.debug("storing include root: '{}'", includeRoot);
-        this.includeRoots.add(includeRoot);
+      File canonicalRoot = includeIndex.getIncludeRoot(includeRoot);
+      if (canonicalRoot != null) {
+        LOG.debug("storing include root: '{}'", canonicalRoot);
+        this.includeRoots.add(canonicalRoot);
       } else {
         LOG.warn("the include root '{}' doesn't exist", includeRoot.getAbsolutePath());
       }
     }
+    resolvedIncludes = includeIndex.getResolvedIncludes(this.includeRoots);
+  }
+
+  /**
+   * @return the include roots, changed by {@link #setIncludeRoots(List, String)}
+   */
+  public List<File> getIncludeRoots() {
+    return Collections.unmodifiableList(includeRoots);
+  }
+
+  /**
+   * @return modification time of the file, read once per analysis
+   */
+  public long lastModified(File file) {
+    return includeIndex.lastModified(file);
   }
 
   public File getSourceCodeFile(String filename, String cwd, boolean quoted) {
+    IncludeIndex.Key key = new IncludeIndex.Key(filename, cwd, quoted);
+    Optional<File> result = resolvedIncludes.get(key);
+    includeIndex.countLookup(result != null);
+    if (result == null) {
+      result = Optional.ofNullable(resolveSourceCodeFile(filename, cwd, quoted));
+      resolvedIncludes.putIfAbsent(key, result);
+    }
+    return result.orElse(null);
+  }
+
+  private File resolveSourceCodeFile(String filename, String cwd, boolean quoted) {
     File result = null;
     File file = new File(filename);
 
@@ -82,7 +121,7 @@ public class SourceCodeProvider {
         // order in which they were opened. The search begins in the directory of the parent
         // include file and continues upward through the directories of any grandparent include files.
         File abspath = new File(new File(cwd), file.getPath());
-        if (abspath.isFile()) {
+        if (includeIndex.isFile(new File(cwd), file.getPath())) {
           result = abspath;
         } else {
           // fall back to use include paths instead of local folder
@@ -96,7 +135,7 @@ public class SourceCodeProvider {
       if (result == null) {
         for (File folder : includeRoots) {
           File abspath = new File(folder.getPath(), filename);
-          if (abspath.isFile()) {
+          if (includeIndex.isFile(folder, filename)) {
             result = abspath;
             break;
           }
@@ -116,7 +155,6 @@ public class SourceCodeProvider {
   }
 
   public String getSourceCode(File file, Charset charset) throws IOException {
-    byte[] encoded = Files.readAllBytes(Paths.get(file.getAbsolutePath()));
-    return new String(encoded, charset);
+    return sourceCodeCache.getSourceCode(file, charset);
   }
 }
@@ -25,4 +25,13 @@ public interface CxxCharsetAwareVisitor {
 
   void setCharset(Charset charset);
 
+  /**
+   * Content of the files under analysis shared by all visitors of a scanner. Visitors reading the source file should
+   * use it instead of reading the file themselves.
+   *
+   * @param cache shared file content
+   */
+  default void setFileContentCache(CxxFileContentCache cache) {
+  }
+
 }
@@ -0,0 +1,195 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decoded content of a source file together with an index of the line offsets.
+ *
+ * Lines are terminated by "\n", "\r\n" or "\r"; a terminator at the end of the file does not start an additional
+ * line (same as {@code com.google.common.io.Files#readLines}). Characters which cannot be decoded with the charset
+ * are replaced by U+FFFD, {@link #hasDecodingErrors()} tells whether this happened.
+ */
+public final class CxxFileContent {
+
+  private final File file;
+  private final Charset charset;
+  private final String content;
+  private final boolean decodingErrors;
+  private int[] lineStarts = new int[64];
+  private int[] lineEnds = new int[64];
+  private int lineCount;
+  private List<String> lines;
+
+  private CxxFileContent(File file, Charset charset, String content, boolean decodingErrors) {
+    this.file = file;
+    this.charset = charset;
+    this.content = content;
+    this.decodingErrors = decodingErrors;
+    indexLines();
+  }
+
+  /**
+   * Read and decode a file.
+   *
+   * @param file to read
+   * @param charset of the file
+   * @return content of the file
+   * @throws IOException if the file cannot be read
+   */
+  public static CxxFileContent read(File file, Charset charset) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    try {
+      String content = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT)
+        .decode(bytes).toString();
+      return new CxxFileContent(file, charset, content, false);
+    } catch (CharacterCodingException e) {
+      bytes.rewind();
+      String content = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+        .decode(bytes).toString();
+      return new CxxFileContent(file, charset, content, true);
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * @return complete content of the file
+   */
+  public CharSequence getContent() {
+    return content;
+  }
+
+  /**
+   * @return true if the file contains bytes which are not valid in the charset
+   */
+  public boolean hasDecodingErrors() {
+    return decodingErrors;
+  }
+
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @param index zero based line index
+   * @return offset of the first character of the line in {@link #getContent()}
+   */
+  public int getLineStart(int index) {
+    checkIndex(index);
+    return lineStarts[index];
+  }
+
+  /**
+   * @param index zero based line index
+   * @return offset after the last character of the line (without line terminator) in {@link #getContent()}
+   */
+  public int getLineEnd(int index) {
+    checkIndex(index);
+    return lineEnds[index];
+  }
+
+  /**
+   * @param index zero based line index
+   * @return text of the line without line terminator
+   */
+  public String getLine(int index) {
+    checkIndex(index);
+    return content.substring(lineStarts[index], lineEnds[index]);
+  }
+
+  /**
+   * @return read-only list view of the lines, line texts are created once and shared by all callers
+   */
+  public List<String> getLines() {
+    if (lines == null) {
+      String[] texts = new String[lineCount];
+      for (int i = 0; i < lineCount; i++) {
+        texts[i] = getLine(i);
+      }
+      lines = new AbstractList<String>() {
+        @Override
+        public String get(int index) {
+          return texts[index];
+        }
+
+        @Override
+        public int size() {
+          return texts.length;
+        }
+      };
+    }
+    return lines;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= lineCount) {
+      throw new IndexOutOfBoundsException("Line index " + index + ", line count " + lineCount);
+    }
+  }
+
+  private void indexLines() {
+    int length = content.length();
+    int start = 0;
+    for (int i = 0; i < length; i++) {
+      char c = content.charAt(i);
+      if (c == '\n' || c == '\r') {
+        addLine(start, i);
+        if (c == '\r' && i + 1 < length && content.charAt(i + 1) == '\n') {
+          i++;
+        }
+        start = i + 1;
+      }
+    }
+    if (start < length) {
+      addLine(start, length);
+    }
+  }
+
+  private void addLine(int start, int end) {
+    if (lineCount == lineStarts.length) {
+      lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+      lineEnds = Arrays.copyOf(lineEnds, lineCount * 2);
+    }
+    lineStarts[lineCount] = start;
+    lineEnds[lineCount] = end;
+    lineCount++;
+  }
+}
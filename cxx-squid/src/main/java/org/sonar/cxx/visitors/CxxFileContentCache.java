@@ -0,0 +1,66 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the content of the file under analysis, so text based checks share one read and decode of the file instead of
+ * reading it again each.
+ *
+ * Checks visit the files one after the other, so only the last file is kept. Not thread-safe: each scanner owns its
+ * own instance.
+ *
+ * The cache also holds the {@link CxxPatternGroup}s of the regular expression checks of the scanner.
+ */
+public class CxxFileContentCache {
+
+  private CxxFileContent last;
+  private final Map<String, CxxPatternGroup> patternGroups = new HashMap<>();
+
+  /**
+   * @param file to read
+   * @param charset of the file
+   * @return decoded content, read from disk only if it is not the file of the previous call
+   * @throws IOException if the file cannot be read
+   */
+  public CxxFileContent get(File file, Charset charset) throws IOException {
+    CxxFileContent content = last;
+    if (content == null || !content.getFile().equals(file) || !content.getCharset().equals(charset)) {
+      content = CxxFileContent.read(file, charset);
+      last = content;
+    }
+    return content;
+  }
+
+  /**
+   * @param key identifies the checks evaluating their patterns together, checks with the same key have to visit the
+   * same texts
+   * @return pattern group of the key, created on first use
+   */
+  public CxxPatternGroup getPatternGroup(String key) {
+    return patternGroups.computeIfAbsent(key, k -> new CxxPatternGroup());
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates the regular expressions of several rule instances together.
+ *
+ * For each pattern a literal is extracted ({@link RegexLiteral}) which every match has to contain. All literals are searched in one pass over
+ * the text (Aho-Corasick), afterwards only the patterns whose literal was found (or which have no literal) are run
+ * with {@link Matcher#find()}. The results of the last text are kept, so the rule instances sharing the group evaluate
+ * each text only once.
+ *
+ * Not thread-safe: each scanner owns its own groups, see {@link CxxFileContentCache#getPatternGroup(String)}.
+ */
+public final class CxxPatternGroup {
+
+  private final List<Pattern> patterns = new ArrayList<>();
+  private final List<String> literals = new ArrayList<>();
+  private LiteralAutomaton automaton;
+
+  private Object lastText;
+  private boolean[] lastResults;
+  private CxxFileContent lastContent;
+  private BitSet[] lastLineResults;
+
+  /**
+   * @param pattern to add to the group
+   * @return id of the pattern in the group
+   */
+  public int add(Pattern pattern) {
+    patterns.add(pattern);
+    literals.add(RegexLiteral.requiredLiteral(pattern));
+    automaton = null;
+    lastText = null;
+    lastResults = null;
+    lastContent = null;
+    lastLineResults = null;
+    return patterns.size() - 1;
+  }
+
+  /**
+   * @param id of the pattern
+   * @param text to search in
+   * @return true if the pattern is found in the text (same result as {@code pattern.matcher(text).find()})
+   */
+  public boolean find(int id, CharSequence text) {
+    if (lastText != text) {
+      lastResults = evaluate(text);
+      lastText = text;
+    }
+    return lastResults[id];
+  }
+
+  /**
+   * @param id of the pattern
+   * @param content of the file
+   * @return zero based indexes of the lines in which the pattern is found
+   */
+  public BitSet findLines(int id, CxxFileContent content) {
+    if (lastContent != content) {
+      lastLineResults = evaluateLines(content);
+      lastContent = content;
+    }
+    return lastLineResults[id];
+  }
+
+  private boolean[] evaluate(CharSequence text) {
+    BitSet candidates = getAutomaton().search(text, literals.size());
+    boolean[] results = new boolean[patterns.size()];
+    for (int id = 0; id < results.length; id++) {
+      if (literals.get(id) == null || candidates.get(id)) {
+        results[id] = patterns.get(id).matcher(text).find();
+      }
+    }
+    return results;
+  }
+
+  private BitSet[] evaluateLines(CxxFileContent content) {
+    int lineCount = content.getLineCount();
+    BitSet[] candidates = getAutomaton().searchLines(content, literals.size());
+    List<String> lines = content.getLines();
+    BitSet[] results = new BitSet[patterns.size()];
+    for (int id = 0; id < results.length; id++) {
+      BitSet matches = new BitSet(lineCount);
+      Matcher matcher = patterns.get(id).matcher("");
+      if (literals.get(id) == null) {
+        for (int line = 0; line < lineCount; line++) {
+          if (matcher.reset(lines.get(line)).find()) {
+            matches.set(line);
+          }
+        }
+      } else {
+        BitSet lineCandidates = candidates[id];
+        for (int line = lineCandidates.nextSetBit(0); line >= 0; line = lineCandidates.nextSetBit(line + 1)) {
+          if (matcher.reset(lines.get(line)).find()) {
+            matches.set(line);
+          }
+        }
+      }
+      results[id] = matches;
+    }
+    return results;
+  }
+
+  private LiteralAutomaton getAutomaton() {
+    if (automaton == null) {
+      automaton = new LiteralAutomaton(literals);
+    }
+    return automaton;
+  }
+
+  /**
+   * Aho-Corasick automaton over the literals of the patterns.
+   */
+  private static final class LiteralAutomaton {
+
+    private final Node root = new Node();
+
+    LiteralAutomaton(List<String> literals) {
+      for (int id = 0; id < literals.size(); id++) {
+        String literal = literals.get(id);
+        if (literal != null) {
+          Node node = root;
+          for (int i = 0; i < literal.length(); i++) {
+            node = node.children.computeIfAbsent(literal.charAt(i), k -> new Node());
+          }
+          node.outputs.add(id);
+        }
+      }
+      Queue<Node> queue = new ArrayDeque<>();
+      for (Node child : root.children.values()) {
+        child.fail = root;
+        queue.add(child);
+      }
+      while (!queue.isEmpty()) {
+        Node node = queue.remove();
+        for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+          Node child = entry.getValue();
+          Node fail = node.fail;
+          while (fail != null && !fail.children.containsKey(entry.getKey())) {
+            fail = fail.fail;
+          }
+          child.fail = fail == null ? root : fail.children.get(entry.getKey());
+          child.outputs.addAll(child.fail.outputs);
+          queue.add(child);
+        }
+      }
+    }
+
+    BitSet search(CharSequence text, int size) {
+      BitSet found = new BitSet(size);
+      Node node = root;
+      for (int i = 0; i < text.length(); i++) {
+        node = next(node, text.charAt(i));
+        for (int id : node.outputs) {
+          found.set(id);
+        }
+      }
+      return found;
+    }
+
+    BitSet[] searchLines(CxxFileContent content, int size) {
+      BitSet[] found = new BitSet[size];
+      for (int id = 0; id < size; id++) {
+        found[id] = new BitSet();
+      }
+      CharSequence text = content.getContent();
+      int lineCount = content.getLineCount();
+      int line = 0;
+      int nextLineStart = lineCount > 1 ? content.getLineStart(1) : Integer.MAX_VALUE;
+      Node node = root;
+      for (int i = 0; i < text.length(); i++) {
+        while (i >= nextLineStart) {
+          line++;
+          nextLineStart = line + 1 < lineCount ? content.getLineStart(line + 1) : Integer.MAX_VALUE;
+        }
+        node = next(node, text.charAt(i));
+        for (int id : node.outputs) {
+          found[id].set(line);
+        }
+      }
+      return found;
+    }
+
+    private Node next(Node current, char c) {
+      Node node = current;
+      while (true) {
+        Node child = node.children.get(c);
+        if (child != null) {
+          return child;
+        }
+        if (node.fail == null) {
+          return node;
+        }
+        node = node.fail;
+      }
+    }
+  }
+
+  private static final class Node {
+
+    private final Map<Character, Node> children = new HashMap<>();
+    private final List<Integer> outputs = new ArrayList<>();
+    @Nullable
+    private Node fail;
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+
+/**
+ * Extracts a literal from a regular expression which every match contains. A text without the literal cannot match,
+ * so the regular expression does not need to run for it. Used by {@link CxxPatternGroup} and by the compiler log
+ * scanner of the sensors.
+ */
+public final class RegexLiteral {
+
+  private static final String CONTROL_ESCAPES = "tnrfae";
+  private static final String CONTROL_CHARACTERS = "\t\n\r\f\u0007\u001B";
+
+  private RegexLiteral() {
+  }
+
+  /**
+   * Conservative extraction of a literal which is part of every match of the pattern: the longest run of plain
+   * characters outside of groups and character classes. Returns null if no such literal can be determined safely
+   * (alternatives on top level, flags changing the meaning of characters, quoting, ...).
+   *
+   * @param pattern to analyze
+   * @return literal contained in every match or null
+   */
+  @CheckForNull
+  public static String requiredLiteral(Pattern pattern) {
+    String regex = pattern.pattern();
+    int flags = pattern.flags();
+    if ((flags & (Pattern.CASE_INSENSITIVE | Pattern.CANON_EQ)) != 0) {
+      return null;
+    }
+    if ((flags & Pattern.LITERAL) != 0) {
+      return regex.isEmpty() ? null : regex;
+    }
+    if ((flags & Pattern.COMMENTS) != 0) {
+      return null;
+    }
+
+    String best = "";
+    StringBuilder run = new StringBuilder();
+    boolean lastAtomInRun = false;
+    int depth = 0;
+    int length = regex.length();
+    for (int i = 0; i < length; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (i + 1 >= length) {
+          return null;
+        }
+        char escaped = regex.charAt(++i);
+        int literal = -1;
+        if (escaped == 'x' || escaped == 'u') {
+          int digits = escaped == 'x' ? 2 : 4;
+          literal = parseHex(regex, i + 1, digits);
+          if (literal < 0) {
+            return null;
+          }
+          i += digits;
+        } else if (CONTROL_ESCAPES.indexOf(escaped) >= 0) {
+          literal = CONTROL_CHARACTERS.charAt(CONTROL_ESCAPES.indexOf(escaped));
+        } else if (!Character.isLetterOrDigit(escaped)) {
+          literal = escaped;
+        } else if ("c0kNpPQ123456789".indexOf(escaped) >= 0) {
+          // escapes like \p{Alpha} or \12 consume further characters, give up instead of parsing them
+          return null;
+        }
+        if (literal < 0) {
+          best = longer(best, run);
+          lastAtomInRun = false;
+        } else if (depth == 0) {
+          run.append((char) literal);
+          lastAtomInRun = true;
+        }
+      } else if (c == '[') {
+        i = skipCharacterClass(regex, i);
+        if (i < 0) {
+          return null;
+        }
+        best = longer(best, run);
+        lastAtomInRun = false;
+      } else if (c == '(') {
+        if (i + 2 < length && regex.charAt(i + 1) == '?' && isFlag(regex.charAt(i + 2))) {
+          // inline flags, e.g. (?i)
+          return null;
+        }
+        depth++;
+        best = longer(best, run);
+        lastAtomInRun = false;
+      } else if (c == ')') {
+        depth--;
+        best = longer(best, run);
+        lastAtomInRun = false;
+      } else if (depth > 0) {
+        continue;
+      } else if (c == '|') {
+        return null;
+      } else if (c == '?' || c == '*' || c == '+' || c == '{') {
+        if (c == '{') {
+          int end = regex.indexOf('}', i);
+          if (end < 0) {
+            return null;
+          }
+          i = end;
+        }
+        if (lastAtomInRun) {
+          if (c != '+') {
+            // the character before the quantifier is optional
+            run.setLength(run.length() - 1);
+          }
+          best = longer(best, run);
+        }
+        lastAtomInRun = false;
+        if (i + 1 < length && (regex.charAt(i + 1) == '?' || regex.charAt(i + 1) == '+')) {
+          // lazy or possessive quantifier
+          i++;
+        }
+      } else if (c == '.' || c == '^' || c == '$') {
+        best = longer(best, run);
+        lastAtomInRun = false;
+      } else {
+        run.append(c);
+        lastAtomInRun = true;
+      }
+    }
+    if (depth != 0) {
+      return null;
+    }
+    best = longer(best, run);
+    return best.isEmpty() ? null : best;
+  }
+
+  /**
+   * @return value of the hex digits or -1
+   */
+  private static int parseHex(String regex, int start, int digits) {
+    if (start + digits > regex.length()) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = start; i < start + digits; i++) {
+      int digit = Character.digit(regex.charAt(i), 16);
+      if (digit < 0) {
+        return -1;
+      }
+      value = value * 16 + digit;
+    }
+    return value;
+  }
+
+  private static String longer(String best, StringBuilder run) {
+    String result = best;
+    if (run.length() > best.length()) {
+      result = run.toString();
+    }
+    run.setLength(0);
+    return result;
+  }
+
+  private static boolean isFlag(char c) {
+    return Character.isLetter(c) || c == '-';
+  }
+
+  /**
+   * @return index of the closing bracket or -1
+   */
+  private static int skipCharacterClass(String regex, int start) {
+    int i = start + 1;
+    int length = regex.length();
+    if (i < length && regex.charAt(i) == '^') {
+      i++;
+    }
+    if (i < length && regex.charAt(i) == ']') {
+      i++;
+    }
+    int nesting = 1;
+    for (; i < length; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '[') {
+        nesting++;
+      } else if (c == ']' && --nesting == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -21,16 +21,44 @@ package org.sonar.cxx;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.fest.assertions.Assertions;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class CxxConfigurationTest {
 
   private static final String vcKey = "Visual C++";
   private static final String vcCharSet = "UTF8";
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void compilationUnitsWithSameSettingsShareProfile() {
+    CxxConfiguration config = new CxxConfiguration();
+    config.addCompilationUnitSettings("a.cpp", settings("A", "/include"));
+    config.addCompilationUnitSettings("b.cpp", settings("A", "/include"));
+    config.addCompilationUnitSettings("c.cpp", settings("C", "/include"));
+
+    assertThat(config.getCompilationUnitSettings("b.cpp")).isSameAs(config.getCompilationUnitSettings("a.cpp"));
+    assertThat(config.getCompilationUnitProfile("a.cpp")).isEqualTo(0);
+    assertThat(config.getCompilationUnitProfile("b.cpp")).isEqualTo(0);
+    assertThat(config.getCompilationUnitProfile("c.cpp")).isEqualTo(1);
+    assertThat(config.getCompilationUnitProfile("unknown.cpp")).isEqualTo(-1);
+    assertThat(config.getCompilationUnitProfileCount()).isEqualTo(2);
+  }
+
+  private static CxxCompilationUnitSettings settings(String define, String include) {
+    CxxCompilationUnitSettings settings = new CxxCompilationUnitSettings();
+    settings.setDefines(Collections.singletonMap(define, "1"));
+    settings.setIncludes(Collections.singletonList(include));
+    return settings;
+  }
+
   @Test
   public void emptyValueShouldReturnNoDirsOrDefines() {
     CxxConfiguration config = new CxxConfiguration();
@@ -68,6 +96,27 @@ public class CxxConfigurationTest {
     assertThat(config.getDefines().size()).isEqualTo(26 + 5);
   }
 
+  @Test
+  public void cachedBuildLogShouldCreateSameConfiguration() throws Exception {
+    File cacheDirectory = tempFolder.newFolder();
+    List<File> files = new ArrayList<>();
+    files.add(new File("src/test/resources/logfile/vc++13.txt"));
+
+    CxxConfiguration parsed = new CxxConfiguration();
+    parsed.setBaseDir(".");
+    parsed.setBuildLogCacheDirectory(cacheDirectory);
+    parsed.setCompilationPropertiesWithBuildLog(files, vcKey, vcCharSet);
+    assertThat(cacheDirectory.list()).hasSize(1);
+
+    CxxConfiguration cached = new CxxConfiguration();
+    cached.setBaseDir(".");
+    cached.setBuildLogCacheDirectory(cacheDirectory);
+    cached.setCompilationPropertiesWithBuildLog(files, vcKey, vcCharSet);
+
+    assertThat(cached.getIncludeDirectories()).isEqualTo(parsed.getIncludeDirectories());
+    assertThat(cached.getDefines()).containsOnlyElementsOf(parsed.getDefines()).hasSize(26 + 5);
+  }
+
   @Test
   public void shouldHandleSpecificCommonOptionsCorrectly() {
     CxxConfiguration config = new CxxConfiguration();
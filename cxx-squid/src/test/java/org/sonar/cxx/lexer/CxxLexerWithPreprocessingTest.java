@@ -27,18 +27,24 @@ import static com.sonar.sslr.test.lexer.LexerMatchers.hasToken;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
+import java.util.StringJoiner;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import org.sonar.cxx.CxxCompilationUnitSettings;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.CxxFileTesterHelper;
 import org.sonar.cxx.CxxLanguage;
@@ -46,13 +52,18 @@ import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.api.CxxPunctuator;
 import org.sonar.cxx.api.CxxTokenType;
 import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.preprocessor.IncludeIndex;
+import org.sonar.cxx.preprocessor.PrecompiledMacros;
 import org.sonar.cxx.preprocessor.JoinStringsPreprocessor;
+import org.sonar.cxx.preprocessor.SourceCodeCache;
 import org.sonar.cxx.preprocessor.SourceCodeProvider;
 import org.sonar.squidbridge.SquidAstVisitorContext;
 
 public class CxxLexerWithPreprocessingTest {
 
   private static Lexer lexer;
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
   private CxxLanguage language;
 
   public CxxLexerWithPreprocessingTest() {
@@ -85,6 +96,50 @@ public class CxxLexerWithPreprocessingTest {
     assertThat(tokens, hasToken("\"haha\"", CxxTokenType.STRING));
   }
 
+  @Test
+  public void expanding_macros_follows_redefinition_of_nested_macros() {
+    List<Token> tokens = lexer.lex("#define A 1\n#define B A\nB\n#undef A\n#define A 2\nB");
+    assertThat(tokens).hasSize(3);
+    assertThat(tokens.get(0).getValue()).isEqualTo("1");
+    assertThat(tokens.get(1).getValue()).isEqualTo("2");
+  }
+
+  @Test
+  public void rescanning_respects_hide_sets() {
+    // C standard 6.10.3.5, EXAMPLE 3
+    List<Token> tokens = lexer.lex("#define x 3\n"
+      + "#define f(a) f(x * (a))\n"
+      + "#undef x\n"
+      + "#define x 2\n"
+      + "#define g f\n"
+      + "#define z z[0]\n"
+      + "#define h g(~\n"
+      + "#define m(a) a(w)\n"
+      + "#define w 0,1\n"
+      + "#define t(a) a\n"
+      + "f(y+1) + f(f(z)) % t(t(g)(0) + t)(1);\n"
+      + "g(x+(3,4)-w) | h 5) & m(f)^m(m);");
+    assertThat(values(tokens)).isEqualTo(
+      "f ( 2 * ( y + 1 ) ) + f ( 2 * ( f ( 2 * ( z [ 0 ] ) ) ) ) % f ( 2 * ( 0 ) ) + t ( 1 ) ; "
+      + "f ( 2 * ( 2 + ( 3 , 4 ) - 0 , 1 ) ) | f ( 2 * ( ~ 5 ) ) & f ( 2 * ( 0 , 1 ) ) ^ m ( 0 , 1 ) ;");
+  }
+
+  @Test
+  public void expanding_self_referencing_macros() {
+    List<Token> tokens = lexer.lex("#define foo foo + 1\n#define a b\n#define b a\nfoo a b");
+    assertThat(values(tokens)).isEqualTo("foo + 1 a b");
+  }
+
+  @Test
+  public void expanded_tokens_have_the_types_of_the_lexer() {
+    List<Token> tokens = lexer.lex("#define M(p) int p -> nullptr\nM(x)");
+    assertThat(tokens).hasSize(5);
+    assertThat(tokens.get(0).getType()).isEqualTo(CxxKeyword.INT);
+    assertThat(tokens.get(1).getType()).isEqualTo(GenericTokenType.IDENTIFIER);
+    assertThat(tokens.get(2).getType()).isEqualTo(CxxPunctuator.ARROW);
+    assertThat(tokens.get(3).getType()).isEqualTo(CxxTokenType.NUMBER);
+  }
+
   @Test
   public void expanding_functionlike_macros() {
     List<Token> tokens = lexer.lex("#define plus(a, b) a + b\n plus(1, 2)");
@@ -523,6 +578,9 @@ public class CxxLexerWithPreprocessingTest {
   public void externalMacrosCannotBeOverriden() {
     CxxConfiguration conf = mock(CxxConfiguration.class);
     when(conf.getDefines()).thenReturn(Arrays.asList("name goodvalue"));
+    when(conf.getSourceCodeCache()).thenReturn(new SourceCodeCache());
+    when(conf.getIncludeIndex()).thenReturn(new IncludeIndex());
+    when(conf.getPrecompiledMacros()).thenReturn(new PrecompiledMacros());
     CxxPreprocessor cxxpp = new CxxPreprocessor(mock(SquidAstVisitorContext.class), conf, language);
     lexer = CxxLexer.create(conf, cxxpp);
 
@@ -533,6 +591,42 @@ public class CxxLexerWithPreprocessingTest {
     assertThat(tokens).hasSize(2); // goodvalue + EOF
   }
 
+  @Test
+  public void force_includes_are_shared_by_the_units_of_a_profile() throws IOException {
+    File dirA = temp.newFolder("a");
+    File dirB = temp.newFolder("b");
+    Files.write(new File(dirA, "force.h").toPath(), "#define VALUE a\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(dirB, "force.h").toPath(), "#define VALUE b\n".getBytes(StandardCharsets.UTF_8));
+    File unitA1 = new File(dirA, "unit1.cc");
+    File unitA2 = new File(dirA, "unit2.cc");
+    File unitB = new File(dirB, "unit.cc");
+
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setForceIncludeFiles(Arrays.asList("force.h"));
+    conf.setGlobalCompilationUnitSettings(new CxxCompilationUnitSettings());
+    SquidAstVisitorContext<Grammar> ctx = mock(SquidAstVisitorContext.class);
+    CxxPreprocessor cxxpp = new CxxPreprocessor(ctx, conf, language);
+    lexer = CxxLexer.create(conf, cxxpp);
+
+    // relative force includes are searched in the directory of the unit first
+    assertThat(lexUnit(ctx, cxxpp, unitA1, "VALUE"), hasToken("a", GenericTokenType.IDENTIFIER));
+    assertThat(lexUnit(ctx, cxxpp, unitA2, "VALUE"), hasToken("a", GenericTokenType.IDENTIFIER));
+    assertThat(lexUnit(ctx, cxxpp, unitB, "VALUE"), hasToken("b", GenericTokenType.IDENTIFIER));
+
+    assertThat(cxxpp.getIncludedFiles(unitA2)).extracting(CxxPreprocessor.Include::getPath)
+      .containsExactly(new File(dirA, "force.h").getAbsolutePath());
+    assertThat(cxxpp.getIncludedFiles(unitB)).extracting(CxxPreprocessor.Include::getPath)
+      .containsExactly(new File(dirB, "force.h").getAbsolutePath());
+  }
+
+  private static List<Token> lexUnit(SquidAstVisitorContext<Grammar> ctx, CxxPreprocessor cxxpp, File unit,
+    String source) {
+    when(ctx.getFile()).thenReturn(unit);
+    List<Token> tokens = lexer.lex(source);
+    cxxpp.finishedPreprocessing(unit);
+    return tokens;
+  }
+
   @Test
   public void elif_expression() {
     List<Token> tokens = lexer.lex("#if 0\n"
@@ -674,4 +768,14 @@ public class CxxLexerWithPreprocessingTest {
       + "A");
     assertThat(tokens, hasToken("0xcf", CxxKeyword.INT));
   }
+
+  private static String values(List<Token> tokens) {
+    StringJoiner values = new StringJoiner(" ");
+    for (Token token : tokens) {
+      if (!token.getType().equals(GenericTokenType.EOF)) {
+        values.add(token.getValue());
+      }
+    }
+    return values.toString();
+  }
 }
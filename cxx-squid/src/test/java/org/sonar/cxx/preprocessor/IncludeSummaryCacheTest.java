@@ -0,0 +1,143 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class IncludeSummaryCacheTest {
+
+  private final File outer = new File("outer.h");
+  private final File inner = new File("inner.h");
+  private final MapChain<String, String> macros = new MapChain<>();
+  private PersistentMap<File, File> analysedFiles = PersistentMap.empty();
+
+  @Test
+  public void nestedSummariesArePartOfTheIncludingFile() {
+    IncludeSummaryCache cache = new IncludeSummaryCache();
+    IncludeSummaryCache.Key outerKey = cache.snapshot(key(outer));
+    analysedFiles = analysedFiles.put(outer, outer);
+    IncludeSummaryCache.Key innerKey = cache.snapshot(key(inner));
+
+    cache.begin();
+    cache.record(IncludeSummaryCache.Kind.DEFINE, "A", "1");
+    cache.begin();
+    cache.record(IncludeSummaryCache.Kind.UNDEF, "B", null);
+    cache.end(innerKey);
+    cache.end(outerKey);
+
+    List<IncludeSummaryCache.Action> outerActions = cache.get(outerKey);
+    assertThat(outerActions).extracting(IncludeSummaryCache.Action::getName).containsExactly("A", "B");
+    assertThat(cache.get(innerKey)).extracting(IncludeSummaryCache.Action::getName).containsExactly("B");
+    assertThat(cache.getHits()).isEqualTo(2);
+  }
+
+  @Test
+  public void differentStateIsAMiss() {
+    IncludeSummaryCache cache = new IncludeSummaryCache();
+    cache.begin();
+    cache.end(cache.snapshot(key(outer)));
+
+    macros.setHighPrio(true);
+    assertThat(cache.get(key(outer))).isNull();
+    macros.setHighPrio(false);
+    macros.put("A", "1");
+    assertThat(cache.get(key(outer))).isNull();
+    macros.removeLowPrio("A");
+    assertThat(cache.get(key(outer))).isEmpty();
+    assertThat(cache.getMisses()).isEqualTo(2);
+  }
+
+  @Test
+  public void sameFingerprintsWithDifferentStateIsAMiss() {
+    IncludeSummaryCache cache = new IncludeSummaryCache();
+    macros.put("A", "Aa");
+    cache.begin();
+    cache.end(cache.snapshot(key(outer)));
+
+    // "Aa" and "BB" have the same hash code, so the fingerprints are equal
+    macros.put("A", "BB");
+    assertThat(cache.get(key(outer))).isNull();
+    macros.put("A", "Aa");
+    assertThat(cache.get(new IncludeSummaryCache.Key(outer, 0, macros, analysedFiles, 0,
+      Collections.singletonList(new File("include"))))).isNull();
+    assertThat(cache.get(key(outer))).isEmpty();
+  }
+
+  @Test
+  public void snapshotIsNotChangedByLaterDefines() {
+    IncludeSummaryCache cache = new IncludeSummaryCache();
+    IncludeSummaryCache.Key key = cache.snapshot(key(outer));
+    cache.begin();
+    macros.put("A", "1");
+    analysedFiles = analysedFiles.put(inner, inner);
+    cache.end(key);
+
+    assertThat(cache.get(key(outer))).isNull();
+    macros.removeLowPrio("A");
+    analysedFiles = PersistentMap.empty();
+    assertThat(cache.get(key(outer))).isEmpty();
+  }
+
+  @Test
+  public void snapshotsOfDifferentStatesAreNotShared() {
+    IncludeSummaryCache cache = new IncludeSummaryCache();
+    cache.begin();
+    cache.end(cache.snapshot(key(outer)));
+    macros.put("A", "1");
+    cache.begin();
+    cache.record(IncludeSummaryCache.Kind.DEFINE, "B", "2");
+    cache.end(cache.snapshot(key(outer)));
+
+    assertThat(cache.get(key(outer))).extracting(IncludeSummaryCache.Action::getName).containsExactly("B");
+    macros.removeLowPrio("A");
+    assertThat(cache.get(key(outer))).isEmpty();
+  }
+
+  @Test
+  public void recordingWithoutIncludeIsIgnored() {
+    IncludeSummaryCache cache = new IncludeSummaryCache();
+    cache.record(IncludeSummaryCache.Kind.DEFINE, "A", "1");
+    cache.begin();
+    cache.end(cache.snapshot(key(outer)));
+    assertThat(cache.get(key(outer))).isEmpty();
+  }
+
+  @Test
+  public void leastRecentlyUsedEntryIsEvicted() {
+    IncludeSummaryCache cache = new IncludeSummaryCache(1);
+    IncludeSummaryCache.Key first = cache.snapshot(key(outer));
+    IncludeSummaryCache.Key second = cache.snapshot(key(inner));
+    cache.begin();
+    cache.end(first);
+    cache.begin();
+    cache.end(second);
+
+    assertThat(cache.get(first)).isNull();
+    assertThat(cache.get(second)).isNotNull();
+  }
+
+  private IncludeSummaryCache.Key key(File file) {
+    return new IncludeSummaryCache.Key(file, 0, macros, analysedFiles, 0, Collections.emptyList());
+  }
+}
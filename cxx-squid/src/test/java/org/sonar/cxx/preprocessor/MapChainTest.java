@@ -20,6 +20,9 @@
 package org.sonar.cxx.preprocessor;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
 public class MapChainTest {
@@ -111,4 +114,87 @@ public class MapChainTest {
     assertEquals(mc.get("khigh"), "vhigh");
     assertEquals(mc.get("klow"), "vlow");
   }
+
+  @Test
+  public void fingerprintDependsOnContentOnly() {
+    MapChain<String, String> other = new MapChain<>();
+    mc.put("a", "1");
+    mc.put("b", "2");
+    other.put("b", "2");
+    other.put("a", "1");
+    assertEquals(mc.getFingerprint(), other.getFingerprint());
+
+    other.put("a", "3");
+    assertNotEquals(mc.getFingerprint(), other.getFingerprint());
+    other.put("a", "1");
+    assertEquals(mc.getFingerprint(), other.getFingerprint());
+  }
+
+  @Test
+  public void sameFingerprintIsNoProofOfSameContent() {
+    MapChain<String, String> other = new MapChain<>();
+    mc.put("k", "Aa");
+    other.put("k", "BB");
+    assertEquals(mc.getFingerprint(), other.getFingerprint());
+    assertFalse(mc.hasSameContent(other));
+
+    other.put("k", "Aa");
+    assertTrue(mc.hasSameContent(other));
+    other.disable("k");
+    assertFalse(mc.hasSameContent(other));
+  }
+
+  @Test
+  public void fingerprintFollowsRemoveAndClear() {
+    long empty = mc.getFingerprint();
+    mc.put("k", "v");
+    mc.removeLowPrio("k");
+    assertEquals(empty, mc.getFingerprint());
+
+    mc.put("k", "v");
+    mc.clearLowPrio();
+    assertEquals(empty, mc.getFingerprint());
+  }
+
+  @Test
+  public void fingerprintIsStableWhileDisabled() {
+    mc.put("k", "v");
+    long fingerprint = mc.getFingerprint();
+    mc.disable("k");
+    assertEquals(fingerprint, mc.getFingerprint());
+    mc.enable("k");
+    assertEquals(fingerprint, mc.getFingerprint());
+  }
+
+  @Test
+  public void fingerprintDistinguishesPriority() {
+    MapChain<String, String> other = new MapChain<>();
+    mc.put("k", "v");
+    other.setHighPrio(true);
+    other.put("k", "v");
+    assertNotEquals(mc.getFingerprint(), other.getFingerprint());
+  }
+
+  @Test
+  public void forkIsIndependent() {
+    mc.setHighPrio(true);
+    mc.put("khigh", "vhigh");
+    mc.setHighPrio(false);
+    mc.put("klow", "vlow");
+    mc.disable("klow");
+
+    MapChain<String, String> fork = mc.fork();
+    assertEquals(mc.getFingerprint(), fork.getFingerprint());
+    assertEquals(fork.get("klow"), null);
+
+    fork.enable("klow");
+    fork.put("klow", "other");
+    fork.clearLowPrio();
+    assertEquals(fork.get("khigh"), "vhigh");
+    assertEquals(fork.get("klow"), null);
+
+    mc.enable("klow");
+    assertEquals(mc.get("klow"), "vlow");
+    assertNotEquals(mc.getFingerprint(), fork.getFingerprint());
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class PersistentMapTest {
+
+  /**
+   * Key with a configurable hash code, used to force hash collisions.
+   */
+  private static final class Key {
+
+    private final int id;
+
+    Key(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public int hashCode() {
+      return id % 4 == 0 ? id % 7 : id * 0x9e3779b9;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).id == id;
+    }
+  }
+
+  @Test
+  public void putAndRemove() {
+    PersistentMap<String, String> empty = PersistentMap.empty();
+    PersistentMap<String, String> map = empty.put("a", "1").put("b", "2");
+
+    assertThat(map.size()).isEqualTo(2);
+    assertThat(map.get("a")).isEqualTo("1");
+    assertThat(map.remove("a").get("a")).isNull();
+    assertThat(map.remove("x")).isSameAs(map);
+    assertThat(map.put("a", "1")).isSameAs(map);
+    assertThat(empty.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void collidingKeys() {
+    PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().put("Aa", 1).put("BB", 2);
+
+    assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+    assertThat(map.get("Aa")).isEqualTo(1);
+    assertThat(map.get("BB")).isEqualTo(2);
+    assertThat(map.remove("Aa").get("BB")).isEqualTo(2);
+    assertThat(map.remove("Aa").remove("BB").isEmpty()).isTrue();
+  }
+
+  @Test
+  public void olderVersionsAreNotChanged() {
+    Random random = new Random(1);
+    Map<Key, Integer> expected = new HashMap<>();
+    PersistentMap<Key, Integer> map = PersistentMap.empty();
+    Map<Key, Integer> expectedSnapshot = null;
+    PersistentMap<Key, Integer> snapshot = null;
+
+    for (int i = 0; i < 5000; i++) {
+      Key key = new Key(random.nextInt(1000));
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.remove(key);
+      } else {
+        int value = random.nextInt();
+        expected.put(key, value);
+        map = map.put(key, value);
+      }
+      assertThat(map.size()).isEqualTo(expected.size());
+      if (i == 2500) {
+        expectedSnapshot = new HashMap<>(expected);
+        snapshot = map;
+      }
+    }
+
+    for (int id = 0; id < 1000; id++) {
+      Key key = new Key(id);
+      assertThat(map.get(key)).isEqualTo(expected.get(key));
+      assertThat(snapshot.get(key)).isEqualTo(expectedSnapshot.get(key));
+    }
+  }
+
+  @Test
+  public void contentEqualsIgnoresInsertionOrderAndStructure() {
+    Random random = new Random(2);
+    PersistentMap<Key, Integer> map = PersistentMap.empty();
+    for (int i = 0; i < 2000; i++) {
+      map = map.put(new Key(random.nextInt(1000)), i % 10);
+    }
+
+    PersistentMap<Key, Integer> other = PersistentMap.empty();
+    for (int id = 999; id >= 0; id--) {
+      Integer value = map.get(new Key(id));
+      if (value != null) {
+        other = other.put(new Key(id), value);
+      }
+      // entries which are removed again leave sub nodes the other map doesn't have
+      other = other.put(new Key(id + 1000), 0).remove(new Key(id + 1000));
+    }
+
+    assertThat(map.contentEquals(other)).isTrue();
+    assertThat(other.contentEquals(map)).isTrue();
+    Key changed = new Key(random.nextInt(1000));
+    assertThat(map.contentEquals(other.put(changed, -1))).isFalse();
+    assertThat(map.put(changed, -1).contentEquals(other.put(changed, -1))).isTrue();
+  }
+
+  @Test
+  public void contentEqualsComparesValues() {
+    PersistentMap<String, String> map = PersistentMap.<String, String>empty().put("a", "1").put("b", "2");
+
+    assertThat(map.contentEquals(map.put("c", "3").remove("c"))).isTrue();
+    assertThat(map.contentEquals(map.put("b", "3"))).isFalse();
+    assertThat(map.contentEquals(map.remove("b").put("c", "2"))).isFalse();
+    assertThat(map.contentEquals(PersistentMap.empty())).isFalse();
+  }
+
+}
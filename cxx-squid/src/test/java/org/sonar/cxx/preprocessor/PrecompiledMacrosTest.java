@@ -0,0 +1,59 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.cxx.preprocessor.CxxPreprocessor.Macro;
+
+public class PrecompiledMacrosTest {
+
+  private final PrecompiledMacros precompiled = new PrecompiledMacros();
+
+  @Test
+  public void definesAreParsedOncePerList() {
+    AtomicInteger calls = new AtomicInteger();
+    Map<String, Macro> first = precompiled.getDefines(Arrays.asList("A 1", "", "B 2"), (String define) -> {
+      calls.incrementAndGet();
+      return new Macro(define.substring(0, 1), null, Collections.emptyList(), false);
+    });
+    Map<String, Macro> second = precompiled.getDefines(Arrays.asList("A 1", "", "B 2"), (String define) -> {
+      calls.incrementAndGet();
+      return null;
+    });
+
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(first.keySet()).containsOnly("A", "B");
+    assertThat(second).isSameAs(first);
+  }
+
+  @Test
+  public void standardMacrosAreShared() {
+    assertThat(PrecompiledMacros.getStandardMacros()).containsKeys("__FILE__", "__cplusplus", "__has_include");
+    assertThat(PrecompiledMacros.getUnitStandardMacros()).containsOnlyKeys("__FILE__", "__LINE__", "__DATE__",
+      "__TIME__");
+    assertThat(PrecompiledMacros.getCompatibilityMacros().get("class").toString()).isEqualTo("class -> '__class'");
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceCodeCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void cachedContent() throws IOException {
+    File file = new File("src/test/resources/codeprovider/source.hh");
+    String expected = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    SourceCodeCache cache = new SourceCodeCache();
+
+    assertThat(cache.getSourceCode(file, StandardCharsets.UTF_8)).isEqualTo(expected);
+    assertThat(cache.getSourceCode(file, StandardCharsets.UTF_8)).isEqualTo(expected);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getHitRate()).isEqualTo(50.0);
+    assertThat(cache.getBytesMapped()).isEqualTo(0);
+    assertThat(cache.getBytesRead()).isEqualTo(file.length());
+  }
+
+  @Test
+  public void largeFilesAreMapped() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 64 * 1024) {
+      sb.append("int \u00e4 = 0; // comment\n");
+    }
+    File file = temp.newFile("large.h");
+    Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    SourceCodeCache cache = new SourceCodeCache();
+
+    assertThat(cache.getSourceCode(file, StandardCharsets.UTF_8)).isEqualTo(sb.toString());
+    assertThat(cache.getBytesMapped()).isEqualTo(file.length());
+    assertThat(cache.getCachedBytes()).isEqualTo(sb.length() * 2L);
+  }
+
+  @Test
+  public void contentIsReadOncePerAnalysis() throws IOException {
+    File file = temp.newFile("changed.h");
+    Files.write(file.toPath(), "#define A 1\n".getBytes(StandardCharsets.UTF_8));
+    SourceCodeCache cache = new SourceCodeCache();
+    cache.getSourceCode(file, StandardCharsets.UTF_8);
+
+    Files.write(file.toPath(), "#define A 22\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(cache.getSourceCode(file, StandardCharsets.UTF_8)).isEqualTo("#define A 1\n");
+    assertThat(new SourceCodeCache().getSourceCode(file, StandardCharsets.UTF_8)).isEqualTo("#define A 22\n");
+  }
+
+  @Test
+  public void contentIsNotCachedWithoutBudget() throws IOException {
+    File file = new File("src/test/resources/codeprovider/source.hh");
+    SourceCodeCache cache = new SourceCodeCache(0);
+
+    cache.getSourceCode(file, StandardCharsets.UTF_8);
+    cache.getSourceCode(file, StandardCharsets.UTF_8);
+    assertThat(cache.getHits()).isEqualTo(0);
+    assertThat(cache.getMisses()).isEqualTo(2);
+    assertThat(cache.getCachedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void leastRecentlyUsedFilesAreEvicted() throws IOException {
+    char[] chars = new char[300 * 1024];
+    Arrays.fill(chars, 'x');
+    File first = temp.newFile("first.h");
+    File second = temp.newFile("second.h");
+    Files.write(first.toPath(), new String(chars).getBytes(StandardCharsets.US_ASCII));
+    Files.write(second.toPath(), new String(chars).getBytes(StandardCharsets.US_ASCII));
+    SourceCodeCache cache = new SourceCodeCache(1);
+
+    cache.getSourceCode(first, StandardCharsets.US_ASCII);
+    cache.getSourceCode(second, StandardCharsets.US_ASCII);
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    cache.getSourceCode(second, StandardCharsets.US_ASCII);
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+}
@@ -180,6 +180,24 @@ public class SourceCodeProviderTest {
     assertEquals(null, codeProvider.getSourceCodeFile(path, cwd, false));
   }
 
+  @Test
+  public void resolved_includes_are_shared_between_providers_with_same_roots() {
+    String baseDir = new File("src/test").getAbsolutePath();
+    IncludeIndex index = new IncludeIndex();
+    SourceCodeProvider provider1 = new SourceCodeProvider(new SourceCodeCache(), index);
+    SourceCodeProvider provider2 = new SourceCodeProvider(new SourceCodeCache(), index);
+    provider1.setIncludeRoots(Arrays.asList("resources"), baseDir);
+    provider2.setIncludeRoots(Arrays.asList("resources"), baseDir);
+
+    assertEquals(expected1, provider1.getSourceCodeFile("codeprovider/source.hh", "/", false));
+    assertEquals(expected1, provider2.getSourceCodeFile("codeprovider/source.hh", "/", false));
+    assertEquals(null, provider2.getSourceCodeFile("codeprovider/missing.hh", "/", false));
+    assertEquals(null, provider1.getSourceCodeFile("codeprovider/missing.hh", "/", false));
+    assertEquals(2, index.getMisses());
+    assertEquals(2, index.getHits());
+    assertEquals(2, index.getListedDirectories());
+  }
+
   @Test
   public void getting_source_code1() throws IOException {
     assertEquals("source code", codeProvider.getSourceCode(expected1, Charset.defaultCharset()));
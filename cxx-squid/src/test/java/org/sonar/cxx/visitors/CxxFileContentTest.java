@@ -0,0 +1,81 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CxxFileContentTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File write(byte[] bytes) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), bytes);
+    return file;
+  }
+
+  @Test
+  public void linesAreSplitAtAllTerminators() throws IOException {
+    File file = write("first\r\nsecond\rthird\n\nfifth\n".getBytes(StandardCharsets.UTF_8));
+    CxxFileContent content = CxxFileContent.read(file, StandardCharsets.UTF_8);
+
+    assertThat(content.getLines()).containsExactly("first", "second", "third", "", "fifth");
+    assertThat(content.getLineCount()).isEqualTo(5);
+    assertThat(content.getLineStart(1)).isEqualTo(7);
+    assertThat(content.getLineEnd(1)).isEqualTo(13);
+    assertThat(content.getContent().toString()).isEqualTo("first\r\nsecond\rthird\n\nfifth\n");
+    assertThat(content.hasDecodingErrors()).isFalse();
+  }
+
+  @Test
+  public void emptyFileHasNoLines() throws IOException {
+    CxxFileContent content = CxxFileContent.read(write(new byte[0]), StandardCharsets.UTF_8);
+    assertThat(content.getLineCount()).isEqualTo(0);
+    assertThat(content.getLines()).isEmpty();
+  }
+
+  @Test
+  public void invalidBytesAreReplaced() throws IOException {
+    CxxFileContent content = CxxFileContent.read(write(new byte[]{'a', (byte) 0xff}), StandardCharsets.UTF_8);
+    assertThat(content.hasDecodingErrors()).isTrue();
+    assertThat(content.getLine(0)).isEqualTo("a\ufffd");
+  }
+
+  @Test
+  public void cacheKeepsLastFile() throws IOException {
+    File first = write("a".getBytes(StandardCharsets.UTF_8));
+    File second = write("b".getBytes(StandardCharsets.UTF_8));
+    CxxFileContentCache cache = new CxxFileContentCache();
+
+    CxxFileContent content = cache.get(first, StandardCharsets.UTF_8);
+    assertThat(cache.get(first, StandardCharsets.UTF_8)).isSameAs(content);
+    assertThat(cache.get(second, StandardCharsets.UTF_8).getLine(0)).isEqualTo("b");
+    assertThat(cache.get(first, StandardCharsets.UTF_8)).isNotSameAs(content);
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CxxPatternGroupTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void findSameAsMatcher() {
+    CxxPatternGroup group = new CxxPatternGroup();
+    Pattern[] patterns = {
+      Pattern.compile("TODO"),
+      Pattern.compile("(?i)fixme"),
+      Pattern.compile("^\\s*//"),
+      Pattern.compile("a+b"),
+      Pattern.compile("xyz?$")};
+    int[] ids = new int[patterns.length];
+    for (int i = 0; i < patterns.length; i++) {
+      ids[i] = group.add(patterns[i]);
+    }
+    String[] texts = {"", "// TODO", "FixMe later", "aaab", "xy", "xyz", "xyzz", "TOD O"};
+    for (String text : texts) {
+      for (int i = 0; i < patterns.length; i++) {
+        assertThat(group.find(ids[i], text)).as(patterns[i] + " in '" + text + "'")
+          .isEqualTo(patterns[i].matcher(text).find());
+      }
+    }
+  }
+
+  @Test
+  public void findLines() throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), "int a; // TODO\r\nint b;\n// todo\rTODO".getBytes(StandardCharsets.UTF_8));
+    CxxFileContent content = CxxFileContent.read(file, StandardCharsets.UTF_8);
+
+    CxxPatternGroup group = new CxxPatternGroup();
+    int todo = group.add(Pattern.compile("TODO"));
+    int comment = group.add(Pattern.compile("^//"));
+    int anyCase = group.add(Pattern.compile("(?i)todo"));
+
+    assertThat(group.findLines(todo, content).toString()).isEqualTo("{0, 3}");
+    assertThat(group.findLines(comment, content).toString()).isEqualTo("{2}");
+    assertThat(group.findLines(anyCase, content).toString()).isEqualTo("{0, 2, 3}");
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2017 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.util.regex.Pattern;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class RegexLiteralTest {
+
+  @Test
+  public void requiredLiteral() {
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("TODO"))).isEqualTo("TODO");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile(".*TODO.*"))).isEqualTo("TODO");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("#include\\s+<stdio\\.h>"))).isEqualTo("<stdio.h>");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("abc?d"))).isEqualTo("ab");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("ab+c"))).isEqualTo("ab");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("(foo|bar)baz"))).isEqualTo("baz");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("[abc]+x"))).isEqualTo("x");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("ab\\Qcd\\E"))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("foo|bar"))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("(?i)todo"))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("todo", Pattern.CASE_INSENSITIVE))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("a.b", Pattern.LITERAL))).isEqualTo("a.b");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile(""))).isNull();
+  }
+
+  @Test
+  public void shouldDecodeHexUnicodeAndControlEscapes() {
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("a\\x20warning\\u003A\\tb"))).isEqualTo("a warning:\tb");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("x\\ny\\rz\\f\\a\\e"))).isEqualTo("x\ny\rz\f\u0007\u001B");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("\\x4142"))).isEqualTo("A42");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("\\:\\(\\)"))).isEqualTo(":()");
+  }
+
+  @Test
+  public void shouldGiveUpOnIncompleteOrUnsupportedEscapes() {
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("\\x{41}bc"))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("ab\\p{Alpha}"))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("(a)\\1bc"))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("\\cAbc"))).isNull();
+  }
+
+  @Test
+  public void shouldEndLiteralAtClassEscapes() {
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("abc\\d+de"))).isEqualTo("abc");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("ab\\sxyz"))).isEqualTo("xyz");
+  }
+
+  @Test
+  public void shouldHonourQuantifiersAndAlternatives() {
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("\\x20?abc"))).isEqualTo("abc");
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("foo|bar"))).isNull();
+    assertThat(RegexLiteral.requiredLiteral(Pattern.compile("warning", Pattern.CASE_INSENSITIVE))).isNull();
+  }
+}
@@ -83,6 +83,12 @@ public final class CPlugin implements Plugin {
   public static final String MISSING_INCLUDE_WARN = LANG_PROP_PREFIX + "missingIncludeWarnings";
   public static final String JSON_COMPILATION_DATABASE_KEY = LANG_PROP_PREFIX + "jsonCompilationDatabase";
   public static final String SCAN_ONLY_SPECIFIED_SOURCES_KEY = LANG_PROP_PREFIX + "scanOnlySpecifiedSources";
+  public static final String SCAN_THREADS_KEY = LANG_PROP_PREFIX + "scanThreads";
+  public static final String INCREMENTAL_CACHE_KEY = LANG_PROP_PREFIX + "incrementalCache";
+  public static final String INCREMENTAL_CACHE_DIR_KEY = LANG_PROP_PREFIX + "incrementalCacheDir";
+  public static final String SOURCE_CACHE_SIZE_KEY = LANG_PROP_PREFIX + "sourceCacheSize";
+  public static final String SCAN_ORDER_BY_PROFILE_KEY = LANG_PROP_PREFIX + "scanOrderByProfile";
+  public static final String REPORT_THREADS_KEY = LANG_PROP_PREFIX + "reportThreads";
   public static final String CPD_IGNORE_LITERALS_KEY = LANG_PROP_PREFIX + "cpd.ignoreLiterals";
   public static final String CPD_IGNORE_IDENTIFIERS_KEY = LANG_PROP_PREFIX + "cpd.ignoreIdentifiers";
 
@@ -177,6 +183,69 @@ public final class CPlugin implements Plugin {
         .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
         .type(PropertyType.BOOLEAN)
         .index(10)
+        .build(),
+      PropertyDefinition.builder(CPlugin.SCAN_THREADS_KEY)
+        .defaultValue("1")
+        .name("Scan threads")
+        .description("Number of threads used to preprocess and parse the source files. The files are partitioned "
+          + "across the threads; '1' (default) scans all files sequentially.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(11)
+        .build(),
+      PropertyDefinition.builder(CPlugin.INCREMENTAL_CACHE_KEY)
+        .defaultValue("false")
+        .name("Incremental analysis")
+        .description("Keep the analysis results of each file in a cache and reuse them as long as neither the file "
+          + "nor one of its included or force included files changed. Delete the cache directory to force a full "
+          + "analysis, e.g. after adding headers which could not be found before. Parsed build logs are kept as "
+          + "well and reused as long as the size and modification time of the log are unchanged.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .index(12)
+        .build(),
+      PropertyDefinition.builder(CPlugin.INCREMENTAL_CACHE_DIR_KEY)
+        .defaultValue(CxxSquidSensor.DEFAULT_INCREMENTAL_CACHE_DIR)
+        .name("Incremental analysis cache directory")
+        .description("Directory of the incremental analysis cache and the parsed build logs, relative to the "
+          + "projects root. The working directory cannot be used, the scanner empties it at the start of every "
+          + "analysis.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .index(12)
+        .build(),
+      PropertyDefinition.builder(CPlugin.SOURCE_CACHE_SIZE_KEY)
+        .defaultValue("64")
+        .name("Source code cache size")
+        .description("Upper bound in MB of the decoded content of included files kept in memory. The cache is "
+          + "shared by all scan threads; hit rate and bytes loaded are logged at the end of the analysis.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(13)
+        .build(),
+      PropertyDefinition.builder(CPlugin.SCAN_ORDER_BY_PROFILE_KEY)
+        .defaultValue("false")
+        .name("Scan order by compilation unit settings")
+        .description("Scan the files with the same defines and include directories of the JSON Compilation Database "
+          + "back to back, so the preprocessor can reuse its include resolution and macros.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .index(14)
+        .build(),
+      PropertyDefinition.builder(CPlugin.REPORT_THREADS_KEY)
+        .defaultValue("1")
+        .name("Report threads")
+        .description("Number of threads used to parse and transform (XSLT) the report files of the report sensors. "
+          + "The issues are saved in the order of the reports, independent of the number of threads; '1' (default) "
+          + "parses the reports sequentially.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(15)
         .build()
     ));
   }